@@ -0,0 +1,267 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer.jmh;
+
+import java.io.File;
+import java.io.IOException;
+
+import mozilla_training_analyzer.Analyzer;
+import mozilla_training_analyzer.OpenAddressingTokenStore;
+import mozilla_training_analyzer.TokenStore;
+import mozilla_training_analyzer.TrainingData;
+import mozilla_training_analyzer.benchmark.TrainingFileGenerator;
+
+/** One set of tokens for the benchmarks to work on, along with
+ *  the files they read it from.
+ *
+ *  A data set is named by the dataSet parameter of a benchmark.
+ *  A name which is a number is a synthetic token set of that many
+ *  tokens, generated by TrainingFileGenerator with its default
+ *  distributions and a fixed seed, so that every run benchmarks
+ *  the same data. Any other name is one of the bundled sample
+ *  training files, which are looked for in the directory given
+ *  by the samples.dir system property ("samples" by default, so
+ *  the benchmarks are run from the installation directory).
+ *
+ *  The files are only written the first time they are asked for,
+ *  as building the XML file of ten million tokens takes a while
+ *  and most benchmarks never read it. Everything is written into
+ *  a temporary directory of the data set's own, which goes away
+ *  with delete().
+ */
+class DataSet {
+
+	/** The seed of the synthetic token sets.
+	 */
+	private static final long SYNTHETIC_SEED = 20261018L;
+
+	/** The directory the files of the data set are written into.
+	 */
+	private File workDir = null;
+
+	/** The tokens of the data set.
+	 */
+	private TrainingData trainer = null;
+
+	/** The data set as a training.dat.
+	 */
+	private File datFile = null;
+
+	/** The data set as an XML file.
+	 */
+	private File xmlFile = null;
+
+	/** The good counts of the tokens, for the merge.
+	 */
+	private TokenStore goodTokens = null;
+
+	/** The bad counts of the tokens, for the merge.
+	 */
+	private TokenStore badTokens = null;
+
+	/** Loads or generates the data set of the given name.
+	 *
+	 * @param name	The name of the data set: a number of tokens,
+	 * 				or the file name of a sample.
+	 *
+	 * @throws IOException If the data set couldn't be read or
+	 * 						generated.
+	 */
+	DataSet(String name) throws IOException {
+
+		workDir = File.createTempFile("benchmark", "");
+
+		if (!workDir.delete() || !workDir.mkdir()) {
+			throw new IOException("Could not create " + workDir);
+		}
+
+		if (name.matches("[0-9]+")) {
+
+			int numTokens = Integer.parseInt(name);
+
+			datFile = new File(workDir, "input.dat");
+
+			TrainingFileGenerator generator = new TrainingFileGenerator();
+			generator.setNumTokens(numTokens);
+			generator.setSeed(SYNTHETIC_SEED + numTokens);
+			generator.generate(datFile, Analyzer.OUTPUT_DATA);
+
+		} else {
+
+			File samplesDir = new File(System.getProperty("samples.dir", "samples"));
+
+			datFile = new File(samplesDir, name);
+
+			// Use the sample's own XML file if it has one.
+			File sampleXmlFile = new File(samplesDir, name.replaceFirst("\\.dat$", ".xml"));
+
+			if (sampleXmlFile.exists()) {
+				xmlFile = sampleXmlFile;
+			}
+		}
+
+		trainer = Analyzer.parseTrainingFile(datFile.getPath(), false);
+
+		if (trainer == null) {
+
+			delete();
+			throw new IOException(datFile + " is not a valid training file");
+		}
+	}
+
+	/** Returns the tokens of the data set. They must not be
+	 *  changed; see copyTrainer().
+	 *
+	 * @return The tokens of the data set.
+	 */
+	TrainingData getTrainer() {
+		return trainer;
+	}
+
+	/** Makes a copy of the tokens which can be changed.
+	 *
+	 * @return A copy of the tokens.
+	 */
+	TrainingData copyTrainer() {
+
+		return new TrainingData(
+			trainer.getGoodMessageCount(),
+			trainer.getBadMessageCount(),
+			Analyzer.mergeTokenLists(trainer.getTokenStore(), new OpenAddressingTokenStore()));
+	}
+
+	/** Returns the data set as a training.dat.
+	 *
+	 * @return The training.dat file.
+	 */
+	File getDatFile() {
+		return datFile;
+	}
+
+	/** Returns the data set as an XML file, writing it first if
+	 *  the data set doesn't come with one.
+	 *
+	 * @return The XML file.
+	 *
+	 * @throws IOException If the file couldn't be written.
+	 */
+	File getXmlFile() throws IOException {
+
+		if (xmlFile == null) {
+
+			File newXmlFile = new File(workDir, "input.xml");
+			Analyzer.writeOutput(newXmlFile, trainer, Analyzer.OUTPUT_XML);
+
+			xmlFile = newXmlFile;
+		}
+
+		return xmlFile;
+	}
+
+	/** Returns a file in the data set's directory for a benchmark
+	 *  to write to.
+	 *
+	 * @return The output file.
+	 */
+	File getOutputFile() {
+		return new File(workDir, "output");
+	}
+
+	/** Returns the good counts of the tokens, as the good section
+	 *  of a training.dat holds them.
+	 *
+	 * @return The tokens with a good count.
+	 */
+	TokenStore getGoodTokens() {
+
+		splitTokens();
+
+		return goodTokens;
+	}
+
+	/** Returns the bad counts of the tokens, as the bad section
+	 *  of a training.dat holds them.
+	 *
+	 * @return The tokens with a bad count.
+	 */
+	TokenStore getBadTokens() {
+
+		splitTokens();
+
+		return badTokens;
+	}
+
+	/** Splits the tokens into their two sections, the first time
+	 *  they are asked for.
+	 */
+	private void splitTokens() {
+
+		if (goodTokens != null) {
+			return;
+		}
+
+		TokenStore tokenStore = trainer.getTokenStore();
+
+		goodTokens = new OpenAddressingTokenStore();
+		badTokens = new OpenAddressingTokenStore();
+
+		for (int i = 0; i < tokenStore.size(); i++) {
+
+			if (tokenStore.getGoodCount(i) > 0) {
+
+				goodTokens.add(tokenStore.getTokenArray(i), tokenStore.getTokenOffset(i),
+					tokenStore.getTokenLength(i), tokenStore.getGoodCount(i), 0);
+			}
+
+			if (tokenStore.getBadCount(i) > 0) {
+
+				badTokens.add(tokenStore.getTokenArray(i), tokenStore.getTokenOffset(i),
+					tokenStore.getTokenLength(i), 0, tokenStore.getBadCount(i));
+			}
+		}
+	}
+
+	/** Deletes the files which were written for the data set. The
+	 *  samples themselves are left alone.
+	 */
+	void delete() {
+
+		File[] files = workDir.listFiles();
+
+		for (int i = 0; (files != null) && (i < files.length); i++) {
+			files[i].delete();
+		}
+
+		workDir.delete();
+	}
+}
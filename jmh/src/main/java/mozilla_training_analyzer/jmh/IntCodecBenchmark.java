@@ -0,0 +1,217 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer.jmh;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import mozilla_training_analyzer.Globals;
+import mozilla_training_analyzer.IntCodec;
+import mozilla_training_analyzer.OpenAddressingTokenStore;
+import mozilla_training_analyzer.TokenStore;
+import mozilla_training_analyzer.TrainingData;
+import mozilla_training_analyzer.TrainingFileWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks the int encoding of training files, comparing
+ *  Globals.makeInt()/makeBytes() with IntCodec, and saving a
+ *  store with TrainingFileWriter, which should allocate nothing
+ *  per token.
+ *
+ *  Every call goes over all of the records of numTokens tokens (a
+ *  count and a length each), so the time and the allocation per
+ *  token are those per call divided by numTokens. Run with
+ *  -prof gc for the allocation; the save allocates 4 bytes per
+ *  token, which is its sorted view, a single int[].
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class IntCodecBenchmark {
+
+	/** The number of tokens whose records are encoded.
+	 */
+	@Param({ "1000000" })
+	public int numTokens;
+
+	/** The encoded records, two ints per token.
+	 */
+	private byte[] records = null;
+
+	/** The tokens which are saved.
+	 */
+	private TrainingData trainer = null;
+
+	/** The writer the tokens are saved with. It is kept from call
+	 *  to call, as the program keeps one per thread.
+	 */
+	private TrainingFileWriter writer = null;
+
+	/** Where the saved tokens go.
+	 */
+	private OutputStream nullStream = null;
+
+	/** Builds the records and the store to save.
+	 */
+	@Setup
+	public void setUp() {
+
+		records = new byte[numTokens * 2 * IntCodec.INT_SIZE];
+
+		for (int i = 0; i < numTokens * 2; i++) {
+			IntCodec.putInt(records, i * IntCodec.INT_SIZE, i * 31);
+		}
+
+		// The tokens are added in sorted order, so that the
+		// sorted view of the store doesn't need a sort.
+		TokenStore tokenStore = new OpenAddressingTokenStore(numTokens, numTokens * 16);
+		StringBuffer tokenBuffer = new StringBuffer();
+
+		for (int i = 0; i < numTokens; i++) {
+
+			tokenBuffer.setLength(0);
+			tokenBuffer.append(1000000000 + i);
+			tokenStore.add(tokenBuffer.toString(), i % 7, i % 5);
+		}
+
+		trainer = new TrainingData(100, 100, tokenStore);
+		writer = new TrainingFileWriter();
+		nullStream = new NullOutputStream();
+	}
+
+	/** Decodes every int with Globals.makeInt(), copying each one
+	 *  into a 4-byte array first, as the old stream reader did.
+	 *  The deprecated method is the very thing being measured.
+	 *
+	 * @return The sum of the ints.
+	 */
+	@Benchmark
+	@SuppressWarnings("deprecation")
+	public long decodeWithMakeInt() {
+
+		byte[] inBytes = new byte[4];
+		long total = 0;
+
+		for (int offset = 0; offset < records.length; offset += 4) {
+
+			System.arraycopy(records, offset, inBytes, 0, 4);
+			total += Globals.makeInt(inBytes);
+		}
+
+		return total;
+	}
+
+	/** Decodes every int in place with IntCodec.getInt().
+	 *
+	 * @return The sum of the ints.
+	 */
+	@Benchmark
+	public long decodeWithCodec() {
+
+		long total = 0;
+
+		for (int offset = 0; offset < records.length; offset += IntCodec.INT_SIZE) {
+			total += IntCodec.getInt(records, offset);
+		}
+
+		return total;
+	}
+
+	/** Encodes every int with Globals.makeBytes(), copying the
+	 *  new array into the buffer. The deprecated method is the
+	 *  very thing being measured.
+	 *
+	 * @return The encoded records.
+	 */
+	@Benchmark
+	@SuppressWarnings("deprecation")
+	public byte[] encodeWithMakeBytes() {
+
+		for (int offset = 0; offset < records.length; offset += 4) {
+			System.arraycopy(Globals.makeBytes(offset), 0, records, offset, 4);
+		}
+
+		return records;
+	}
+
+	/** Encodes every int in place with IntCodec.putInt().
+	 *
+	 * @return The encoded records.
+	 */
+	@Benchmark
+	public byte[] encodeWithCodec() {
+
+		for (int offset = 0; offset < records.length; offset += IntCodec.INT_SIZE) {
+			IntCodec.putInt(records, offset, offset);
+		}
+
+		return records;
+	}
+
+	/** Saves the tokens with TrainingFileWriter, throwing the
+	 *  bytes away.
+	 *
+	 * @throws IOException Never, as the output is thrown away.
+	 */
+	@Benchmark
+	public void saveWithTrainingFileWriter() throws IOException {
+		writer.write(trainer, nullStream);
+	}
+
+	/** An OutputStream which throws away everything written to
+	 *  it.
+	 */
+	private static class NullOutputStream extends OutputStream {
+
+		public void write(int b) {
+		}
+
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import mozilla_training_analyzer.Analyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks writing a data set out with Analyzer.writeOutput()
+ *  in each of the output formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class WriteOutputBenchmark {
+
+	/** The data set to write: a bundled sample, or a number of
+	 *  synthetic tokens (see DataSet).
+	 */
+	@Param({
+		"chamacher.dat", "ddiskin.dat", "jangb.dat", "mhansen.dat", "robstow.dat", "straxus.dat",
+		"100000", "1000000", "10000000"
+	})
+	public String dataSet;
+
+	/** The data set being written.
+	 */
+	private DataSet data = null;
+
+	/** The file every format is written to.
+	 */
+	private File outputFile = null;
+
+	/** Loads the data set.
+	 *
+	 * @throws IOException If the data set couldn't be loaded.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+
+		data = new DataSet(dataSet);
+		outputFile = data.getOutputFile();
+	}
+
+	/** Deletes the files of the data set, along with the output.
+	 */
+	@TearDown
+	public void tearDown() {
+		data.delete();
+	}
+
+	/** Writes the tokens as text.
+	 *
+	 * @throws IOException If the file couldn't be written.
+	 */
+	@Benchmark
+	public void writeOutputText() throws IOException {
+		Analyzer.writeOutput(outputFile, data.getTrainer(), Analyzer.OUTPUT_TEXT);
+	}
+
+	/** Writes the tokens as HTML.
+	 *
+	 * @throws IOException If the file couldn't be written.
+	 */
+	@Benchmark
+	public void writeOutputHtml() throws IOException {
+		Analyzer.writeOutput(outputFile, data.getTrainer(), Analyzer.OUTPUT_HTML);
+	}
+
+	/** Writes the tokens as XML.
+	 *
+	 * @throws IOException If the file couldn't be written.
+	 */
+	@Benchmark
+	public void writeOutputXml() throws IOException {
+		Analyzer.writeOutput(outputFile, data.getTrainer(), Analyzer.OUTPUT_XML);
+	}
+
+	/** Writes the tokens as a training.dat.
+	 *
+	 * @throws IOException If the file couldn't be written.
+	 */
+	@Benchmark
+	public void writeOutputData() throws IOException {
+		Analyzer.writeOutput(outputFile, data.getTrainer(), Analyzer.OUTPUT_DATA);
+	}
+}
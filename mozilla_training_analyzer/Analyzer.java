@@ -32,22 +32,26 @@
  */
 package mozilla_training_analyzer;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Iterator;
-import java.util.TreeSet;
+import java.nio.charset.CharsetEncoder;
+import java.text.ParseException;
+import java.util.Vector;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -122,8 +126,33 @@ public class Analyzer {
 		"-rg, --remove-good [number] == Remove all tokens with a good or bad count\n" +
 		"-rb, --remove-bad [number]  == less than the given number. If both are\n" +
 		"specified, those tokens which satisfy either one OR the other will be kept.\n" +
+		"-p, --prune [query] == Remove all tokens matching the query, e.g.\n" +
+		"\"good < 2 and bad < 2\" or \"bad% >= 50 and not prefix \\\"from:\\\"\"\n" +
+		"-k, --keep [query] == Remove all tokens NOT matching the query\n" +
+		"Queries may use good, bad, good%, bad% and length with < <= > >= = !=,\n" +
+		"prefix \"text\", regex \"pattern\" and combine them with and, or, not\n" +
+		"and parentheses.\n" +
+		"-t, --top [number] == Report the given number of tokens which score\n" +
+		"highest, to the output file or the console, instead of all tokens\n" +
+		"-tb, --top-by [ spam | bad | bad% | good | good% ] == what --top ranks\n" +
+		"the tokens by (default: spam, the chance a message with the token is spam)\n" +
 		"-o, --outputfile [filename] == path to program output file\n" +
 		"-m, --merge [filename] == path to XML or .dat file to merge with inputfile\n" +
+		"-a, --merge-all [filename ...] == paths to any number of XML or .dat files\n" +
+		"to merge with inputfile in a single pass. Requires -o and -f xml or data.\n" +
+		"-mb, --memory-budget [megabytes] == memory that --merge-all may use for\n" +
+		"tokens before spilling them to disk (default: a quarter of the heap)\n" +
+		"-s, --stats [filename ...] == print the message and token counts of the\n" +
+		"inputfile and any other training.dat files given, one line per file,\n" +
+		"without loading their tokens\n" +
+		"-l, --lookup [token] [filename ...] == print the counts of a token in the\n" +
+		"inputfile and any other training.dat files given, using an index kept\n" +
+		"next to each file (filename.idx), which is built the first time\n" +
+		"-c, --score [mbox ...] == score every message of the given mbox files\n" +
+		"against the inputfile, writing one verdict per message to the output\n" +
+		"file or the console\n" +
+		"-w, --workers [number] == threads that --score tokenizes and scores\n" +
+		"messages on (default: one per processor)\n" +
 		"-i, --inputfile [filename] == path to Mozilla training.dat\n\n" +
 		"Please note that the input file must include the training.dat\n" +
 		"filename, e.g. [path-to-profile]/xxxxxxxx.slt/training.dat\n";
@@ -197,16 +226,16 @@ public class Analyzer {
 
 		// Read in the number of tokens
 		inFile.read(inBytes);
-		int tokenCount = Globals.makeInt(inBytes);
+		int tokenCount = IntCodec.getInt(inBytes, 0);
 
 		// Read in the length of the token
 		inFile.read(inBytes);
-		int tokenLength = Globals.makeInt(inBytes);
+		int tokenLength = IntCodec.getInt(inBytes, 0);
 		
 		// Read in the token
 		byte[] bytes = new byte[tokenLength];
 		int a = inFile.read(bytes);
-		String tokenString = new String(bytes);  // seems to be better if there is no encoding given
+		String tokenString = Globals.decodeToken(bytes, 0, bytes.length);
 
 		// Pass the new MozillaSpamToken back to the caller.
 		return new MozillaSpamToken(tokenString,
@@ -236,18 +265,49 @@ public class Analyzer {
 			boolean displayOutput
 	) throws IOException {
 
+		return parseTrainingFile(trainingDatPath, displayOutput, null);
+	}
+
+	/** Reads in token data from the given file and places it in
+	 * 	a TrainingData for easy access, keeping the tokens in the
+	 *  given dictionary.
+	 *
+	 * @param trainingDatPath	The path to the Mozilla Bayesian
+	 * 							Filter training file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 * @param dictionary	The dictionary of the job that the file
+	 * 						is loaded for, or null to keep the
+	 * 						tokens in a store of their own.
+	 *
+	 * @return A TrainingData which encapsulates the training
+	 * 			file's data, or null if an error was encountered
+	 * 			while parsing the file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the training file.
+	 */
+	public static TrainingData parseTrainingFile(
+			String trainingDatPath,
+			boolean displayOutput,
+			TokenDictionary dictionary
+	) throws IOException {
+
 		// If there's no path, return null.
 		if (trainingDatPath == null) {
 			return null;
 		}
 
 		File inputFile = new File(trainingDatPath);
-		FileInputStream inStream = null;
+		DataInputStream inStream = null;
 
 		// Check that the input file exists.
 		if (inputFile.exists()) {
 
-			inStream = new FileInputStream(inputFile);
+			// Buffer the file, as every token takes three reads.
+			inStream = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(inputFile), TrainingData.OUTPUT_BUFFER_SIZE));
 
 		} else {
 
@@ -263,6 +323,8 @@ public class Analyzer {
 
 		if (!checkHeader(inBytes)) {
 
+			inStream.close();
+
 			if (displayOutput) {
 
 				System.err.println(trainingDatPath +
@@ -276,16 +338,13 @@ public class Analyzer {
 		TrainingData retTrainer = new TrainingData();
 
 		// Read in the number of good emails processed.
-		inStream.read(inBytes);
-		int numGoodMsgs = Globals.makeInt(inBytes);
+		int numGoodMsgs = inStream.readInt();
 
 		// Read in the number of bad emails processed.
-		inStream.read(inBytes);
-		int numBadMsgs = Globals.makeInt(inBytes);
+		int numBadMsgs = inStream.readInt();
 
 		// Read in the number of Good tokens from the file.
-		inStream.read(inBytes);
-		int numGoodTokens = Globals.makeInt(inBytes);
+		int numGoodTokens = inStream.readInt();
 
 		retTrainer.setGoodMessageCount(numGoodMsgs);
 		retTrainer.setBadMessageCount(numBadMsgs);
@@ -298,14 +357,35 @@ public class Analyzer {
 			System.out.print("Now processing " + numGoodTokens + " good tokens");
 		}
 
-		// TreeSet automatically sorts all of the elements,
-		// so take advantage of that here.
-		TreeSet goodTokens = new TreeSet();
+		// All of the tokens go straight into a single store. A
+		// token which is found in both sections simply has its
+		// bad count added to the good count it already has.
+		TokenStore tokenStore = ((dictionary == null)?
+			(TokenStore) new OpenAddressingTokenStore() :
+			new DictionaryTokenStore(dictionary));
+
+		// Tokens are kept as the bytes in the file, and are only
+		// decoded if they are ever displayed. They are read into
+		// this array, which is reused, since the store copies
+		// them into its own.
+		byte[] tokenBytes = new byte[256];
+
+		// The count and length of each record are read into this
+		// array with one call, and decoded where they lie.
+		byte[] recordBytes = new byte[2 * IntCodec.INT_SIZE];
+
+		// The number of bytes of the file not read yet, which no
+		// token length may exceed. The header is already read.
+		long bytesLeft = inputFile.length() - 4 * IntCodec.INT_SIZE;
 
-		// Go through and add all of the good tokens to a
-		// "Good Token" set
+		// Go through and add all of the good tokens to the store.
 		for (int i = 0; i < numGoodTokens; i++) {
-			goodTokens.add(readNextToken(inStream, inBytes, true));
+
+			tokenBytes = readTokenRecord(inStream, recordBytes, tokenBytes, bytesLeft, tokenStore, true);
+
+			// The length of the record just read is still in
+			// recordBytes.
+			bytesLeft -= recordBytes.length + IntCodec.getInt(recordBytes, IntCodec.INT_SIZE);
 
 			// Every numTokensBeforeTick tokens, print out a .
 			// so that the user knows that the program is
@@ -316,8 +396,8 @@ public class Analyzer {
 		}
 
 		// Read in the number of Bad tokens from the file.
-		inStream.read(inBytes);
-		int numBadTokens = Globals.makeInt(inBytes);
+		int numBadTokens = inStream.readInt();
+		bytesLeft -= IntCodec.INT_SIZE;
 
 		if (displayOutput) {
 
@@ -325,14 +405,11 @@ public class Analyzer {
 			System.out.print("\nNow processing " + numBadTokens + " bad tokens");
 		}
 
-		// TreeSet automatically sorts all of the elements,
-		// so take advantage of that here.
-		TreeSet badTokens = new TreeSet();
-
-		// Go through and add all of the bad tokens to a
-		// "Bad Token" vector
+		// Go through and add all of the bad tokens to the store.
 		for (int i = 0; i < numBadTokens; i++) {
-			badTokens.add(readNextToken(inStream, inBytes, false));
+
+			tokenBytes = readTokenRecord(inStream, recordBytes, tokenBytes, bytesLeft, tokenStore, false);
+			bytesLeft -= recordBytes.length + IntCodec.getInt(recordBytes, IntCodec.INT_SIZE);
 
 			// Every numTokensBeforeTick tokens, print out a .
 			// so that the user knows that the program is
@@ -347,20 +424,71 @@ public class Analyzer {
 
 		if (displayOutput) {
 
-			// Terminate the line, and print a console status message.
-			System.out.println("\nMerging token lists...");
+			// Terminate the line of ...s that the loops created.
+			System.out.println();
 		}
 
-		// Merge the tokens into a single list.
-		TreeSet mergedTokens = mergeTokenLists(goodTokens, badTokens);
+		// Add the new token store to the return class.
+		retTrainer.setTokenStore(tokenStore);
+
+		return retTrainer;
+	}
+
+	/** Reads the next token record from a training file and adds
+	 *  it to the given store as raw bytes.
+	 *
+	 * @param inStream	The stream to read from, positioned at the
+	 * 					start of a record.
+	 * @param recordBytes	An 8-byte buffer for the token's count
+	 * 						and length.
+	 * @param tokenBytes	A buffer for the token's bytes.
+	 * @param bytesLeft	The number of bytes of the file from the
+	 * 					start of the record on.
+	 * @param tokenStore	The store to add the token to.
+	 * @param isGood	true if the token is a good token, false if
+	 * 					it is a bad one.
+	 *
+	 * @return The buffer, or a bigger one if the token didn't fit.
+	 * 			Pass it back in for the next record.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading, or the file is truncated or
+	 * 						corrupt.
+	 */
+	private static byte[] readTokenRecord(
+			DataInputStream inStream,
+			byte[] recordBytes,
+			byte[] tokenBytes,
+			long bytesLeft,
+			TokenStore tokenStore,
+			boolean isGood
+	) throws IOException {
 
-		// Add the new, merged token set to the return class.
-		retTrainer.setTokenSet(mergedTokens);
+		// One bulk read rather than the eight single-byte reads
+		// that two readInt()s would make.
+		inStream.readFully(recordBytes, 0, recordBytes.length);
 
-		// Set the token counts for this new list.
-		retTrainer.validateTokenCount();
+		int tokenCount = IntCodec.getInt(recordBytes, 0);
+		int tokenLength = IntCodec.getInt(recordBytes, IntCodec.INT_SIZE);
 
-		return retTrainer;
+		// Check the length against what is left of the file
+		// before making room for it, so that a corrupt length is
+		// reported as such rather than running out of memory.
+		if ((tokenLength < 0) || (tokenLength > bytesLeft - recordBytes.length)) {
+			throw new IOException("Corrupt token file: bad token length " + tokenLength);
+		}
+
+		if (tokenLength > tokenBytes.length) {
+			tokenBytes = new byte[Math.max(tokenLength, tokenBytes.length * 2)];
+		}
+
+		inStream.readFully(tokenBytes, 0, tokenLength);
+
+		tokenStore.add(tokenBytes, 0, tokenLength,
+			(isGood ? tokenCount : 0),
+			(isGood ? 0 : tokenCount));
+
+		return tokenBytes;
 	}
 
 	/** Reads in token data from the given XML file and places it
@@ -382,6 +510,8 @@ public class Analyzer {
 	 * 							parsing the given XML file.
 	 * @throws ParserConfigurationException If the XML parser was
 	 * 										 misconfigured.
+	 *
+	 * @see XMLTrainingFileReader#parseXMLTrainingFile(String, boolean)
 	 */
 	public static TrainingData parseXMLTrainingFile(
 			String trainingXMLPath,
@@ -461,15 +591,19 @@ public class Analyzer {
 			// Get the set of tokens from the XML document.
 			NodeList tokenList = trainingDoc.getElementsByTagName("token");
 
-			// Create a new MozillaSpamToken list.
-			TreeSet tokenSet = new TreeSet();
+			// Create a new token store.
+			TokenStore tokenStore = new OpenAddressingTokenStore(tokenList.getLength(), tokenList.getLength() * 8);
+
+			// Names are encoded back to the bytes they had in the
+			// file, as XMLTrainingFileReader does.
+			CharsetEncoder nameEncoder = XMLTrainingFileReader.getDocumentCharset(trainingDoc.getXmlEncoding()).newEncoder();
+			byte[] tokenBytes = null;
 
 			// Create these here to avoid unnecessary object creation
 			// inside the loop.
 			String tokenString = null;
 			int goodTokens = -1;
 			int badTokens = -1;
-			MozillaSpamToken newToken = null;
 			Node tokenNode = null;
 			Node tokenSubNode = null;
 			NodeList childNodes = null;
@@ -538,12 +672,9 @@ public class Analyzer {
 					}
 				}
 
-				// Create a new MozillaSpamToken for the given
-				// token data.
-				newToken = new MozillaSpamToken(tokenString, goodTokens, badTokens);
-
-				// Add the token to the TrainingData's set.
-				tokenSet.add(newToken);
+				// Add the token data to the TrainingData's store.
+				tokenBytes = XMLTrainingFileReader.encodeName(tokenString, nameEncoder);
+				tokenStore.add(tokenBytes, 0, tokenBytes.length, goodTokens, badTokens);
 			}
 
 			if (displayOutput) {
@@ -553,12 +684,9 @@ public class Analyzer {
 				System.out.println();
 			}
 
-			// Assign the newly constructed token set to the
+			// Assign the newly constructed token store to the
 			// TrainingData to be returned.
-			retTrainer.setTokenSet(tokenSet);
-
-			// Set up the token counts inside the TrainingData.
-			retTrainer.validateTokenCount();
+			retTrainer.setTokenStore(tokenStore);
 
 		} else {
 
@@ -574,89 +702,314 @@ public class Analyzer {
 		return retTrainer;
 	}
 
-	/** Merges two token lists into a third, new TreeSet. This
-	 *  method will intelligently merge tokens, e.g. if the token
-	 * 	'foo' appears in goodTokens with goodCount 5 and badCount
-	 *  0 and also appears in badTokens with goodCount 0 and
-	 * 	badCount 23, then the returned list will contain a single
-	 * 	token 'foo' with goodCount 5 and badCount 23.
+	/** Reads in token data from the given file, which may be
+	 * 	either a Mozilla Bayesian Filter training file or an XML
+	 * 	token file. The training file format is tried first.
+	 *
+	 * @param tokenFilePath	The path to the token file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 *
+	 * @return A TrainingData which encapsulates the file's data,
+	 * 			or null if it was neither kind of token file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the file.
+	 */
+	public static TrainingData parseTokenFile(
+			String tokenFilePath,
+			boolean displayOutput
+	) throws IOException {
+
+		return parseTokenFile(tokenFilePath, displayOutput, null);
+	}
+
+	/** Reads in token data from the given file, which may be
+	 * 	either a Mozilla Bayesian Filter training file or an XML
+	 * 	token file, keeping the tokens in the given dictionary.
+	 *
+	 * @param tokenFilePath	The path to the token file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 * @param dictionary	The dictionary of the job that the file
+	 * 						is loaded for, or null to keep the
+	 * 						tokens in a store of their own.
+	 *
+	 * @return A TrainingData which encapsulates the file's data,
+	 * 			or null if it was neither kind of token file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the file.
+	 */
+	public static TrainingData parseTokenFile(
+			String tokenFilePath,
+			boolean displayOutput,
+			TokenDictionary dictionary
+	) throws IOException {
+
+		if (displayOutput) {
+
+			System.out.println("Checking if " + tokenFilePath + " is a Mozilla token file...");
+		}
+
+		TrainingData trainer = MappedTrainingFileReader.parseTrainingFile(tokenFilePath, displayOutput, dictionary);
+
+		// Wasn't binary, try XML.
+		if (trainer == null) {
+
+			if (displayOutput) {
+
+				System.out.println("Checking if " + tokenFilePath + " is an XML token file...");
+			}
+
+			try {
+
+				trainer = XMLTrainingFileReader.parseXMLTrainingFile(tokenFilePath, displayOutput, dictionary);
+
+			} catch (XMLStreamException xse) {
+
+				// Let the user know what was wrong with the file.
+				if (displayOutput) {
+
+					System.err.println(xse.getMessage());
+				}
+			}
+		}
+
+		return trainer;
+	}
+
+	/** Merges two token stores into a third, new TokenStore.
+	 *  This method will intelligently merge tokens, e.g. if the
+	 * 	token 'foo' appears in goodTokens with goodCount 5 and
+	 * 	badCount 0 and also appears in badTokens with goodCount 0
+	 * 	and badCount 23, then the returned store will contain a
+	 * 	single token 'foo' with goodCount 5 and badCount 23.
+	 *  Neither of the given stores is changed.
 	 *
 	 * 	The names of the variables reflect the most common use of
 	 * 	this method, which is merging the good-only tokens with
-	 * 	the bad-only tokens that were just read in from a Mozilla
-	 * 	training file, however it will work properly for two
-	 * 	complete token lists that contain both good and bad
-	 * 	token values.
+	 * 	the bad-only tokens of a Mozilla training file, however
+	 * 	it will work properly for two complete token stores that
+	 * 	contain both good and bad token values.
+	 *
+	 *  The merge is a merge-join: the sorted views of both stores
+	 *  are walked side by side in a single linear pass, and the
+	 *  merged tokens are appended to a presized store in sorted
+	 *  order. That means the returned store never has to grow,
+	 *  and its own sorted view comes for free.
 	 *
-	 * @param goodTokens A TreeSet of good tokens to be merged.
-	 * @param badTokens A TreeSet of bad tokens to be merged.
+	 *  If both stores keep their tokens in the same dictionary,
+	 *  so does the merged store, and the tokens are carried over
+	 *  by ID without copying any bytes.
 	 *
-	 * @return A TreeSet which contains the combined values of
+	 * @param goodTokens A TokenStore of good tokens to be merged.
+	 * @param badTokens A TokenStore of bad tokens to be merged.
+	 *
+	 * @return A TokenStore which contains the combined values of
+	 * 			both stores.
 	 */
-	public static TreeSet mergeTokenLists(
-			TreeSet goodTokens,
-			TreeSet badTokens
+	public static TokenStore mergeTokenLists(
+			TokenStore goodTokens,
+			TokenStore badTokens
 	) {
 
-		// Use goodTokens as the basis for the new, merged set.
-		TreeSet mergedSet = new TreeSet(goodTokens);
+		// Stores which were loaded from a file we wrote are
+		// already in order, in which case these cost nothing.
+		int[] goodOrder = goodTokens.getSortedIndices();
+		int[] badOrder = badTokens.getSortedIndices();
+
+		// Size the new store so that it never has to grow, even
+		// if the two stores have no tokens in common.
+		TokenStore mergedStore = createMergedStore(
+			goodTokens, goodOrder, 0, goodOrder.length,
+			badTokens, badOrder, 0, badOrder.length);
+
+		mergeSortedRanges(
+			goodTokens, goodOrder, 0, goodOrder.length,
+			badTokens, badOrder, 0, badOrder.length,
+			mergedStore);
+
+		return mergedStore;
+	}
+
+	/** Merge-joins a range of the sorted view of one store with a
+	 *  range of the sorted view of another, appending the merged
+	 *  tokens to the given store in sorted order. This is the
+	 *  heart of mergeTokenLists(), and is also used by
+	 *  ParallelTokenMerger to merge one partition at a time.
+	 *
+	 * @param goodTokens	The first store.
+	 * @param goodOrder	The sorted view of the first store.
+	 * @param goodStart	The first position of goodOrder to merge.
+	 * @param goodEnd	One past the last position of goodOrder
+	 * 					to merge.
+	 * @param badTokens	The second store.
+	 * @param badOrder	The sorted view of the second store.
+	 * @param badStart	The first position of badOrder to merge.
+	 * @param badEnd	One past the last position of badOrder to
+	 * 					merge.
+	 * @param mergedStore	The store to append the merged tokens
+	 * 						to.
+	 */
+	static void mergeSortedRanges(
+			TokenStore goodTokens,
+			int[] goodOrder,
+			int goodStart,
+			int goodEnd,
+			TokenStore badTokens,
+			int[] badOrder,
+			int badStart,
+			int badEnd,
+			TokenStore mergedStore
+	) {
 
-		// Get an iterator for our set of bad tokens.
-		Iterator badSetIter = badTokens.iterator();
+		int goodPos = goodStart;
+		int badPos = badStart;
 
 		// Create these here to avoid unnecessary object creation
 		// inside the loop.
-		MozillaSpamToken tempToken = null;
-		MozillaSpamToken goodToken = null;
-
-		// Loop through the entire list.
-		while (badSetIter.hasNext()) {
-
-			// Get a reference to the next token.
-			tempToken = (MozillaSpamToken) badSetIter.next();
-
-			// Due to the nature of MozillaSpamToken.compareTo(),
-			// two tokens will be considered equal if they have
-			// the same tokenString. Use that here to determine
-			// if a given bad token matches a given good token.
-			if (mergedSet.contains(tempToken)) {
-
-				// This depends upon 2 things from the contract
-				// for the method tailSet():
-				// 1. The original set backs this one up, i.e.
-				// changes here take effect in the parent set
-				// 2. These elements will be greater than or equal
-				// to tempToken, which means tempToken will be the
-				// first element in the set.
-				goodToken = (MozillaSpamToken) mergedSet.tailSet(tempToken).first();
-
-				// Add the bad token count in the old list to the
-				// bad token count in the merged list.
-				goodToken.setBadTokenCount(
-					goodToken.getBadTokenCount() +
-					tempToken.getBadTokenCount()
-				);
-
-				// Add the good token count in the old list to the
-				// god token count in the merged list.
-				goodToken.setGoodTokenCount(
-					goodToken.getGoodTokenCount() +
-					tempToken.getGoodTokenCount()
-				);
+		int goodIndex = -1;
+		int badIndex = -1;
+		int comparison = 0;
+
+		// Walk both sorted views at once, always taking the
+		// smaller of the two current tokens.
+		while ((goodPos < goodEnd) || (badPos < badEnd)) {
+
+			if (goodPos == goodEnd) {
+
+				// Only bad tokens are left.
+				comparison = 1;
+
+			} else if (badPos == badEnd) {
+
+				// Only good tokens are left.
+				comparison = -1;
 
 			} else {
 
-				// If it's not in the set, add it in.
-				mergedSet.add(tempToken);
+				comparison = TokenSorter.compare(
+					goodTokens, goodOrder[goodPos],
+					badTokens, badOrder[badPos]);
+			}
+
+			if (comparison < 0) {
+
+				goodIndex = goodOrder[goodPos++];
+				copyToken(goodTokens, goodIndex, mergedStore, 0, 0);
+
+			} else if (comparison > 0) {
+
+				badIndex = badOrder[badPos++];
+				copyToken(badTokens, badIndex, mergedStore, 0, 0);
+
+			} else {
+
+				// The token is in both stores, so add the counts
+				// of the bad one to those of the good one.
+				goodIndex = goodOrder[goodPos++];
+				badIndex = badOrder[badPos++];
+
+				copyToken(goodTokens, goodIndex, mergedStore,
+					badTokens.getGoodCount(badIndex),
+					badTokens.getBadCount(badIndex));
 			}
 		}
+	}
+
+	/** Creates an empty store to merge ranges of two stores into,
+	 *  with room for every token of both ranges. If the two stores
+	 *  share a dictionary, the new store uses it as well, so that
+	 *  copyToken() can carry the tokens over by ID.
+	 *
+	 *  The ranges are given as for mergeSortedRanges().
+	 *
+	 * @return A new, empty store for the merged tokens.
+	 */
+	static TokenStore createMergedStore(
+			TokenStore goodTokens,
+			int[] goodOrder,
+			int goodStart,
+			int goodEnd,
+			TokenStore badTokens,
+			int[] badOrder,
+			int badStart,
+			int badEnd
+	) {
+
+		int expectedTokens = (goodEnd - goodStart) + (badEnd - badStart);
+		TokenDictionary dictionary = DictionaryTokenStore.getCommonDictionary(goodTokens, badTokens);
 
-		// Blank these out to help the garbage collector realize
-		// that references no longer exist to these objects.
-		tempToken = null;
-		goodToken = null;
+		if (dictionary != null) {
+			return new DictionaryTokenStore(dictionary, expectedTokens);
+		}
 
-		return mergedSet;
+		return new OpenAddressingTokenStore(
+			expectedTokens,
+			sumTokenLengths(goodTokens, goodOrder, goodStart, goodEnd) +
+			sumTokenLengths(badTokens, badOrder, badStart, badEnd));
+	}
+
+	/** Adds up the lengths of a range of tokens.
+	 *
+	 * @param tokenStore	The store holding the tokens.
+	 * @param order	A view of the store's indices.
+	 * @param start	The first position of the view to count.
+	 * @param end	One past the last position of the view to
+	 * 				count.
+	 *
+	 * @return The total length in bytes of the tokens.
+	 */
+	static int sumTokenLengths(TokenStore tokenStore, int[] order, int start, int end) {
+
+		int totalBytes = 0;
+
+		for (int i = start; i < end; i++) {
+			totalBytes += tokenStore.getTokenLength(order[i]);
+		}
+
+		return totalBytes;
+	}
+
+	/** Adds a single token of one store, with its counts plus the
+	 * 	given extra counts, to another store.
+	 *
+	 * @param source	The store to copy the token from.
+	 * @param index	The index of the token in the source store.
+	 * @param dest	The store to add the token to.
+	 * @param extraGood	A number to add to the good count.
+	 * @param extraBad	A number to add to the bad count.
+	 */
+	private static void copyToken(
+			TokenStore source,
+			int index,
+			TokenStore dest,
+			int extraGood,
+			int extraBad
+	) {
+
+		// Stores on the same dictionary can skip the bytes and
+		// go straight to the ID.
+		if ((source instanceof DictionaryTokenStore) &&
+				(DictionaryTokenStore.getCommonDictionary(source, dest) != null)) {
+
+			((DictionaryTokenStore) dest).addId(
+				((DictionaryTokenStore) source).getId(index),
+				source.getGoodCount(index) + extraGood,
+				source.getBadCount(index) + extraBad);
+
+			return;
+		}
+
+		dest.add(
+			source.getTokenArray(index),
+			source.getTokenOffset(index),
+			source.getTokenLength(index),
+			source.getGoodCount(index) + extraGood,
+			source.getBadCount(index) + extraBad);
 	}
 
 	/** Write the given token data to the given output file in
@@ -688,6 +1041,25 @@ public class Analyzer {
 		// Create a new output file.
 		outputFile.createNewFile();
 
+		// Binary output doesn't go through a stream at all. It is
+		// built up in large direct buffers and handed straight to
+		// the file's channel in gathering writes.
+		if (outputType == OUTPUT_DATA) {
+
+			FileOutputStream outFile = new FileOutputStream(outputFile);
+
+			try {
+
+				trainer.outputTrainingDataFileContents(outFile.getChannel());
+
+			} finally {
+
+				outFile.close();
+			}
+
+			return;
+		}
+
 		// Create a stream for that output file. This is a
 		// BufferedOutputStream so that we can gain the
 		// advantages of doing large writes while at the same
@@ -724,13 +1096,6 @@ public class Analyzer {
 
 				break;
 
-			case OUTPUT_DATA:
-
-				// Write the token data to a well-formed data file
-				trainer.outputTrainingDataFileContents(outStream);
-
-				break;
-
 			default:
 
 				// What the? Unknown format output type.
@@ -756,6 +1121,7 @@ public class Analyzer {
 		String trainingDatPath = null;
 		String outputFilename = null;
 		String mergeFilename = null;
+		Vector<String> mergeAllFilenames = null;
 		boolean displayOutput = true;
 		int outputType = -1;
 		boolean launchGUI = false;
@@ -763,6 +1129,16 @@ public class Analyzer {
 		boolean helpFlag = false;
 		int removeGood = -1;
 		int removeBad = -1;
+		long memoryBudget = -1;
+		TokenPredicate pruneQuery = null;
+		TokenPredicate keepQuery = null;
+		int topCount = -1;
+		int topMetric = -1;
+		Vector<String> statsFilenames = null;
+		String lookupToken = null;
+		Vector<String> lookupFilenames = null;
+		Vector<String> scoreFilenames = null;
+		int numWorkers = -1;
 
 		// A useful flag for determining if an error has occurred
 		// during parsing of the command-line.
@@ -913,6 +1289,106 @@ public class Analyzer {
 					// one.
 					i++;
 
+				// Check for the 'merge all' argument.
+				} else if (args[i].equalsIgnoreCase("-a") ||
+							args[i].equalsIgnoreCase("--merge-all")) {
+
+					// If mergeAllFilenames is not null, we've seen
+					// this argument before. Set the dupFlag.
+					if (mergeAllFilenames == null) {
+
+						mergeAllFilenames = new Vector<String>();
+
+						// Every following argument up to the next
+						// flag is a file to be merged.
+						while ((i + 1 < args.length) && !args[i+1].startsWith("-")) {
+
+							mergeAllFilenames.add(args[i+1]);
+							i++;
+						}
+
+						// We need at least one file.
+						if (mergeAllFilenames.isEmpty()) {
+							throw new ArrayIndexOutOfBoundsException();
+						}
+
+					} else {
+
+						dupFlag = true;
+					}
+
+				// Check for the 'stats' argument.
+				} else if (args[i].equalsIgnoreCase("-s") ||
+							args[i].equalsIgnoreCase("--stats")) {
+
+					// If statsFilenames is not null, we've seen
+					// this argument before. Set the dupFlag.
+					if (statsFilenames == null) {
+
+						statsFilenames = new Vector<String>();
+
+						// Every following argument up to the next
+						// flag is a file to be summarised. There
+						// may be none, if -i is given instead.
+						while ((i + 1 < args.length) && !args[i+1].startsWith("-")) {
+
+							statsFilenames.add(args[i+1]);
+							i++;
+						}
+
+					} else {
+
+						dupFlag = true;
+					}
+
+				// Check for the 'lookup' argument.
+				} else if (args[i].equalsIgnoreCase("-l") ||
+							args[i].equalsIgnoreCase("--lookup")) {
+
+					// If lookupToken is not null, we've seen this
+					// argument before. Set the dupFlag.
+					if (lookupToken == null) {
+
+						// The token itself may start with a -.
+						lookupToken = args[i+1];
+						i++;
+
+						lookupFilenames = new Vector<String>();
+
+						// Every following argument up to the next
+						// flag is a file to look in.
+						while ((i + 1 < args.length) && !args[i+1].startsWith("-")) {
+
+							lookupFilenames.add(args[i+1]);
+							i++;
+						}
+
+					} else {
+
+						dupFlag = true;
+					}
+
+				// Check for the 'memory budget' argument.
+				} else if (args[i].equalsIgnoreCase("-mb") ||
+							args[i].equalsIgnoreCase("--memory-budget")) {
+
+					// If memoryBudget is not -1, we've seen this
+					// argument before. Set the dupFlag.
+					if (memoryBudget == -1) {
+
+						// The budget is given in megabytes.
+						memoryBudget = Long.parseLong(args[i+1]) * 1024 * 1024;
+
+					} else {
+
+						dupFlag = true;
+					}
+
+					// Increment i since we already handled the
+					// next argument during the handling of this
+					// one.
+					i++;
+
 				// Check for the 'input file' argument.
 				} else if (args[i].equalsIgnoreCase("-i") ||
 							args[i].equalsIgnoreCase("--inputfile")) {
@@ -976,6 +1452,147 @@ public class Analyzer {
 					// one.
 					i++;
 
+				// Check for the 'prune' argument.
+				} else if (args[i].equalsIgnoreCase("-p") ||
+							args[i].equalsIgnoreCase("--prune")) {
+
+					// If pruneQuery is not null, we've seen this
+					// argument before. Set the dupFlag.
+					if (pruneQuery == null) {
+
+						// Parse the query now so that a mistake
+						// is reported before any work is done.
+						pruneQuery = TokenQueryParser.parse(args[i+1]);
+
+					} else {
+
+						dupFlag = true;
+					}
+
+					// Increment i since we already handled the
+					// next argument during the handling of this
+					// one.
+					i++;
+
+				// Check for the 'keep' argument.
+				} else if (args[i].equalsIgnoreCase("-k") ||
+							args[i].equalsIgnoreCase("--keep")) {
+
+					// If keepQuery is not null, we've seen this
+					// argument before. Set the dupFlag.
+					if (keepQuery == null) {
+
+						keepQuery = TokenQueryParser.parse(args[i+1]);
+
+					} else {
+
+						dupFlag = true;
+					}
+
+					// Increment i since we already handled the
+					// next argument during the handling of this
+					// one.
+					i++;
+
+				// Check for the 'score' argument.
+				} else if (args[i].equalsIgnoreCase("-c") ||
+							args[i].equalsIgnoreCase("--score")) {
+
+					// If scoreFilenames is not null, we've seen
+					// this argument before. Set the dupFlag.
+					if (scoreFilenames == null) {
+
+						scoreFilenames = new Vector<String>();
+
+						// Every following argument up to the next
+						// flag is an mbox file to be scored.
+						while ((i + 1 < args.length) && !args[i+1].startsWith("-")) {
+
+							scoreFilenames.add(args[i+1]);
+							i++;
+						}
+
+						// We need at least one file.
+						if (scoreFilenames.isEmpty()) {
+							throw new ArrayIndexOutOfBoundsException();
+						}
+
+					} else {
+
+						dupFlag = true;
+					}
+
+				// Check for the 'workers' argument.
+				} else if (args[i].equalsIgnoreCase("-w") ||
+							args[i].equalsIgnoreCase("--workers")) {
+
+					// If numWorkers is not -1, we've seen this
+					// argument before. Set the dupFlag.
+					if (numWorkers == -1) {
+
+						numWorkers = Integer.parseInt(args[i+1]);
+
+						if (numWorkers < 1) {
+							throw new NumberFormatException("The number of workers must be at least 1: " + args[i+1]);
+						}
+
+					} else {
+
+						dupFlag = true;
+					}
+
+					// Increment i since we already handled the
+					// next argument during the handling of this
+					// one.
+					i++;
+
+				// Check for the 'top' argument.
+				} else if (args[i].equalsIgnoreCase("-t") ||
+							args[i].equalsIgnoreCase("--top")) {
+
+					// If topCount is not -1, we've seen this
+					// argument before. Set the dupFlag.
+					if (topCount == -1) {
+
+						topCount = Integer.parseInt(args[i+1]);
+
+					} else {
+
+						dupFlag = true;
+					}
+
+					// Increment i since we already handled the
+					// next argument during the handling of this
+					// one.
+					i++;
+
+				// Check for the 'top by' argument.
+				} else if (args[i].equalsIgnoreCase("-tb") ||
+							args[i].equalsIgnoreCase("--top-by")) {
+
+					// If topMetric is not -1, we've seen this
+					// argument before. Set the dupFlag.
+					if (topMetric == -1) {
+
+						topMetric = TopTokenReport.parseMetric(args[i+1]);
+
+						if (topMetric == -1) {
+
+							System.err.println("An invalid metric was specified: " + args[i+1]);
+							System.err.println(PROGRAM_USAGE);
+							System.exit(INVALID_ARG);
+						}
+
+					} else {
+
+						dupFlag = true;
+					}
+
+					// Increment i since we already handled the
+					// next argument during the handling of this
+					// one.
+					i++;
+
 				// If we've gotten here, we have an invalid argument.
 				} else {
 
@@ -1009,6 +1626,14 @@ public class Analyzer {
 			System.err.println(nfe.getMessage());
 			System.err.println(PROGRAM_USAGE);
 			System.exit(INVALID_ARG);
+
+		// We'll get this if the query given to -p or -k could
+		// not be understood.
+		} catch (ParseException pe) {
+
+			System.err.println("Invalid query: " + pe.getMessage());
+			System.err.println(PROGRAM_USAGE);
+			System.exit(INVALID_ARG);
 		}
 
 		if (verFlag) {
@@ -1045,8 +1670,204 @@ public class Analyzer {
 			System.exit(SUCCESS);
 		}
 
+		// Looking up a token only reads the index and the records
+		// for that token, so it is handled on its own.
+		if (lookupToken != null) {
+
+			if (trainingDatPath != null) {
+				lookupFilenames.add(0, trainingDatPath);
+			}
+
+			if (lookupFilenames.isEmpty()) {
+
+				System.err.println("--lookup requires at least one training.dat file.");
+				System.err.println(PROGRAM_USAGE);
+				System.exit(INVALID_ARG);
+			}
+
+			boolean allRead = true;
+
+			if (displayOutput) {
+
+				// Console header line
+				System.out.println("# file\tgood count\tbad count");
+			}
+
+			for (int i = 0; i < lookupFilenames.size(); i++) {
+
+				String lookupPath = lookupFilenames.get(i);
+
+				try {
+
+					TrainingFileIndex fileIndex = TrainingFileIndex.open(lookupPath);
+
+					try {
+
+						MozillaSpamToken token = fileIndex.lookup(lookupToken);
+
+						// A token that isn't there has no counts.
+						if (token == null) {
+							System.out.println(lookupPath + "\t0\t0");
+						} else {
+							System.out.println(lookupPath + "\t" + token.getGoodTokenCount() + "\t" + token.getBadTokenCount());
+						}
+
+					} finally {
+
+						fileIndex.close();
+					}
+
+				} catch (IOException ioe) {
+
+					System.err.println(lookupPath + ": " + ioe.getMessage());
+					allRead = false;
+				}
+			}
+
+			System.exit(allRead ? SUCCESS : GEN_ERROR);
+		}
+
+		// Printing stats only reads the header and the length
+		// prefixes of each file, so it is handled on its own.
+		if (statsFilenames != null) {
+
+			if (trainingDatPath != null) {
+				statsFilenames.add(0, trainingDatPath);
+			}
+
+			if (statsFilenames.isEmpty()) {
+
+				System.err.println("--stats requires at least one training.dat file.");
+				System.err.println(PROGRAM_USAGE);
+				System.exit(INVALID_ARG);
+			}
+
+			boolean allRead = true;
+
+			if (displayOutput) {
+
+				// Console header line
+				System.out.println("# file\tgood messages\tbad messages\tgood tokens\tbad tokens");
+			}
+
+			for (int i = 0; i < statsFilenames.size(); i++) {
+
+				String statsPath = statsFilenames.get(i);
+				TrainingFileStats stats = null;
+
+				try {
+
+					stats = TrainingFileStats.read(statsPath);
+
+				} catch (IOException ioe) {
+
+					System.err.println(statsPath + ": " + ioe.getMessage());
+					allRead = false;
+					continue;
+				}
+
+				if (stats == null) {
+
+					System.err.println(statsPath + " is either not a Mozilla Bayesian filter token file or is corrupt.");
+					allRead = false;
+
+				} else {
+
+					// The stats themselves are the point, so they
+					// are printed even with --quiet.
+					System.out.println(statsPath + "\t" + stats);
+				}
+			}
+
+			System.exit(allRead ? SUCCESS : GEN_ERROR);
+		}
+
+		// Merging many files is a batch job which streams straight
+		// to the output file, so it has no need for the GUI.
+		if (mergeAllFilenames != null) {
+
+			if ((outputFilename == null) ||
+				((outputType != OUTPUT_DATA) && (outputType != OUTPUT_XML))) {
+
+				System.err.println("--merge-all requires an output file and a format of xml or data.");
+				System.err.println(PROGRAM_USAGE);
+				System.exit(INVALID_ARG);
+			}
+
+			// The merged tokens are never all in memory at once,
+			// so there is no store to run a query over.
+			if ((pruneQuery != null) || (keepQuery != null)) {
+
+				System.err.println("--prune and --keep cannot be used with --merge-all.");
+				System.err.println(PROGRAM_USAGE);
+				System.exit(INVALID_ARG);
+			}
+
+			// The input file and the merge file, if given, are
+			// merged along with the rest.
+			if (mergeFilename != null) {
+				mergeAllFilenames.add(0, mergeFilename);
+			}
+
+			if (trainingDatPath != null) {
+				mergeAllFilenames.add(0, trainingDatPath);
+			}
+
+			// Default to a share of the heap.
+			if (memoryBudget <= 0) {
+				memoryBudget = TokenFileMerger.getDefaultMemoryBudget();
+			}
+
+			String[] inputPaths = new String[mergeAllFilenames.size()];
+			mergeAllFilenames.copyInto(inputPaths);
+
+			try {
+
+				if (!TokenFileMerger.mergeFiles(
+						inputPaths,
+						new File(outputFilename),
+						outputType,
+						removeGood,
+						removeBad,
+						memoryBudget,
+						displayOutput)) {
+
+					System.exit(GEN_ERROR);
+				}
+
+			} catch (IOException ioe) {
+				ioe.printStackTrace();
+				System.exit(GEN_ERROR);
+			}
+
+			if (displayOutput) {
+
+				// Console status message
+				System.out.println("Program complete. Output has been written to " + outputFilename);
+			}
+
+			System.exit(SUCCESS);
+		}
+
+		// Rank by spam probability unless told otherwise.
+		if (topMetric == -1) {
+			topMetric = TopTokenReport.METRIC_SPAM;
+		}
+
+		// Verdicts written to the console shouldn't be mixed up
+		// with status messages, so that they can be piped.
+		if ((scoreFilenames != null) && (outputFilename == null)) {
+
+			displayOutput = false;
+		}
+
+		if (numWorkers == -1) {
+			numWorkers = Runtime.getRuntime().availableProcessors();
+		}
+
 		// If we haven't specified an output file, launch the GUI.
-		if (outputFilename == null) {
+		// A top report or verdicts go to the console instead.
+		if ((outputFilename == null) && (topCount < 0) && (scoreFilenames == null)) {
 
 			launchGUI = true;
 		}
@@ -1111,44 +1932,26 @@ public class Analyzer {
 
 			}
 
-			if (displayOutput) {
+			// When a second file is merged in, both are loaded
+			// into a dictionary of their own, so that the tokens
+			// they have in common are only kept once and the
+			// merge can go by ID. The dictionary goes away with
+			// the stores of this run.
+			TokenDictionary mergeDictionary = null;
 
-				System.out.println("Checking if " + trainingDatPath + " is a Mozilla token file...");
+			if (mergeFilename != null) {
+				mergeDictionary = new TokenDictionary();
 			}
 
 			// Convert the training data file to a TrainingData
 			// for easier manipulation.
-			TrainingData trainer = parseTrainingFile(trainingDatPath, displayOutput);
+			TrainingData trainer = parseTokenFile(trainingDatPath, displayOutput, mergeDictionary);
 
-			// Wasn't binary, try XML.
+			// If it's null, then it was an invalid file.
 			if (trainer == null) {
 
-				if (displayOutput) {
-
-					System.out.println("Checking if " + trainingDatPath + " is an XML token file...");
-				}
-
-				try {
-
-					trainer = parseXMLTrainingFile(trainingDatPath, displayOutput);
-
-				} catch (ParserConfigurationException pce) {
-
-					// Do nothing, it'll be handled after this
-					// try/catch block.
-
-				} catch (SAXException se) {
-
-					// Do nothing, it'll be handled after this
-					// try/catch block.
-				}
-
-				// If it's still null,then it was an invalid file.
-				if (trainer == null) {
-
-					System.err.println("An error was encountered while reading " + trainingDatPath);
-					System.exit(GEN_ERROR);
-				}
+				System.err.println("An error was encountered while reading " + trainingDatPath);
+				System.exit(GEN_ERROR);
 			}
 
 			if (mergeFilename != null) {
@@ -1168,7 +1971,7 @@ public class Analyzer {
 
 					// Create a new TrainingData from the chosen
 					// file.
-					TrainingData newTrainer = Analyzer.parseTrainingFile(mergeFilePath, displayOutput);
+					TrainingData newTrainer = MappedTrainingFileReader.parseTrainingFile(mergeFilePath, displayOutput, mergeDictionary);
 
 					// Wasn't binary, try XML.
 					if (newTrainer == null) {
@@ -1178,7 +1981,7 @@ public class Analyzer {
 							System.out.println("Checking if " + mergeFilePath + " is an XML token file...");
 						}
 
-						newTrainer = Analyzer.parseXMLTrainingFile(mergeFilePath, displayOutput);
+						newTrainer = XMLTrainingFileReader.parseXMLTrainingFile(mergeFilePath, displayOutput, mergeDictionary);
 					}
 
 					if (newTrainer == null) {
@@ -1204,11 +2007,12 @@ public class Analyzer {
 							trainer.getBadMessageCount()
 						);
 
-						// Assign the new token set.
-						newTrainer.setTokenSet(
-							mergeTokenLists(
-								newTrainer.getTokenSet(),
-								trainer.getTokenSet()
+						// Assign the new token store. Big merges
+						// are spread over all of the processors.
+						newTrainer.setTokenStore(
+							ParallelTokenMerger.mergeTokenLists(
+								newTrainer.getTokenStore(),
+								trainer.getTokenStore()
 							)
 						);
 
@@ -1243,7 +2047,38 @@ public class Analyzer {
 			// values and we set these two values to be negative
 			// by default, if they aren't set then this will do
 			// nothing.
-			trainer.removeTokens(removeGood, removeBad);
+			PruneResult pruneResult = trainer.removeTokens(removeGood, removeBad);
+
+			if (displayOutput && ((removeGood > 0) || (removeBad > 0))) {
+
+				// Console status message
+				System.out.println(pruneResult);
+			}
+
+			// Remove the tokens matching the prune query and those
+			// not matching the keep query. Both are evaluated in a
+			// single pass over the store.
+			TokenPredicate removeQuery = pruneQuery;
+
+			if (keepQuery != null) {
+
+				if (removeQuery == null) {
+					removeQuery = TokenPredicate.not(keepQuery);
+				} else {
+					removeQuery = TokenPredicate.or(removeQuery, TokenPredicate.not(keepQuery));
+				}
+			}
+
+			if (removeQuery != null) {
+
+				pruneResult = TokenPruner.prune(trainer.getTokenStore(), removeQuery.select(trainer));
+
+				if (displayOutput) {
+
+					// Console status message
+					System.out.println(pruneResult);
+				}
+			}
 
 			if (launchGUI) {
 
@@ -1264,6 +2099,89 @@ public class Analyzer {
 				// This will block until the window closes.
 				t.waitForWindow();
 
+			} else if (scoreFilenames != null) {
+
+				File[] mboxFiles = new File[scoreFilenames.size()];
+
+				for (int i = 0; i < mboxFiles.length; i++) {
+					mboxFiles[i] = new File(scoreFilenames.get(i));
+				}
+
+				if (displayOutput) {
+
+					// Console status message
+					System.out.println("Scoring " + mboxFiles.length + " mbox file(s) on " + numWorkers + " thread(s)...");
+				}
+
+				long startTime = System.currentTimeMillis();
+
+				BatchScorer scorer = new BatchScorer(
+					new SpamClassifier(trainer), numWorkers, SpamClassifier.DEFAULT_SPAM_THRESHOLD);
+
+				try {
+
+					if (outputFilename == null) {
+
+						// Write the verdicts to the console.
+						scorer.scoreFiles(mboxFiles, System.out);
+
+					} else {
+
+						FileOutputStream outFile = new FileOutputStream(outputFilename);
+
+						try {
+
+							scorer.scoreFiles(mboxFiles, outFile);
+
+						} finally {
+
+							outFile.close();
+						}
+					}
+
+				} finally {
+
+					scorer.shutdown();
+				}
+
+				if (displayOutput) {
+
+					long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+
+					// Console status message
+					System.out.println("Scored " + scorer.getNumMessages() + " messages ("
+						+ scorer.getNumSpam() + " spam) in " + elapsed + " ms, "
+						+ (scorer.getNumBytes() * 1000 / elapsed / (1024 * 1024)) + " MB/s.");
+					System.out.println("Program complete. Output has been written to " + outputFilename);
+				}
+
+			} else if (topCount >= 0) {
+
+				if (outputFilename == null) {
+
+					// Write the report to the console.
+					TopTokenReport.writeReport(trainer, topMetric, topCount, System.out);
+
+				} else {
+
+					FileOutputStream outFile = new FileOutputStream(outputFilename);
+
+					try {
+
+						TopTokenReport.writeReport(trainer, topMetric, topCount, outFile);
+
+					} finally {
+
+						outFile.close();
+					}
+
+					if (displayOutput) {
+
+						// Console status message
+						System.out.println("Program complete. Output has been written to " + outputFilename);
+					}
+				}
+
 			} else {
 
 				File outputFile = new File(outputFilename);
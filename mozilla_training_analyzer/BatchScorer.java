@@ -0,0 +1,323 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Scores every message of one or more mbox files against a
+ *  SpamClassifier, writing one verdict per message.
+ *
+ *  The work is a three stage pipeline. The calling thread finds
+ *  the messages in the file with a MappedMboxScanner, and hands
+ *  each one, still in the mapped file, to a pool of workers,
+ *  which tokenize and score it. Meanwhile the calling thread
+ *  writes out the verdicts of the oldest messages as they come
+ *  in, so the verdicts always come out in the order of the
+ *  messages in the file, whatever order the workers finish in.
+ *  Only a fixed number of messages are in flight at any time, so
+ *  the memory used doesn't depend on the size of the file.
+ *
+ *  Each worker thread has its own MessageTokenizer and token
+ *  store, which are reused from message to message, while the
+ *  classifier is shared, as it is never changed once it is made.
+ *
+ *  The verdicts are tab-separated text: a header line, then one
+ *  line per message with the mbox file, the number of the message
+ *  in it (from 1), the offset of its "From " line, its spam
+ *  probability and "spam" or "ham".
+ */
+public class BatchScorer {
+
+	/** The number of messages which may be in flight for each
+	 *  worker.
+	 */
+	private static final int MESSAGES_PER_WORKER = 64;
+
+	/** The classifier messages are scored with.
+	 */
+	private SpamClassifier classifier = null;
+
+	/** The spam probability at and above which a message is spam.
+	 */
+	private double spamThreshold = SpamClassifier.DEFAULT_SPAM_THRESHOLD;
+
+	/** The worker pool.
+	 */
+	private ForkJoinPool pool = null;
+
+	/** The most messages in flight at one time.
+	 */
+	private int maxInFlight = 0;
+
+	/** The tokenizer and token store of each worker thread.
+	 */
+	private ThreadLocal<WorkerState> workerState = new ThreadLocal<WorkerState>() {
+
+		protected WorkerState initialValue() {
+			return new WorkerState();
+		}
+	};
+
+	/** The number of messages scored so far.
+	 */
+	private long numMessages = 0;
+
+	/** The number of them which were spam.
+	 */
+	private long numSpam = 0;
+
+	/** The number of bytes of mbox read so far.
+	 */
+	private long numBytes = 0;
+
+	/** Formats the probabilities; always with a dot, whatever the
+	 *  locale. Only used by the calling thread.
+	 */
+	private DecimalFormat format = new DecimalFormat("0.######", new DecimalFormatSymbols(Locale.US));
+
+	/** Creates a new BatchScorer with its own pool of workers.
+	 *  shutdown() should be called once it is no longer needed.
+	 *
+	 * @param classifier	The classifier to score with.
+	 * @param numWorkers	The number of worker threads.
+	 * @param spamThreshold	The spam probability at and above
+	 * 						which a message is spam.
+	 */
+	public BatchScorer(SpamClassifier classifier, int numWorkers, double spamThreshold) {
+
+		this.classifier = classifier;
+		this.spamThreshold = spamThreshold;
+
+		pool = new ForkJoinPool(Math.max(1, numWorkers));
+		maxInFlight = pool.getParallelism() * MESSAGES_PER_WORKER;
+	}
+
+	/** Writes the header line of the verdicts.
+	 *
+	 * @param out	The stream to write to.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing.
+	 */
+	public void writeHeader(OutputStream out) throws IOException {
+		out.write("file\tmessage\toffset\tspam\tverdict\n".getBytes());
+	}
+
+	/** Scores every message of a list of mbox files, writing the
+	 *  header line and then the verdicts.
+	 *
+	 * @param mboxFiles	The mbox files to score, in order.
+	 * @param out	The stream to write the verdicts to. It is
+	 * 				flushed but not closed.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading a file or writing the verdicts.
+	 */
+	public void scoreFiles(File[] mboxFiles, OutputStream out) throws IOException {
+
+		BufferedOutputStream outStream = new BufferedOutputStream(out, TrainingData.OUTPUT_BUFFER_SIZE);
+
+		writeHeader(outStream);
+
+		for (int i = 0; i < mboxFiles.length; i++) {
+			scoreFile(mboxFiles[i], outStream);
+		}
+
+		outStream.flush();
+	}
+
+	/** Scores every message of an mbox file, writing the verdicts
+	 *  without a header line.
+	 *
+	 * @param mboxFile	The mbox file to score.
+	 * @param out	The stream to write the verdicts to. It should
+	 * 				be buffered.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading the file or writing the
+	 * 						verdicts.
+	 */
+	public void scoreFile(File mboxFile, OutputStream out) throws IOException {
+
+		MappedMboxScanner scanner = new MappedMboxScanner(mboxFile);
+
+		try {
+
+			byte[] filename = mboxFile.getPath().getBytes();
+
+			// The messages in flight, oldest first.
+			LinkedList<ScoreTask> inFlight = new LinkedList<ScoreTask>();
+			int messageNumber = 0;
+
+			ByteBuffer message = null;
+
+			while ((message = scanner.nextMessage()) != null) {
+
+				numBytes += message.remaining();
+
+				ScoreTask task = new ScoreTask(message, ++messageNumber, scanner.getMessageOffset());
+				pool.execute(task);
+				inFlight.addLast(task);
+
+				// Wait for the oldest message before reading any
+				// more once the window is full.
+				if (inFlight.size() >= maxInFlight) {
+					writeVerdict(inFlight.removeFirst(), filename, out);
+				}
+			}
+
+			while (!inFlight.isEmpty()) {
+				writeVerdict(inFlight.removeFirst(), filename, out);
+			}
+
+		} finally {
+			scanner.close();
+		}
+	}
+
+	/** Waits for a message to be scored, then writes its verdict.
+	 */
+	private void writeVerdict(ScoreTask task, byte[] filename, OutputStream out) throws IOException {
+
+		task.join();
+
+		boolean isSpam = (task.score >= spamThreshold);
+
+		numMessages++;
+
+		if (isSpam) {
+			numSpam++;
+		}
+
+		StringBuffer line = new StringBuffer(48);
+
+		line.append('\t').append(task.messageNumber);
+		line.append('\t').append(task.offset);
+		line.append('\t').append(format.format(task.score));
+		line.append('\t').append(isSpam? "spam" : "ham");
+		line.append('\n');
+
+		out.write(filename);
+		out.write(line.toString().getBytes());
+	}
+
+	/** Returns the number of messages scored so far.
+	 *
+	 * @return The number of messages.
+	 */
+	public long getNumMessages() {
+		return numMessages;
+	}
+
+	/** Returns the number of the messages scored so far which
+	 *  were spam.
+	 *
+	 * @return The number of spam messages.
+	 */
+	public long getNumSpam() {
+		return numSpam;
+	}
+
+	/** Returns the number of bytes of messages scored so far.
+	 *
+	 * @return The number of bytes.
+	 */
+	public long getNumBytes() {
+		return numBytes;
+	}
+
+	/** Stops the worker threads.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/** The reusable state of a worker thread.
+	 */
+	private static class WorkerState {
+
+		MessageTokenizer tokenizer = new MessageTokenizer();
+		OpenAddressingTokenStore tokens = new OpenAddressingTokenStore();
+	}
+
+	/** Tokenizes and scores a single message.
+	 */
+	private class ScoreTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The view of the raw message; let go of once it is
+		 *  scored, so that its window of the file can be unmapped.
+		 */
+		private ByteBuffer message = null;
+
+		/** The number of the message in its file.
+		 */
+		final int messageNumber;
+
+		/** The offset of the message in its file.
+		 */
+		final long offset;
+
+		/** The spam probability, once the task is done.
+		 */
+		double score = 0;
+
+		ScoreTask(ByteBuffer message, int messageNumber, long offset) {
+
+			this.message = message;
+			this.messageNumber = messageNumber;
+			this.offset = offset;
+		}
+
+		protected void compute() {
+
+			WorkerState state = workerState.get();
+
+			state.tokenizer.tokenize(message, state.tokens);
+			score = classifier.score(state.tokens);
+
+			message = null;
+		}
+	}
+}
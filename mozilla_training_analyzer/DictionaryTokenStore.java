@@ -0,0 +1,316 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+/** A TokenStore which keeps its tokens in a TokenDictionary and
+ *  only holds their IDs.
+ *
+ *  Each token costs three int columns (its ID, good count and bad
+ *  count) plus its slot in the hash table, which is keyed by ID.
+ *  The bytes themselves live in the dictionary, so when both
+ *  files of a merge are loaded against the same dictionary the
+ *  tokens they have in common are only stored once, and merging
+ *  the two stores is a matter of adding up counts by ID. See
+ *  TokenDictionary for where dictionaries are used.
+ *
+ *  The table, the count columns and the handling of indices are
+ *  shared with OpenAddressingTokenStore through HashedTokenStore.
+ *  Removing a token from the store does not remove it from the
+ *  dictionary.
+ */
+public class DictionaryTokenStore extends HashedTokenStore {
+
+	/** The number of tokens a new store has room for by default.
+	 */
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	/** The dictionary holding the bytes of the tokens.
+	 */
+	private TokenDictionary dictionary = null;
+
+	/** The dictionary ID of each token.
+	 */
+	private int[] ids = null;
+
+	/** Creates a new, empty DictionaryTokenStore.
+	 *
+	 * @param dictionary	The dictionary to keep the tokens in.
+	 */
+	public DictionaryTokenStore(TokenDictionary dictionary) {
+
+		this(dictionary, DEFAULT_CAPACITY);
+	}
+
+	/** Creates a new, empty DictionaryTokenStore which is presized
+	 *  to hold the given number of tokens without having to grow.
+	 *
+	 * @param dictionary	The dictionary to keep the tokens in.
+	 * @param expectedTokens	The number of tokens the store
+	 * 							should have room for.
+	 */
+	public DictionaryTokenStore(TokenDictionary dictionary, int expectedTokens) {
+
+		super(Math.max(expectedTokens, 16));
+
+		this.dictionary = dictionary;
+
+		ids = new int[goodCounts.length];
+	}
+
+	/** Returns the dictionary which two stores share, if they are
+	 *  both DictionaryTokenStores on the same dictionary. Tokens
+	 *  can then be moved between them by ID.
+	 *
+	 * @param storeA	A store.
+	 * @param storeB	Another store.
+	 *
+	 * @return The dictionary of both stores, or null if they
+	 * 			don't share one.
+	 */
+	public static TokenDictionary getCommonDictionary(TokenStore storeA, TokenStore storeB) {
+
+		if (!(storeA instanceof DictionaryTokenStore) || !(storeB instanceof DictionaryTokenStore)) {
+			return null;
+		}
+
+		TokenDictionary dictionary = ((DictionaryTokenStore) storeA).dictionary;
+
+		if (dictionary != ((DictionaryTokenStore) storeB).dictionary) {
+			return null;
+		}
+
+		return dictionary;
+	}
+
+	/** Builds a single store out of several stores on the same
+	 *  dictionary by laying their contents end to end, in the
+	 *  order given, just as OpenAddressingTokenStore.concatenate()
+	 *  does. No two of the parts may hold the same token.
+	 *
+	 * @param parts	The stores to concatenate, none of which may
+	 * 				share a token with another. There must be at
+	 * 				least one.
+	 *
+	 * @return A new store holding the tokens of all of the parts.
+	 */
+	public static DictionaryTokenStore concatenate(DictionaryTokenStore[] parts) {
+
+		int totalTokens = 0;
+
+		for (int i = 0; i < parts.length; i++) {
+
+			if (parts[i].dictionary != parts[0].dictionary) {
+				throw new IllegalArgumentException("The parts do not share a dictionary!");
+			}
+
+			totalTokens += parts[i].size;
+		}
+
+		DictionaryTokenStore retStore = new DictionaryTokenStore(parts[0].dictionary, totalTokens);
+
+		retStore.appendAll(parts);
+
+		return retStore;
+	}
+
+	/** Returns the dictionary which this store keeps its tokens in.
+	 *
+	 * @return The dictionary of this store.
+	 */
+	public TokenDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/** Returns the dictionary ID of the token at the given index.
+	 *
+	 * @param index	The index of the token.
+	 *
+	 * @return The dictionary ID of the token.
+	 */
+	public int getId(int index) {
+		return ids[index];
+	}
+
+	/** Returns the hash that a dictionary ID is placed in the table
+	 *  by. IDs are handed out in sequence, so they are scrambled
+	 *  with a multiplicative hash to spread them over the table.
+	 *
+	 * @param id	The dictionary ID of a token.
+	 *
+	 * @return The hash of that ID.
+	 */
+	private static int hashId(int id) {
+		return id * 0x9E3779B9;
+	}
+
+	/** Looks up the index of the token with the given dictionary
+	 *  ID.
+	 *
+	 * @param id	The dictionary ID of the token.
+	 *
+	 * @return The index of the token, or -1 if it is not in this
+	 * 			store.
+	 */
+	public int indexOfId(int id) {
+
+		int slot = slotFor(hashId(id));
+		int entry = 0;
+
+		while ((entry = table[slot]) != 0) {
+
+			if (ids[entry - 1] == id) {
+				return entry - 1;
+			}
+
+			slot = (slot + 1) & (table.length - 1);
+		}
+
+		return -1;
+	}
+
+	/** Adds the given counts to the token with the given
+	 *  dictionary ID. If the token is not in this store yet, it is
+	 *  inserted with the given counts.
+	 *
+	 * @param id	The dictionary ID of the token.
+	 * @param goodCount	The number of good occurences to add.
+	 * @param badCount	The number of bad occurences to add.
+	 *
+	 * @return The index of the token.
+	 */
+	public int addId(int id, int goodCount, int badCount) {
+
+		int slot = slotFor(hashId(id));
+		int entry = 0;
+
+		while ((entry = table[slot]) != 0) {
+
+			entry--;
+
+			// Already here, so just add to its counts.
+			if (ids[entry] == id) {
+
+				addCounts(entry, goodCount, badCount);
+
+				return entry;
+			}
+
+			slot = (slot + 1) & (table.length - 1);
+		}
+
+		// The token is new, so append it to the columns.
+		ensureColumnCapacity();
+
+		ids[size] = id;
+
+		return insert(slot, goodCount, badCount);
+	}
+
+	/** Returns roughly how many bytes of memory the store's own
+	 *  arrays take up. The dictionary is not counted, as it is
+	 *  shared with other stores.
+	 *
+	 * @return The number of bytes allocated by the store.
+	 */
+	public long getMemoryUsage() {
+
+		// Three int columns and the int hash table.
+		return (12L * ids.length) + (4L * table.length);
+	}
+
+	/** @see mozilla_training_analyzer.HashedTokenStore#hashOf(int)
+	 */
+	protected int hashOf(int index) {
+		return hashId(ids[index]);
+	}
+
+	/** @see mozilla_training_analyzer.HashedTokenStore#growColumns(int)
+	 */
+	protected void growColumns(int newCapacity) {
+		ids = grow(ids, newCapacity);
+	}
+
+	/** @see mozilla_training_analyzer.HashedTokenStore#moveColumns(int, int)
+	 */
+	protected void moveColumns(int from, int to) {
+		ids[to] = ids[from];
+	}
+
+	/** @see mozilla_training_analyzer.HashedTokenStore#appendColumns(mozilla_training_analyzer.HashedTokenStore)
+	 */
+	protected void appendColumns(HashedTokenStore part) {
+
+		DictionaryTokenStore store = (DictionaryTokenStore) part;
+
+		System.arraycopy(store.ids, 0, ids, size, store.size);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#indexOf(byte[], int, int)
+	 */
+	public int indexOf(byte[] token, int offset, int length) {
+
+		int id = dictionary.lookup(token, offset, length);
+
+		// A token the dictionary has never seen can't be here.
+		if (id == -1) {
+			return -1;
+		}
+
+		return indexOfId(id);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#add(byte[], int, int, int, int)
+	 */
+	public int add(byte[] token, int offset, int length, int goodCount, int badCount) {
+
+		return addId(dictionary.intern(token, offset, length), goodCount, badCount);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getTokenArray(int)
+	 */
+	public byte[] getTokenArray(int index) {
+		return dictionary.getArray(ids[index]);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getTokenOffset(int)
+	 */
+	public int getTokenOffset(int index) {
+		return dictionary.getOffset(ids[index]);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getTokenLength(int)
+	 */
+	public int getTokenLength(int index) {
+		return dictionary.getLength(ids[index]);
+	}
+}
@@ -32,6 +32,8 @@
  */
 package mozilla_training_analyzer;
 
+import java.nio.charset.Charset;
+
 /** A class with convenience methods which are used by several
  * 	other classes and which did not really belong in any of those
  * 	other classes.
@@ -40,10 +42,46 @@ package mozilla_training_analyzer;
  */
 public class Globals {
 
+	/** The character set that tokens are decoded with for display
+	 *  and encoded with when they are typed in. Mozilla's
+	 *  tokenizer writes its tokens out as UTF-8.
+	 *
+	 *  Tokens are otherwise kept as the raw bytes found in the
+	 *  training file, and are only ever compared and hashed as
+	 *  bytes, so a token which isn't valid UTF-8 still comes back
+	 *  out of the program exactly as it went in.
+	 */
+	public static final Charset TOKEN_CHARSET = Charset.forName("UTF-8");
+
 	// No instantiation of this class.
 	private Globals() {
 	}
 
+	/** Decodes the bytes of a token into a String for display.
+	 *  Bytes which are not valid UTF-8 come out as the Unicode
+	 *  replacement character.
+	 *
+	 * @param bytes	The array holding the token.
+	 * @param offset	The offset of the token in the array.
+	 * @param length	The length of the token in bytes.
+	 *
+	 * @return The token as a String.
+	 */
+	public static String decodeToken(byte[] bytes, int offset, int length) {
+		return new String(bytes, offset, length, TOKEN_CHARSET);
+	}
+
+	/** Encodes a token String, e.g. one typed in by the user, into
+	 *  the bytes it has in a training file.
+	 *
+	 * @param token	The token String.
+	 *
+	 * @return The bytes of the token.
+	 */
+	public static byte[] encodeToken(String token) {
+		return token.getBytes(TOKEN_CHARSET);
+	}
+
 	/** This method converts a 4 byte array to an equivalent int
 	 * 	representation. This is a convenience method used during
 	 *  parsing of the Mozilla Bayesian Filter Training file.
@@ -53,19 +91,18 @@ public class Globals {
 	 * 					IllegalArgumentException will be thrown.
 	 *
 	 * @return An int which represents the given bytes.
+	 *
+	 * @deprecated Use IntCodec.getInt(), which decodes an int at
+	 * 				any offset of a buffer.
 	 */
+	@Deprecated
 	public static int makeInt(byte[] inBytes) {
 
 		if (inBytes.length != 4) {
 			throw new IllegalArgumentException("inBytes must have a length of 4!");
 		}
 
-		int retVal = (inBytes[3] + 256) % 256;
-		retVal += ((inBytes[2] + 256) % 256) * 256; 	// 2^8
-		retVal += ((inBytes[1] + 256) % 256) * 65536;	// 2^16
-		retVal += ((inBytes[0] + 256) % 256) * 16777216;// 2^24
-
-		return retVal;
+		return IntCodec.getInt(inBytes, 0);
 	}
 
 	/** This method converts an int to an equivalent 4 byte array
@@ -77,16 +114,52 @@ public class Globals {
 	 *
 	 * @return A byte[] of length 4 which represents the given
 	 * 			int.
+	 *
+	 * @deprecated Use IntCodec.putInt(), which encodes an int into
+	 * 				a buffer the caller already has rather than
+	 * 				allocating a new one.
 	 */
+	@Deprecated
 	public static byte[] makeBytes(int inNum) {
 
-		byte[] retArray = new byte[4];
+		byte[] retArray = new byte[IntCodec.INT_SIZE];
+		IntCodec.putInt(retArray, 0, inNum);
 
-		for (int i = 3; i >= 0; i--) {
+		return retArray;
+	}
 
-			retArray[i] = (byte) ((inNum >> (8*(3-i))) % 256);
+	/** This method compares two byte sequences lexicographically,
+	 * 	treating each byte as an unsigned value. This is the order
+	 *  in which tokens are sorted, and for UTF-8 encoded tokens it
+	 *  matches the order of the corresponding Unicode code points.
+	 *
+	 * @param a	The array holding the first byte sequence.
+	 * @param aOffset	The offset of the first sequence in a.
+	 * @param aLength	The length of the first sequence.
+	 * @param b	The array holding the second byte sequence.
+	 * @param bOffset	The offset of the second sequence in b.
+	 * @param bLength	The length of the second sequence.
+	 *
+	 * @return A negative number, zero, or a positive number if
+	 * 			the first sequence is less than, equal to, or
+	 * 			greater than the second.
+	 */
+	public static int compareBytes(
+			byte[] a, int aOffset, int aLength,
+			byte[] b, int bOffset, int bLength) {
+
+		int minLength = Math.min(aLength, bLength);
+
+		for (int i = 0; i < minLength; i++) {
+
+			int diff = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+
+			if (diff != 0) {
+				return diff;
+			}
 		}
 
-		return retArray;
+		// A prefix sorts before the longer sequence.
+		return aLength - bLength;
 	}
 }
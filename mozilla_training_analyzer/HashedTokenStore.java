@@ -0,0 +1,581 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** The part of a TokenStore that OpenAddressingTokenStore and
+ *  DictionaryTokenStore have in common: the good and bad count
+ *  columns, the open-addressing hash table of token indices, and
+ *  everything which only needs those.
+ *
+ *  The hash table is an int array of token indices which is
+ *  searched with linear probing. Each subclass says where a token
+ *  goes in the table through hashOf(), and keeps whatever columns
+ *  it needs to find the token's bytes. The indices are dense:
+ *  remove(int) moves the last token into the freed index, and
+ *  removeAll() keeps the order of the tokens which are left.
+ *
+ *  Looking a token up by its bytes depends on how the subclass
+ *  keeps them, so the subclasses walk the probe sequence
+ *  themselves, and then hand a new token over to insert().
+ */
+abstract class HashedTokenStore implements TokenStore {
+
+	/** The hash table is grown once it is more than this many
+	 *  sixteenths full.
+	 */
+	private static final int MAX_LOAD_SIXTEENTHS = 11;
+
+	/** The good count of each token.
+	 */
+	protected int[] goodCounts = null;
+
+	/** The bad count of each token.
+	 */
+	protected int[] badCounts = null;
+
+	/** The number of tokens in this store.
+	 */
+	protected int size = 0;
+
+	/** The hash table. Each slot holds a token index plus one, so
+	 *  that 0 can mark an empty slot.
+	 */
+	protected int[] table = null;
+
+	/** The number of tokens after which the table is grown.
+	 */
+	private int growThreshold = 0;
+
+	/** true as long as every token was added in ascending order
+	 *  and none were moved around, in which case the sorted view
+	 *  is simply the indices in order and needs no sort.
+	 */
+	protected boolean inOrder = true;
+
+	/** The number of tokens with a good count greater than zero.
+	 *  Every change to the counts keeps this up to date.
+	 */
+	protected int numGoodTokens = 0;
+
+	/** The number of tokens with a bad count greater than zero.
+	 *  Every change to the counts keeps this up to date.
+	 */
+	protected int numBadTokens = 0;
+
+	/** Creates a new, empty HashedTokenStore with room for the
+	 *  given number of tokens.
+	 *
+	 * @param capacity	The number of tokens the columns and the
+	 * 					table should have room for.
+	 */
+	protected HashedTokenStore(int capacity) {
+
+		goodCounts = new int[capacity];
+		badCounts = new int[capacity];
+
+		allocateTable(capacity);
+	}
+
+	/** Returns the hash which decides where the token at the
+	 *  given index goes in the table.
+	 *
+	 * @param index	The index of a token in this store.
+	 *
+	 * @return The hash of that token.
+	 */
+	protected abstract int hashOf(int index);
+
+	/** Grows the subclass's own columns to the given capacity.
+	 *
+	 * @param newCapacity	The new length of the columns.
+	 */
+	protected abstract void growColumns(int newCapacity);
+
+	/** Copies the subclass's own columns of one token to another
+	 *  index. The counts are taken care of here.
+	 *
+	 * @param from	The index to copy from.
+	 * @param to	The index to copy to.
+	 */
+	protected abstract void moveColumns(int from, int to);
+
+	/** Appends the subclass's own columns of every token of the
+	 *  given store, starting at index size. The counts are taken
+	 *  care of by appendAll().
+	 *
+	 * @param part	The store to append, which is of the same
+	 * 				class as this one.
+	 */
+	protected abstract void appendColumns(HashedTokenStore part);
+
+	/** Called when the token at the given index is about to be
+	 *  removed, before anything has been moved. Does nothing by
+	 *  default.
+	 *
+	 * @param index	The index of the token being removed.
+	 */
+	protected void releaseToken(int index) {
+	}
+
+	/** Returns the table slot that a hash starts probing at. The
+	 *  high bits are folded in, since the table size is a power
+	 *  of two and only the low bits would be used otherwise.
+	 *
+	 * @param h	The hash of a token.
+	 *
+	 * @return The first table slot to probe for that hash.
+	 */
+	protected final int slotFor(int h) {
+
+		return (h ^ (h >>> 16)) & (table.length - 1);
+	}
+
+	/** Allocates an empty hash table which is big enough to hold
+	 *  the given number of tokens.
+	 *
+	 * @param capacity	The number of tokens the table must hold.
+	 */
+	private void allocateTable(int capacity) {
+
+		int tableSize = 16;
+
+		while ((tableSize * MAX_LOAD_SIXTEENTHS) / 16 < capacity) {
+			tableSize <<= 1;
+		}
+
+		table = new int[tableSize];
+		growThreshold = (tableSize * MAX_LOAD_SIXTEENTHS) / 16;
+	}
+
+	/** Rebuilds the hash table from hashOf(), making it big
+	 *  enough to hold at least the given number of tokens.
+	 *
+	 * @param capacity	The number of tokens the table must hold.
+	 */
+	protected final void rehash(int capacity) {
+
+		allocateTable(capacity);
+
+		for (int i = 0; i < size; i++) {
+
+			int slot = slotFor(hashOf(i));
+
+			while (table[slot] != 0) {
+				slot = (slot + 1) & (table.length - 1);
+			}
+
+			table[slot] = i + 1;
+		}
+	}
+
+	/** Finds the table slot holding the given token index.
+	 *
+	 * @param index	The index of a token in this store.
+	 *
+	 * @return The table slot holding that index.
+	 */
+	private int slotOf(int index) {
+
+		int slot = slotFor(hashOf(index));
+
+		while (table[slot] != index + 1) {
+			slot = (slot + 1) & (table.length - 1);
+		}
+
+		return slot;
+	}
+
+	/** Makes sure that the columns have room for one more token.
+	 */
+	protected final void ensureColumnCapacity() {
+
+		if (size < goodCounts.length) {
+			return;
+		}
+
+		int newCapacity = goodCounts.length + (goodCounts.length >> 1) + 1;
+
+		goodCounts = grow(goodCounts, newCapacity);
+		badCounts = grow(badCounts, newCapacity);
+
+		growColumns(newCapacity);
+	}
+
+	/** Copies the given column into a new, larger array.
+	 *
+	 * @param column	The column to grow.
+	 * @param newCapacity	The length of the new array.
+	 *
+	 * @return The new, larger column.
+	 */
+	protected static int[] grow(int[] column, int newCapacity) {
+
+		int[] newColumn = new int[newCapacity];
+		System.arraycopy(column, 0, newColumn, 0, column.length);
+
+		return newColumn;
+	}
+
+	/** Adds the given counts to those of the token at the given
+	 *  index.
+	 *
+	 * @param index	The index of a token in this store.
+	 * @param goodCount	The number of good occurences to add.
+	 * @param badCount	The number of bad occurences to add.
+	 */
+	protected final void addCounts(int index, int goodCount, int badCount) {
+
+		setGoodCount(index, goodCounts[index] + goodCount);
+		setBadCount(index, badCounts[index] + badCount);
+	}
+
+	/** Finishes adding a new token at index size. The subclass
+	 *  must already have called ensureColumnCapacity() and filled
+	 *  in its own columns at that index.
+	 *
+	 * @param slot	The empty table slot that the probe for the
+	 * 				token ended at.
+	 * @param goodCount	The good count of the token.
+	 * @param badCount	The bad count of the token.
+	 *
+	 * @return The index of the new token.
+	 */
+	protected final int insert(int slot, int goodCount, int badCount) {
+
+		int index = size;
+
+		goodCounts[index] = goodCount;
+		badCounts[index] = badCount;
+
+		table[slot] = index + 1;
+		size++;
+
+		if (goodCount > 0) {
+			numGoodTokens++;
+		}
+
+		if (badCount > 0) {
+			numBadTokens++;
+		}
+
+		// Keep track of whether the tokens are still in sorted
+		// order, so that getSortedIndices() can skip the sort.
+		if (inOrder && (index > 0) && (TokenSorter.compare(this, index - 1, index) > 0)) {
+			inOrder = false;
+		}
+
+		if (size > growThreshold) {
+			rehash(size * 2);
+		}
+
+		return index;
+	}
+
+	/** Lays the tokens of the given stores end to end in this
+	 *  one, which must be empty and have room for all of them, in
+	 *  the order given. No two of the parts may hold the same
+	 *  token. That is not checked; it is what lets the hash table
+	 *  be rebuilt without comparing any tokens.
+	 *
+	 * @param parts	The stores to append, which are of the same
+	 * 				class as this one.
+	 */
+	protected final void appendAll(HashedTokenStore[] parts) {
+
+		// The result is in order if every part is, and each
+		// part starts after the previous one ends.
+		boolean allInOrder = true;
+		HashedTokenStore previous = null;
+
+		for (int i = 0; i < parts.length; i++) {
+
+			HashedTokenStore part = parts[i];
+
+			appendColumns(part);
+
+			System.arraycopy(part.goodCounts, 0, goodCounts, size, part.size);
+			System.arraycopy(part.badCounts, 0, badCounts, size, part.size);
+
+			if (part.size > 0) {
+
+				allInOrder = allInOrder && part.inOrder &&
+					((previous == null) ||
+					 (TokenSorter.compare(previous, previous.size - 1, part, 0) < 0));
+
+				previous = part;
+			}
+
+			size += part.size;
+			numGoodTokens += part.numGoodTokens;
+			numBadTokens += part.numBadTokens;
+		}
+
+		inOrder = allInOrder;
+
+		// Every hash is already known, so just slot the indices
+		// into the table.
+		rehash(size);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#size()
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getNumGoodTokens()
+	 */
+	public int getNumGoodTokens() {
+		return numGoodTokens;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getNumBadTokens()
+	 */
+	public int getNumBadTokens() {
+		return numBadTokens;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#indexOf(java.lang.String)
+	 */
+	public int indexOf(String token) {
+
+		byte[] tokenBytes = Globals.encodeToken(token);
+
+		return indexOf(tokenBytes, 0, tokenBytes.length);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#add(java.lang.String, int, int)
+	 */
+	public int add(String token, int goodCount, int badCount) {
+
+		byte[] tokenBytes = Globals.encodeToken(token);
+
+		return add(tokenBytes, 0, tokenBytes.length, goodCount, badCount);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#remove(int)
+	 */
+	public void remove(int index) {
+
+		if ((index < 0) || (index >= size)) {
+			throw new IndexOutOfBoundsException("Invalid token index: " + index);
+		}
+
+		// Take the token out of the hash table. With linear
+		// probing we can't just empty its slot, as that would
+		// cut off the probe sequence of any token which was
+		// pushed past it, so shift those tokens back instead.
+		int mask = table.length - 1;
+		int hole = slotOf(index);
+		int next = (hole + 1) & mask;
+
+		while (table[next] != 0) {
+
+			int ideal = slotFor(hashOf(table[next] - 1));
+
+			// The token at next may move into the hole only if
+			// the hole lies between its ideal slot and next.
+			if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+
+				table[hole] = table[next];
+				hole = next;
+			}
+
+			next = (next + 1) & mask;
+		}
+
+		table[hole] = 0;
+		releaseToken(index);
+
+		// The token no longer counts towards either section.
+		if (goodCounts[index] > 0) {
+			numGoodTokens--;
+		}
+
+		if (badCounts[index] > 0) {
+			numBadTokens--;
+		}
+
+		int last = size - 1;
+
+		// Move the last token into the freed index to keep the
+		// columns dense.
+		if (index != last) {
+
+			table[slotOf(last)] = index + 1;
+
+			moveColumns(last, index);
+			goodCounts[index] = goodCounts[last];
+			badCounts[index] = badCounts[last];
+
+			inOrder = false;
+		}
+
+		size--;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#removeAll(java.util.BitSet)
+	 */
+	public void removeAll(BitSet indices) {
+
+		int first = indices.nextSetBit(0);
+
+		// Nothing to do.
+		if ((first == -1) || (first >= size)) {
+			return;
+		}
+
+		int newSize = first;
+
+		// Slide each survivor down into the next free index. The
+		// destination never passes the source, so the columns
+		// can be compacted in place.
+		for (int i = first; i < size; i++) {
+
+			if (indices.get(i)) {
+
+				// The token no longer counts towards either
+				// section.
+				if (goodCounts[i] > 0) {
+					numGoodTokens--;
+				}
+
+				if (badCounts[i] > 0) {
+					numBadTokens--;
+				}
+
+				continue;
+			}
+
+			moveColumns(i, newSize);
+			goodCounts[newSize] = goodCounts[i];
+			badCounts[newSize] = badCounts[i];
+
+			newSize++;
+		}
+
+		size = newSize;
+
+		// The survivors keep their order, so inOrder still holds
+		// if it did before. The table is rebuilt, and shrinks to
+		// suit the smaller store.
+		rehash(size);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#clear()
+	 */
+	public void clear() {
+
+		Arrays.fill(table, 0);
+
+		size = 0;
+		inOrder = true;
+		numGoodTokens = 0;
+		numBadTokens = 0;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getGoodCount(int)
+	 */
+	public int getGoodCount(int index) {
+		return goodCounts[index];
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#setGoodCount(int, int)
+	 */
+	public void setGoodCount(int index, int count) {
+
+		// Keep the section count in step if the token moves into
+		// or out of the good section.
+		if ((goodCounts[index] > 0) != (count > 0)) {
+			numGoodTokens += (count > 0? 1 : -1);
+		}
+
+		goodCounts[index] = count;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getBadCount(int)
+	 */
+	public int getBadCount(int index) {
+		return badCounts[index];
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#setBadCount(int, int)
+	 */
+	public void setBadCount(int index, int count) {
+
+		// Keep the section count in step if the token moves into
+		// or out of the bad section.
+		if ((badCounts[index] > 0) != (count > 0)) {
+			numBadTokens += (count > 0? 1 : -1);
+		}
+
+		badCounts[index] = count;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getTokenBytes(int)
+	 */
+	public byte[] getTokenBytes(int index) {
+
+		byte[] tokenBytes = new byte[getTokenLength(index)];
+		System.arraycopy(getTokenArray(index), getTokenOffset(index), tokenBytes, 0, tokenBytes.length);
+
+		return tokenBytes;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getTokenString(int)
+	 */
+	public String getTokenString(int index) {
+		return Globals.decodeToken(getTokenArray(index), getTokenOffset(index), getTokenLength(index));
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getSortedIndices()
+	 */
+	public int[] getSortedIndices() {
+
+		int[] indices = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			indices[i] = i;
+		}
+
+		// Tokens which were added in order are already sorted.
+		if (!inOrder) {
+			TokenSorter.sort(this, indices);
+		}
+
+		return indices;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+/** Reads and writes the big-endian ints of a training file in
+ *  place, inside a buffer that the caller already has.
+ *
+ *  Every int in a training.dat is four bytes, most significant
+ *  first. Globals.makeInt() and Globals.makeBytes() convert those
+ *  through a 4-byte array of their own, which costs an allocation
+ *  per int on the way out and a bounds check, a length check and
+ *  four modulo operations per int on the way in. The methods here
+ *  work on any offset of any array, so a reader can decode a whole
+ *  record straight out of its read buffer and a writer can encode
+ *  one straight into its write buffer, with nothing allocated.
+ *
+ *  Code which already holds a ByteBuffer (the mapped reader, the
+ *  writer and the index) should simply use its getInt() and
+ *  putInt(), which are big-endian by default and do the same job.
+ *  VarHandle views would do it for plain arrays as well, but they
+ *  need Java 9, and shifts and masks compile down to much the same
+ *  code.
+ */
+public class IntCodec {
+
+	/** The number of bytes in an encoded int.
+	 */
+	public static final int INT_SIZE = 4;
+
+	// No instantiation of this class, everything is static.
+	private IntCodec() {
+	}
+
+	/** Decodes the big-endian int which starts at the given offset
+	 *  of an array.
+	 *
+	 * @param bytes	The array holding the int.
+	 * @param offset	The offset of the int's first (most
+	 * 					significant) byte.
+	 *
+	 * @return The decoded int.
+	 */
+	public static int getInt(byte[] bytes, int offset) {
+
+		return ((bytes[offset] & 0xFF) << 24) |
+			((bytes[offset + 1] & 0xFF) << 16) |
+			((bytes[offset + 2] & 0xFF) << 8) |
+			(bytes[offset + 3] & 0xFF);
+	}
+
+	/** Encodes an int as four big-endian bytes, at the given
+	 *  offset of an array.
+	 *
+	 * @param bytes	The array to write the int into.
+	 * @param offset	The offset to write the int's first (most
+	 * 					significant) byte at.
+	 * @param value	The int to encode.
+	 */
+	public static void putInt(byte[] bytes, int offset, int value) {
+
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+}
@@ -0,0 +1,377 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Splits an mbox file into its messages by memory-mapping it,
+ *  handing each message out as a ByteBuffer view of the mapped
+ *  file rather than copying it. The messages are split exactly
+ *  as MboxReader splits them: each one starts with a "From "
+ *  line, which is left out of the view, and any text before the
+ *  first "From " line is a message of its own.
+ *
+ *  The separators are found by scanning the file eight bytes at
+ *  a time for line feeds, with the usual trick for spotting a
+ *  zero byte in a long, and only looking for "From " after the
+ *  line feeds found. Most of the bytes of a message are thus
+ *  passed over by a few arithmetic instructions per word.
+ *
+ *  A file may be bigger than a single mapping can be, so it is
+ *  mapped a window at a time, and a new window is mapped from
+ *  the start of the message which runs past the end of the old
+ *  one. The views handed out keep their own window mapped for as
+ *  long as they are used, so they stay valid after the scanner
+ *  has moved on or been closed. A view is read-only, and is only
+ *  valid while the file isn't changed.
+ */
+public class MappedMboxScanner {
+
+	/** The size of the windows the file is mapped in, unless
+	 *  another is given. A message bigger than a window gets a
+	 *  window of its own, of up to 2GB.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+	/** Eight bytes of 0x01, for finding zero bytes in a long.
+	 */
+	private static final long ONES = 0x0101010101010101L;
+
+	/** Eight bytes of 0x80, for finding zero bytes in a long.
+	 */
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	/** Eight line feeds, to turn line feeds into zero bytes.
+	 */
+	private static final long LINE_FEEDS = 0x0A0A0A0A0A0A0A0AL;
+
+	/** The bytes which start a separator line.
+	 */
+	private static final byte[] FROM_LINE = { 'F', 'r', 'o', 'm', ' ' };
+
+	/** The stream the file was opened with.
+	 */
+	private FileInputStream inStream = null;
+
+	/** The size of the windows the file is mapped in.
+	 */
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+
+	/** The channel the file is mapped through.
+	 */
+	private FileChannel inChannel = null;
+
+	/** The size of the file.
+	 */
+	private long fileSize = 0;
+
+	/** The window of the file mapped now. Its byte order is
+	 *  little-endian, so that the first byte of a long read from
+	 *  it is the lowest.
+	 */
+	private MappedByteBuffer window = null;
+
+	/** The offset in the file of the start of the window.
+	 */
+	private long windowStart = 0;
+
+	/** The offset in the file of the next message, i.e. of its
+	 *  "From " line.
+	 */
+	private long nextOffset = 0;
+
+	/** The offset in the file of the message last handed out.
+	 */
+	private long messageOffset = 0;
+
+	/** Opens an mbox file for scanning, mapping it in windows of
+	 *  DEFAULT_WINDOW_SIZE bytes.
+	 *
+	 * @param mboxFile	The mbox file to scan.
+	 *
+	 * @throws IOException If the file could not be opened.
+	 */
+	public MappedMboxScanner(File mboxFile) throws IOException {
+		this(mboxFile, DEFAULT_WINDOW_SIZE);
+	}
+
+	/** Opens an mbox file for scanning, mapping it in windows of
+	 *  the given size. Tiny windows are only of use for testing
+	 *  how messages which cross a window are handled.
+	 *
+	 * @param mboxFile	The mbox file to scan.
+	 * @param windowSize	The size of the windows to map. It must
+	 * 						be big enough to hold a line feed and
+	 * 						"From ".
+	 *
+	 * @throws IOException If the file could not be opened.
+	 */
+	public MappedMboxScanner(File mboxFile, int windowSize) throws IOException {
+
+		if (windowSize <= FROM_LINE.length) {
+			throw new IllegalArgumentException("The window size must be more than " + FROM_LINE.length + ": " + windowSize);
+		}
+
+		this.windowSize = windowSize;
+
+		inStream = new FileInputStream(mboxFile);
+		inChannel = inStream.getChannel();
+		fileSize = inChannel.size();
+	}
+
+	/** Finds the next message.
+	 *
+	 * @return A read-only view of the raw bytes of the message,
+	 * 			without its "From " line, or null if there are no
+	 * 			more messages.
+	 *
+	 * @throws IOException If the file could not be mapped, or a
+	 * 						message is bigger than 2GB.
+	 */
+	public ByteBuffer nextMessage() throws IOException {
+
+		if (nextOffset >= fileSize) {
+			return null;
+		}
+
+		messageOffset = nextOffset;
+
+		// Make sure at least the start of the message is mapped.
+		if ((window == null) || (messageOffset - windowStart + FROM_LINE.length + 1 > window.limit())
+				&& (windowStart + window.limit() < fileSize)) {
+
+			mapWindow(messageOffset, windowSize);
+		}
+
+		while (true) {
+
+			int start = (int) (messageOffset - windowStart);
+			int limit = window.limit();
+			boolean atEnd = (windowStart + limit == fileSize);
+
+			// Skip the "From " line, if there is one; there is
+			// none only before the first "From " line of a file.
+			// The scan for the next one starts at the line feed
+			// which ends it, so that an empty message is found.
+			int bodyStart = start;
+			int scanStart = start;
+
+			if (isFromLine(start, limit)) {
+
+				int lineEnd = findLineFeed(start, limit);
+
+				if (lineEnd != -1) {
+
+					bodyStart = lineEnd + 1;
+					scanStart = lineEnd;
+
+				} else if (atEnd) {
+
+					bodyStart = limit;
+					scanStart = limit;
+
+				} else {
+
+					growWindow();
+					continue;
+				}
+			}
+
+			int separator = findSeparator(scanStart, limit);
+
+			if ((separator == -1) && !atEnd) {
+
+				// The message runs past the end of the window.
+				growWindow();
+				continue;
+			}
+
+			// The line feed before the next "From " line belongs
+			// to the message.
+			int bodyEnd = (separator == -1? limit : separator + 1);
+
+			nextOffset = windowStart + bodyEnd;
+
+			ByteBuffer view = window.duplicate();
+			view.limit(bodyEnd);
+			view.position(bodyStart);
+
+			return view.slice();
+		}
+	}
+
+	/** Returns the offset in the file of the "From " line of the
+	 *  message last returned by nextMessage(), or of its first
+	 *  byte if it had none.
+	 *
+	 * @return The offset of the last message.
+	 */
+	public long getMessageOffset() {
+		return messageOffset;
+	}
+
+	/** Closes the file. Views already handed out stay valid.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						closing the file.
+	 */
+	public void close() throws IOException {
+
+		window = null;
+		inStream.close();
+	}
+
+	/** Maps a new window of the file.
+	 *
+	 * @param start	The offset in the file of the window.
+	 * @param size	The most bytes the window should hold.
+	 */
+	private void mapWindow(long start, long size) throws IOException {
+
+		window = inChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size, fileSize - start));
+		window.order(ByteOrder.LITTLE_ENDIAN);
+		windowStart = start;
+	}
+
+	/** Maps a window twice as big, starting at the current
+	 *  message, for a message which runs past the end of the
+	 *  window.
+	 */
+	private void growWindow() throws IOException {
+
+		long size = (long) (messageOffset == windowStart? window.limit() : 0) * 2;
+
+		if (size > Integer.MAX_VALUE) {
+
+			if (window.limit() == Integer.MAX_VALUE) {
+				throw new IOException("The message at offset " + messageOffset + " is bigger than 2GB.");
+			}
+
+			size = Integer.MAX_VALUE;
+		}
+
+		mapWindow(messageOffset, Math.max(size, windowSize));
+	}
+
+	/** Checks whether the bytes at the given position of the
+	 *  window start with "From ".
+	 */
+	private boolean isFromLine(int pos, int limit) {
+
+		if (pos + FROM_LINE.length > limit) {
+			return false;
+		}
+
+		for (int i = 0; i < FROM_LINE.length; i++) {
+
+			if (window.get(pos + i) != FROM_LINE[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/** Finds the first line feed at or after the given position
+	 *  of the window.
+	 *
+	 * @return The position of the line feed, or -1 if there is
+	 * 			none before the limit.
+	 */
+	private int findLineFeed(int pos, int limit) {
+
+		for (int i = pos; i < limit; i++) {
+
+			if (window.get(i) == '\n') {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/** Finds the first line feed at or after the given position
+	 *  of the window which is followed by "From ".
+	 *
+	 * @return The position of the line feed, or -1 if there is
+	 * 			none before the limit.
+	 */
+	private int findSeparator(int pos, int limit) {
+
+		// The last place a separator can start.
+		int last = limit - FROM_LINE.length - 1;
+		int i = pos;
+
+		// Eight bytes at a time while they fit. A byte of
+		// word ^ LINE_FEEDS is zero where there is a line feed,
+		// and (x - ONES) & ~x & HIGH_BITS sets the high bit of
+		// every zero byte of x. Higher bytes may be flagged by
+		// the borrow from a zero byte below them, but the lowest
+		// flagged byte, the first in the file, is always a true
+		// one, and the others are checked anyway.
+		while (i + 8 <= last + 1) {
+
+			long x = window.getLong(i) ^ LINE_FEEDS;
+			long found = (x - ONES) & ~x & HIGH_BITS;
+
+			while (found != 0) {
+
+				int candidate = i + (Long.numberOfTrailingZeros(found) >>> 3);
+
+				if ((window.get(candidate) == '\n') && isFromLine(candidate + 1, limit)) {
+					return candidate;
+				}
+
+				found &= found - 1;
+			}
+
+			i += 8;
+		}
+
+		// Then a byte at a time for the last few.
+		for (; i <= last; i++) {
+
+			if ((window.get(i) == '\n') && isFromLine(i + 1, limit)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+}
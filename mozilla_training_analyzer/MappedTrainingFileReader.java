@@ -0,0 +1,366 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** A reader which parses a Mozilla Bayesian Filter Training file
+ *  by memory-mapping it and walking the header, the good token
+ *  section and the bad token section straight out of the mapped
+ *  buffer. This avoids the several tiny read() calls per token
+ *  that Analyzer.parseTrainingFile() makes, so that loading a
+ *  large training.dat is bound by memory bandwidth rather than
+ *  by system calls.
+ */
+public class MappedTrainingFileReader {
+
+	/** The number of tokens to process before printing out a
+	 * 	display character. This matches the tick rate used by
+	 *  the Analyzer so that both readers look the same on the
+	 *  console.
+	 */
+	private static final int numTokensBeforeTick = 250;
+
+	/** The size in bytes of the fixed portion of the training
+	 *  file header: the magic number, the good and bad message
+	 *  counts, and the good token count.
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	/** The size in bytes of the count and length which come
+	 *  before the bytes of every token, and so the least that
+	 *  any one token can take up in the file.
+	 */
+	private static final int RECORD_OVERHEAD = 8;
+
+	// No instantiation of this class, everything is static.
+	private MappedTrainingFileReader() {
+	}
+
+	/** Reads in token data from the given file by memory-mapping
+	 * 	it, and places it in a TrainingData for easy access. The
+	 *  returned TrainingData is identical to the one returned by
+	 *  Analyzer.parseTrainingFile() for the same file.
+	 *
+	 * @param trainingDatPath	The path to the Mozilla Bayesian
+	 * 							Filter training file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 *
+	 * @return A TrainingData which encapsulates the training
+	 * 			file's data, or null if an error was encountered
+	 * 			while parsing the file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						mapping the training file.
+	 */
+	public static TrainingData parseTrainingFile(
+			String trainingDatPath,
+			boolean displayOutput
+	) throws IOException {
+
+		return parseTrainingFile(trainingDatPath, displayOutput, null);
+	}
+
+	/** Reads in token data from the given file by memory-mapping
+	 * 	it, and places it in a TrainingData for easy access,
+	 *  keeping the tokens in the given dictionary.
+	 *
+	 * @param trainingDatPath	The path to the Mozilla Bayesian
+	 * 							Filter training file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 * @param dictionary	The dictionary of the job that the file
+	 * 						is loaded for, or null to keep the
+	 * 						tokens in a store of their own.
+	 *
+	 * @return A TrainingData which encapsulates the training
+	 * 			file's data, or null if an error was encountered
+	 * 			while parsing the file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						mapping the training file.
+	 */
+	public static TrainingData parseTrainingFile(
+			String trainingDatPath,
+			boolean displayOutput,
+			TokenDictionary dictionary
+	) throws IOException {
+
+		// If there's no path, return null.
+		if (trainingDatPath == null) {
+			return null;
+		}
+
+		File inputFile = new File(trainingDatPath);
+
+		// Can't read from a file that doesn't exist.
+		if (!inputFile.exists()) {
+			return null;
+		}
+
+		// A single mapping cannot exceed 2GB, so hand anything
+		// that large over to the stream-based parser.
+		if (inputFile.length() > Integer.MAX_VALUE) {
+			return Analyzer.parseTrainingFile(trainingDatPath, displayOutput, dictionary);
+		}
+
+		FileInputStream inStream = new FileInputStream(inputFile);
+		MappedByteBuffer inBuffer = null;
+
+		try {
+
+			FileChannel inChannel = inStream.getChannel();
+
+			// The mapping stays valid after the channel has been
+			// closed, so we only need the channel for this call.
+			inBuffer = inChannel.map(FileChannel.MapMode.READ_ONLY, 0, inChannel.size());
+
+		} finally {
+
+			inStream.close();
+		}
+
+		TrainingData retTrainer = null;
+
+		try {
+
+			retTrainer = parseTrainingBuffer(inBuffer, displayOutput, dictionary);
+
+		} catch (BufferUnderflowException bue) {
+
+			// The file ended in the middle of a token, so it has
+			// been truncated somewhere along the line.
+			retTrainer = null;
+
+		} catch (IllegalArgumentException iae) {
+
+			// A negative or oversized token length will land us
+			// here.
+			retTrainer = null;
+		}
+
+		if ((retTrainer == null) && displayOutput) {
+
+			System.err.println(trainingDatPath +
+				" is either not a Mozilla Bayesian filter" +
+				" token file or is corrupt.");
+		}
+
+		return retTrainer;
+	}
+
+	/** Parses the contents of a Mozilla Bayesian Filter Training
+	 * 	file which has already been mapped into memory.
+	 *
+	 * @param inBuffer	The buffer containing the training file,
+	 * 					positioned at the start of the header.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 * @param dictionary	The dictionary to keep the tokens in, or
+	 * 						null for a store of their own.
+	 *
+	 * @return A TrainingData which encapsulates the training
+	 * 			file's data, or null if the buffer does not
+	 * 			start with a valid header.
+	 *
+	 * @throws BufferUnderflowException If the buffer ends before
+	 * 									 all of the tokens
+	 * 									 promised by the header
+	 * 									 have been read.
+	 */
+	private static TrainingData parseTrainingBuffer(
+			MappedByteBuffer inBuffer,
+			boolean displayOutput,
+			TokenDictionary dictionary
+	) throws BufferUnderflowException {
+
+		// Too short to even hold a header.
+		if (inBuffer.remaining() < HEADER_SIZE) {
+			return null;
+		}
+
+		// Read in the standard header from the file.
+		byte[] headerBytes = new byte[4];
+		inBuffer.get(headerBytes);
+
+		if (!Analyzer.checkHeader(headerBytes)) {
+			return null;
+		}
+
+		TrainingData retTrainer = new TrainingData();
+
+		// A ByteBuffer is big-endian by default, which matches
+		// the byte order of the training file.
+		int numGoodMsgs = inBuffer.getInt();
+		int numBadMsgs = inBuffer.getInt();
+		int numGoodTokens = inBuffer.getInt();
+
+		retTrainer.setGoodMessageCount(numGoodMsgs);
+		retTrainer.setBadMessageCount(numBadMsgs);
+
+		if (displayOutput) {
+
+			// Console status messages
+			System.out.println("The number of good messages processed is " + numGoodMsgs);
+			System.out.println("The number of bad messages processed is " + numBadMsgs);
+			System.out.print("Now processing " + numGoodTokens + " good tokens");
+		}
+
+		// All of the tokens go straight into a single store, which
+		// is sized for the good section up front. A token which
+		// is found in both sections simply has its bad count
+		// added to the good count it already has. The count in
+		// the header is not trusted for the size, since the file
+		// cannot hold more tokens than it has room for.
+		int expectedTokens = Math.max(
+			Math.min(numGoodTokens, inBuffer.remaining() / RECORD_OVERHEAD), 0);
+
+		TokenStore tokenStore = ((dictionary == null)?
+			(TokenStore) new OpenAddressingTokenStore(expectedTokens, inBuffer.remaining()) :
+			new DictionaryTokenStore(dictionary, expectedTokens));
+
+		if (!readTokenSection(inBuffer, numGoodTokens, true, displayOutput, tokenStore)) {
+			return null;
+		}
+
+		// Read in the number of Bad tokens from the file.
+		int numBadTokens = inBuffer.getInt();
+
+		if (displayOutput) {
+
+			// Terminate the line, and print a console status message.
+			System.out.print("\nNow processing " + numBadTokens + " bad tokens");
+		}
+
+		if (!readTokenSection(inBuffer, numBadTokens, false, displayOutput, tokenStore)) {
+			return null;
+		}
+
+		if (displayOutput) {
+
+			// Terminate the line of ...s that the loops created.
+			System.out.println();
+		}
+
+		// Add the new token store to the return class.
+		retTrainer.setTokenStore(tokenStore);
+
+		return retTrainer;
+	}
+
+	/** Reads a single section (good or bad) of tokens out of the
+	 *  given buffer and adds them to the given store.
+	 *
+	 * @param inBuffer	The buffer to read tokens from, positioned
+	 * 					at the first token of the section.
+	 * @param numTokens	The number of tokens in this section.
+	 * @param isGood 	true if this is the good token section,
+	 * 					false if it is the bad one.
+	 * @param displayOutput	true if progress should be displayed
+	 * 							to the console, false otherwise.
+	 * @param tokenStore	The store to add the tokens to.
+	 *
+	 * @return true if the section was read, false if its token
+	 * 		   count is more than the rest of the file can hold.
+	 */
+	private static boolean readTokenSection(
+			MappedByteBuffer inBuffer,
+			int numTokens,
+			boolean isGood,
+			boolean displayOutput,
+			TokenStore tokenStore
+	) {
+
+		// Create these here to avoid unnecessary object creation
+		// inside the loop. The token bytes go through one reusable
+		// array, since the store copies them into its own.
+		int tokenCount = 0;
+		int tokenLength = 0;
+		byte[] tokenBytes = new byte[256];
+
+		// Every token takes up at least its count and length, so
+		// a count which needs more than what is left of the file
+		// is corrupt.
+		if (numTokens > (inBuffer.remaining() / RECORD_OVERHEAD)) {
+			return false;
+		}
+
+		for (int i = 0; i < numTokens; i++) {
+
+			tokenCount = inBuffer.getInt();
+			tokenLength = inBuffer.getInt();
+
+			// Check the length against what is left of the file
+			// before making room for it, so that a corrupt length
+			// is reported as such rather than running out of
+			// memory.
+			if ((tokenLength < 0) || (tokenLength > inBuffer.remaining())) {
+				throw new IllegalArgumentException("Bad token length: " + tokenLength);
+			}
+
+			if (tokenLength > tokenBytes.length) {
+				tokenBytes = new byte[Math.max(tokenLength, tokenBytes.length * 2)];
+			}
+
+			inBuffer.get(tokenBytes, 0, tokenLength);
+
+			// The token is kept as the bytes in the file. It is
+			// only decoded if it is ever displayed.
+			tokenStore.add(
+				tokenBytes,
+				0,
+				tokenLength,
+				(isGood ? tokenCount : 0),
+				(isGood ? 0 : tokenCount)
+			);
+
+			// Every numTokensBeforeTick tokens, print out a .
+			// so that the user knows that the program is
+			// doing something.
+			if (displayOutput && ((i % numTokensBeforeTick) == 0)) {
+				System.out.print('.');
+			}
+		}
+
+		return true;
+	}
+}
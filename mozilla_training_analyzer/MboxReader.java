@@ -0,0 +1,268 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Reads the messages of an mbox file one at a time.
+ *
+ *  An mbox file is a series of messages, each one starting with a
+ *  "From " line which holds the envelope sender and date. The
+ *  "From " line is not part of the message, and is left out of
+ *  what nextMessage() returns. Any text before the first "From "
+ *  line is treated as a message of its own, so that a file which
+ *  holds a single bare message can be read as well.
+ *
+ *  This reader works on any stream, such as a compressed
+ *  archive being unpacked; a plain file is split faster, and
+ *  without copying its messages, by MappedMboxScanner.
+ *
+ *  The file is read through a buffer of its own, and each message
+ *  is gathered in a second buffer which grows to fit the biggest
+ *  message, so the only allocation per message is the array that
+ *  is handed back.
+ */
+public class MboxReader {
+
+	/** The bytes which start a separator line.
+	 */
+	private static final byte[] FROM_LINE = { 'F', 'r', 'o', 'm', ' ' };
+
+	/** The stream to read from.
+	 */
+	private InputStream inStream = null;
+
+	/** The read buffer.
+	 */
+	private byte[] readBuffer = new byte[TrainingData.OUTPUT_BUFFER_SIZE];
+
+	/** The position of the next unread byte in readBuffer.
+	 */
+	private int readPos = 0;
+
+	/** The number of bytes in readBuffer.
+	 */
+	private int readLimit = 0;
+
+	/** The number of bytes of the stream which came before
+	 *  readBuffer.
+	 */
+	private long bufferStart = 0;
+
+	/** The buffer the current line is gathered in.
+	 */
+	private byte[] lineBuffer = new byte[1024];
+
+	/** The buffer the current message is gathered in.
+	 */
+	private byte[] messageBuffer = new byte[64 * 1024];
+
+	/** true once the "From " line of the next message has been
+	 *  read, i.e. it was what ended the last message.
+	 */
+	private boolean atMessageStart = false;
+
+	/** The offset in the stream of the "From " line of the last
+	 *  message returned.
+	 */
+	private long messageOffset = 0;
+
+	/** The offset in the stream of the "From " line of the next
+	 *  message.
+	 */
+	private long nextMessageOffset = 0;
+
+	/** Creates a new MboxReader.
+	 *
+	 * @param inStream	The stream to read the mbox file from. It
+	 * 					is not buffered any further, and is not
+	 * 					closed by the reader.
+	 */
+	public MboxReader(InputStream inStream) {
+		this.inStream = inStream;
+	}
+
+	/** Reads the next message.
+	 *
+	 * @return The raw bytes of the message, without its "From "
+	 * 			line, or null if there are no more messages.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading.
+	 */
+	public byte[] nextMessage() throws IOException {
+
+		int messageLength = 0;
+		boolean haveMessage = atMessageStart;
+
+		messageOffset = nextMessageOffset;
+		atMessageStart = false;
+
+		while (true) {
+
+			long lineOffset = bufferStart + readPos;
+			int lineLength = readLine();
+
+			if (lineLength == -1) {
+				break;
+			}
+
+			if (isFromLine(lineLength)) {
+
+				// A "From " line at the very start begins the
+				// first message; any other one ends this message
+				// and begins the next.
+				if (haveMessage || (messageLength > 0)) {
+
+					atMessageStart = true;
+					nextMessageOffset = lineOffset;
+					break;
+				}
+
+				haveMessage = true;
+				messageOffset = lineOffset;
+				continue;
+			}
+
+			if (messageLength + lineLength > messageBuffer.length) {
+
+				byte[] newBuffer = new byte[Math.max(messageBuffer.length * 2, messageLength + lineLength)];
+				System.arraycopy(messageBuffer, 0, newBuffer, 0, messageLength);
+				messageBuffer = newBuffer;
+			}
+
+			System.arraycopy(lineBuffer, 0, messageBuffer, messageLength, lineLength);
+			messageLength += lineLength;
+		}
+
+		if (!haveMessage && (messageLength == 0)) {
+			return null;
+		}
+
+		byte[] message = new byte[messageLength];
+		System.arraycopy(messageBuffer, 0, message, 0, messageLength);
+
+		return message;
+	}
+
+	/** Returns the offset in the file of the "From " line of the
+	 *  message last returned by nextMessage(), or of its first
+	 *  byte if it had none.
+	 *
+	 * @return The offset of the last message.
+	 */
+	public long getMessageOffset() {
+		return messageOffset;
+	}
+
+	/** Reads the next line, including its line feed, into
+	 *  lineBuffer.
+	 *
+	 * @return The length of the line, or -1 at the end of the
+	 * 			stream.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading.
+	 */
+	private int readLine() throws IOException {
+
+		int lineLength = 0;
+
+		while (true) {
+
+			if (readPos == readLimit) {
+
+				bufferStart += readLimit;
+				readPos = 0;
+				readLimit = Math.max(inStream.read(readBuffer), 0);
+
+				if (readLimit == 0) {
+					return (lineLength > 0? lineLength : -1);
+				}
+			}
+
+			// Copy up to the end of the line, or of the buffer.
+			int end = readPos;
+
+			while ((end < readLimit) && (readBuffer[end] != '\n')) {
+				end++;
+			}
+
+			boolean endOfLine = (end < readLimit);
+
+			if (endOfLine) {
+				end++;
+			}
+
+			int count = end - readPos;
+
+			if (lineLength + count > lineBuffer.length) {
+
+				byte[] newBuffer = new byte[Math.max(lineBuffer.length * 2, lineLength + count)];
+				System.arraycopy(lineBuffer, 0, newBuffer, 0, lineLength);
+				lineBuffer = newBuffer;
+			}
+
+			System.arraycopy(readBuffer, readPos, lineBuffer, lineLength, count);
+			lineLength += count;
+			readPos = end;
+
+			if (endOfLine) {
+				return lineLength;
+			}
+		}
+	}
+
+	/** Checks whether the line in lineBuffer is a "From " line.
+	 *
+	 * @param lineLength	The length of the line.
+	 *
+	 * @return true if the line starts with "From ".
+	 */
+	private boolean isFromLine(int lineLength) {
+
+		if (lineLength < FROM_LINE.length) {
+			return false;
+		}
+
+		for (int i = 0; i < FROM_LINE.length; i++) {
+
+			if (lineBuffer[i] != FROM_LINE[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
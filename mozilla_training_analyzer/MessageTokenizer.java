@@ -0,0 +1,181 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.nio.ByteBuffer;
+
+/** Splits the raw bytes of a mail message into the distinct tokens
+ *  that SpamClassifier scores it by.
+ *
+ *  The tokens are made the same way as the ones in a training.dat
+ *  written by Mozilla: a token is a run of bytes between any of
+ *  Mozilla's delimiters (white space, control characters and most
+ *  punctuation, but not - ' or $), with ASCII letters in lower
+ *  case. Bytes above 127 are left alone, so that UTF-8 or other
+ *  8-bit text stays within its token. The headers are tokenized
+ *  along with the body, and nothing is decoded first, so tokens in
+ *  base64 or quoted-printable parts come out as they are in the
+ *  message.
+ *
+ *  A MessageTokenizer reuses its buffers from message to message,
+ *  so it is not safe to share between threads; each thread should
+ *  have its own.
+ */
+public class MessageTokenizer {
+
+	/** The bytes which separate tokens, as used by Mozilla's
+	 *  tokenizer. Control characters are added to these.
+	 */
+	private static final String DELIMITERS = " \t\n\r\f!\"#%&()*+,./:;<=>?@[\\]^_`{|}~";
+
+	/** true for every byte value which separates tokens.
+	 */
+	private static final boolean[] IS_DELIMITER = new boolean[256];
+
+	static {
+
+		for (int i = 0; i < 0x20; i++) {
+			IS_DELIMITER[i] = true;
+		}
+
+		IS_DELIMITER[0x7F] = true;
+
+		for (int i = 0; i < DELIMITERS.length(); i++) {
+			IS_DELIMITER[DELIMITERS.charAt(i)] = true;
+		}
+	}
+
+	/** The buffer each token is lower-cased into.
+	 */
+	private byte[] tokenBuffer = new byte[256];
+
+	/** The buffer messages in direct buffers are copied into.
+	 */
+	private byte[] messageBuffer = new byte[64 * 1024];
+
+	/** Creates a new MessageTokenizer.
+	 */
+	public MessageTokenizer() {
+	}
+
+	/** Tokenizes a message. Every distinct token is added to the
+	 *  given store, with its number of occurences as its good
+	 *  count.
+	 *
+	 * @param message	The array holding the raw message.
+	 * @param offset	The offset of the message in the array.
+	 * @param length	The length of the message in bytes.
+	 * @param tokens	The store to put the tokens in. It is
+	 * 					cleared first.
+	 */
+	public void tokenize(byte[] message, int offset, int length, TokenStore tokens) {
+
+		tokens.clear();
+
+		int end = offset + length;
+		int tokenLength = 0;
+
+		for (int i = offset; i < end; i++) {
+
+			int b = message[i] & 0xFF;
+
+			if (IS_DELIMITER[b]) {
+
+				if (tokenLength > 0) {
+
+					tokens.add(tokenBuffer, 0, tokenLength, 1, 0);
+					tokenLength = 0;
+				}
+
+				continue;
+			}
+
+			if (tokenLength == tokenBuffer.length) {
+				growTokenBuffer();
+			}
+
+			// Only ASCII letters are lower-cased.
+			if ((b >= 'A') && (b <= 'Z')) {
+				b += 'a' - 'A';
+			}
+
+			tokenBuffer[tokenLength++] = (byte) b;
+		}
+
+		if (tokenLength > 0) {
+			tokens.add(tokenBuffer, 0, tokenLength, 1, 0);
+		}
+	}
+
+	/** Tokenizes a message held in a buffer, such as a view of a
+	 *  mapped file from MappedMboxScanner. The bytes from the
+	 *  position to the limit of the buffer are tokenized; its
+	 *  position is not changed. A buffer which isn't backed by an
+	 *  array is copied into one of the tokenizer's own first.
+	 *
+	 * @param message	The buffer holding the raw message.
+	 * @param tokens	The store to put the tokens in. It is
+	 * 					cleared first.
+	 */
+	public void tokenize(ByteBuffer message, TokenStore tokens) {
+
+		if (message.hasArray()) {
+
+			tokenize(message.array(), message.arrayOffset() + message.position(), message.remaining(), tokens);
+			return;
+		}
+
+		// A bulk get into a buffer of our own is a plain memory
+		// copy, and beats reading a direct buffer a byte at a time.
+		int length = message.remaining();
+
+		if (length > messageBuffer.length) {
+			messageBuffer = new byte[Math.max(messageBuffer.length * 2, length)];
+		}
+
+		int position = message.position();
+		message.get(messageBuffer, 0, length);
+		message.position(position);
+
+		tokenize(messageBuffer, 0, length, tokens);
+	}
+
+	/** Doubles the size of tokenBuffer, keeping what is in it.
+	 */
+	private void growTokenBuffer() {
+
+		byte[] newBuffer = new byte[tokenBuffer.length * 2];
+		System.arraycopy(tokenBuffer, 0, newBuffer, 0, tokenBuffer.length);
+		tokenBuffer = newBuffer;
+	}
+}
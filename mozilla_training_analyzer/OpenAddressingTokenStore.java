@@ -0,0 +1,437 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.util.BitSet;
+
+/** The default TokenStore implementation, an open-addressing hash
+ *  table which is laid out in columns rather than as one object
+ *  per token.
+ *
+ *  The bytes of every token are kept back to back in a single
+ *  byte array (the arena), and the offset, length, hash, good
+ *  count and bad count of each token are kept in parallel int
+ *  arrays indexed by the token's index. The hash table itself is
+ *  just an int array of token indices which is searched with
+ *  linear probing. A token therefore costs a handful of array
+ *  slots rather than a String, a MozillaSpamToken and a TreeSet
+ *  node, and a lookup costs a single hash probe rather than a
+ *  series of compareTo() calls.
+ *
+ *  The table and the count columns are shared with
+ *  DictionaryTokenStore through HashedTokenStore; this class adds
+ *  the arena and the columns which describe each token's bytes.
+ */
+public class OpenAddressingTokenStore extends HashedTokenStore {
+
+	/** The number of tokens a new store has room for by default.
+	 */
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	/** The average token length assumed when sizing the arena.
+	 */
+	private static final int DEFAULT_TOKEN_LENGTH = 8;
+
+	/** The arena holding the bytes of every token.
+	 */
+	private byte[] arena = null;
+
+	/** The number of bytes of the arena which are in use,
+	 *  including those of removed tokens.
+	 */
+	private int arenaUsed = 0;
+
+	/** The number of bytes of the arena which belong to tokens
+	 *  that have since been removed.
+	 */
+	private int arenaGarbage = 0;
+
+	/** The offset of each token within the arena.
+	 */
+	private int[] offsets = null;
+
+	/** The length in bytes of each token.
+	 */
+	private int[] lengths = null;
+
+	/** The hash of each token, kept so that the table can be
+	 *  grown without rehashing every token's bytes.
+	 */
+	private int[] hashes = null;
+
+	/** Creates a new, empty OpenAddressingTokenStore.
+	 */
+	public OpenAddressingTokenStore() {
+
+		this(DEFAULT_CAPACITY, DEFAULT_CAPACITY * DEFAULT_TOKEN_LENGTH);
+	}
+
+	/** Creates a new, empty OpenAddressingTokenStore which is
+	 *  presized to hold the given number of tokens without
+	 *  having to grow.
+	 *
+	 * @param expectedTokens	The number of tokens the store
+	 * 							should have room for.
+	 * @param expectedBytes	The total number of token bytes the
+	 * 							store should have room for.
+	 */
+	public OpenAddressingTokenStore(int expectedTokens, int expectedBytes) {
+
+		super(Math.max(expectedTokens, 16));
+
+		int capacity = goodCounts.length;
+
+		arena = new byte[Math.max(expectedBytes, 64)];
+		offsets = new int[capacity];
+		lengths = new int[capacity];
+		hashes = new int[capacity];
+	}
+
+	/** Computes the hash of the given bytes. This is the 32 bit
+	 * 	FNV-1a hash, which is cheap and spreads short tokens well.
+	 *
+	 * @param bytes	The array holding the bytes to hash.
+	 * @param offset	The offset of the bytes within the array.
+	 * @param length	The number of bytes to hash.
+	 *
+	 * @return The hash of the given bytes.
+	 */
+	public static int hash(byte[] bytes, int offset, int length) {
+
+		int h = 0x811C9DC5;
+
+		for (int i = offset; i < offset + length; i++) {
+
+			h ^= (bytes[i] & 0xFF);
+			h *= 0x01000193;
+		}
+
+		return h;
+	}
+
+	/** Checks whether the token at the given index is equal to
+	 *  the given bytes.
+	 *
+	 * @param index	The index of a token in this store.
+	 * @param token	The array holding the bytes to compare with.
+	 * @param offset	The offset of the bytes within the array.
+	 * @param length	The number of bytes to compare.
+	 *
+	 * @return true if the token's bytes are the same as the
+	 * 			given ones, false otherwise.
+	 */
+	private boolean tokenEquals(int index, byte[] token, int offset, int length) {
+
+		if (lengths[index] != length) {
+			return false;
+		}
+
+		int tokenOffset = offsets[index];
+
+		for (int i = 0; i < length; i++) {
+
+			if (arena[tokenOffset + i] != token[offset + i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/** Makes sure that the arena has room for the given number of
+	 *  additional bytes.
+	 *
+	 * @param length	The number of bytes which are about to be
+	 * 					appended to the arena.
+	 */
+	private void ensureArenaCapacity(int length) {
+
+		if (arenaUsed + length <= arena.length) {
+			return;
+		}
+
+		// If most of the arena is taken up by removed tokens,
+		// squeeze them out rather than growing.
+		if (arenaGarbage > arenaUsed / 2) {
+
+			compactArena(arena.length);
+
+			if (arenaUsed + length <= arena.length) {
+				return;
+			}
+		}
+
+		long newLength = Math.max((long) arena.length * 2, (long) arenaUsed + length);
+
+		byte[] newArena = new byte[(int) Math.min(newLength, Integer.MAX_VALUE - 8)];
+		System.arraycopy(arena, 0, newArena, 0, arenaUsed);
+		arena = newArena;
+	}
+
+	/** Rewrites the arena so that it holds only the bytes of the
+	 *  tokens which are still in the store, in index order.
+	 *
+	 * @param newLength	The length of the new arena, which must
+	 * 					be enough for the tokens in the store.
+	 */
+	private void compactArena(int newLength) {
+
+		byte[] newArena = new byte[newLength];
+		int newUsed = 0;
+
+		for (int i = 0; i < size; i++) {
+
+			System.arraycopy(arena, offsets[i], newArena, newUsed, lengths[i]);
+			offsets[i] = newUsed;
+			newUsed += lengths[i];
+		}
+
+		arena = newArena;
+		arenaUsed = newUsed;
+		arenaGarbage = 0;
+	}
+
+	/** Builds a single store out of several stores by laying
+	 *  their contents end to end, in the order given. The tokens
+	 *  keep their counts, and the tokens of parts[0] come first
+	 *  in index order, followed by those of parts[1], and so on.
+	 *
+	 *  No two of the parts may hold the same token. That is not
+	 *  checked; it is what lets the hash table be rebuilt from
+	 *  the stored hashes without comparing any tokens, which
+	 *  makes this much cheaper than adding the tokens one at a
+	 *  time. The parts are left as they were.
+	 *
+	 * @param parts	The stores to concatenate, none of which may
+	 * 				share a token with another.
+	 *
+	 * @return A new store holding the tokens of all of the parts.
+	 */
+	public static OpenAddressingTokenStore concatenate(OpenAddressingTokenStore[] parts) {
+
+		int totalTokens = 0;
+		long totalBytes = 0;
+
+		for (int i = 0; i < parts.length; i++) {
+
+			totalTokens += parts[i].size;
+			totalBytes += parts[i].arenaUsed;
+		}
+
+		if (totalBytes > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("The parts hold too many token bytes for a single store!");
+		}
+
+		OpenAddressingTokenStore retStore = new OpenAddressingTokenStore(totalTokens, (int) totalBytes);
+
+		retStore.appendAll(parts);
+
+		return retStore;
+	}
+
+	/** Returns roughly how many bytes of memory the store's
+	 *  arrays take up. This counts what has been allocated, not
+	 *  what is in use, so it is what the store really costs.
+	 *
+	 * @return The number of bytes allocated by the store.
+	 */
+	public long getMemoryUsage() {
+
+		// The arena, five int columns, and the int hash table.
+		return arena.length + (20L * offsets.length) + (4L * table.length);
+	}
+
+	/** @see mozilla_training_analyzer.HashedTokenStore#hashOf(int)
+	 */
+	protected int hashOf(int index) {
+		return hashes[index];
+	}
+
+	/** @see mozilla_training_analyzer.HashedTokenStore#growColumns(int)
+	 */
+	protected void growColumns(int newCapacity) {
+
+		offsets = grow(offsets, newCapacity);
+		lengths = grow(lengths, newCapacity);
+		hashes = grow(hashes, newCapacity);
+	}
+
+	/** @see mozilla_training_analyzer.HashedTokenStore#moveColumns(int, int)
+	 */
+	protected void moveColumns(int from, int to) {
+
+		offsets[to] = offsets[from];
+		lengths[to] = lengths[from];
+		hashes[to] = hashes[from];
+	}
+
+	/** @see mozilla_training_analyzer.HashedTokenStore#appendColumns(mozilla_training_analyzer.HashedTokenStore)
+	 */
+	protected void appendColumns(HashedTokenStore part) {
+
+		OpenAddressingTokenStore store = (OpenAddressingTokenStore) part;
+
+		// Copy the arena and the columns across as blocks,
+		// moving the offsets along to the part's new place.
+		System.arraycopy(store.arena, 0, arena, arenaUsed, store.arenaUsed);
+		System.arraycopy(store.lengths, 0, lengths, size, store.size);
+		System.arraycopy(store.hashes, 0, hashes, size, store.size);
+
+		for (int j = 0; j < store.size; j++) {
+			offsets[size + j] = store.offsets[j] + arenaUsed;
+		}
+
+		arenaUsed += store.arenaUsed;
+		arenaGarbage += store.arenaGarbage;
+	}
+
+	/** @see mozilla_training_analyzer.HashedTokenStore#releaseToken(int)
+	 */
+	protected void releaseToken(int index) {
+		arenaGarbage += lengths[index];
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#indexOf(byte[], int, int)
+	 */
+	public int indexOf(byte[] token, int offset, int length) {
+
+		int h = hash(token, offset, length);
+		int slot = slotFor(h);
+		int entry = 0;
+
+		// Walk the probe sequence until we either find the token
+		// or hit an empty slot.
+		while ((entry = table[slot]) != 0) {
+
+			entry--;
+
+			if ((hashes[entry] == h) && tokenEquals(entry, token, offset, length)) {
+				return entry;
+			}
+
+			slot = (slot + 1) & (table.length - 1);
+		}
+
+		return -1;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#add(byte[], int, int, int, int)
+	 */
+	public int add(byte[] token, int offset, int length, int goodCount, int badCount) {
+
+		int h = hash(token, offset, length);
+		int slot = slotFor(h);
+		int entry = 0;
+
+		while ((entry = table[slot]) != 0) {
+
+			entry--;
+
+			// Already here, so just add to its counts.
+			if ((hashes[entry] == h) && tokenEquals(entry, token, offset, length)) {
+
+				addCounts(entry, goodCount, badCount);
+
+				return entry;
+			}
+
+			slot = (slot + 1) & (table.length - 1);
+		}
+
+		// The token is new, so append it to the columns.
+		ensureColumnCapacity();
+		ensureArenaCapacity(length);
+
+		int index = size;
+
+		System.arraycopy(token, offset, arena, arenaUsed, length);
+		offsets[index] = arenaUsed;
+		lengths[index] = length;
+		hashes[index] = h;
+
+		arenaUsed += length;
+
+		return insert(slot, goodCount, badCount);
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#removeAll(java.util.BitSet)
+	 */
+	public void removeAll(BitSet indices) {
+
+		int oldSize = size;
+
+		super.removeAll(indices);
+
+		if (size == oldSize) {
+			return;
+		}
+
+		// Squeeze the bytes of the removed tokens out of the
+		// arena, which shrinks to hold the survivors exactly.
+		int liveBytes = 0;
+
+		for (int i = 0; i < size; i++) {
+			liveBytes += lengths[i];
+		}
+
+		compactArena(Math.max(liveBytes, 64));
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#clear()
+	 */
+	public void clear() {
+
+		super.clear();
+
+		arenaUsed = 0;
+		arenaGarbage = 0;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getTokenArray(int)
+	 */
+	public byte[] getTokenArray(int index) {
+		return arena;
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getTokenOffset(int)
+	 */
+	public int getTokenOffset(int index) {
+		return offsets[index];
+	}
+
+	/** @see mozilla_training_analyzer.TokenStore#getTokenLength(int)
+	 */
+	public int getTokenLength(int index) {
+		return lengths[index];
+	}
+}
@@ -0,0 +1,381 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/** Merges two token stores on several threads at once, giving
+ *  exactly the same result as Analyzer.mergeTokenLists().
+ *
+ *  The sorted key space is cut into ranges: evenly spaced tokens
+ *  of the bigger store are picked as split points, and the place
+ *  of each split point in the other store is found with a binary
+ *  search. Every range of one store then only has to be merged
+ *  with the matching range of the other, so the ranges are
+ *  merged side by side on a ForkJoinPool, each into a store of
+ *  its own. Since the ranges don't overlap, the partial stores
+ *  can then simply be laid end to end with the concatenate()
+ *  of whichever kind of store they were merged into.
+ *
+ *  There are several ranges per thread, so that a thread which
+ *  finishes early can steal work from one that doesn't.
+ */
+public class ParallelTokenMerger {
+
+	/** Merges with fewer tokens than this in total are simply
+	 *  handed to Analyzer.mergeTokenLists(), as splitting them up
+	 *  costs more than it saves.
+	 */
+	public static final int MIN_PARALLEL_TOKENS = 65536;
+
+	/** The smallest number of tokens which a range should hold.
+	 */
+	private static final int MIN_RANGE_TOKENS = 16384;
+
+	/** The number of ranges to make for each thread of the pool.
+	 */
+	private static final int RANGES_PER_THREAD = 4;
+
+	/** The pool used when the caller doesn't supply one. It is
+	 *  only created the first time it is needed.
+	 */
+	private static ForkJoinPool sharedPool = null;
+
+	// No instantiation of this class, everything is static.
+	private ParallelTokenMerger() {
+	}
+
+	/** Returns the pool used by mergeTokenLists(TokenStore,
+	 *  TokenStore), creating it if need be. It has one thread
+	 *  for each processor.
+	 *
+	 * @return The shared ForkJoinPool.
+	 */
+	public static synchronized ForkJoinPool getSharedPool() {
+
+		if (sharedPool == null) {
+			sharedPool = new ForkJoinPool();
+		}
+
+		return sharedPool;
+	}
+
+	/** Merges two token stores into a third, new TokenStore,
+	 *  using the shared pool.
+	 *
+	 * @param goodTokens A TokenStore of good tokens to be merged.
+	 * @param badTokens A TokenStore of bad tokens to be merged.
+	 *
+	 * @return A TokenStore which contains the combined values of
+	 * 			both stores.
+	 *
+	 * @see Analyzer#mergeTokenLists(TokenStore, TokenStore)
+	 */
+	public static TokenStore mergeTokenLists(
+			TokenStore goodTokens,
+			TokenStore badTokens
+	) {
+
+		return mergeTokenLists(goodTokens, badTokens, getSharedPool());
+	}
+
+	/** Merges two token stores into a third, new TokenStore,
+	 *  using the given pool. Neither of the given stores is
+	 *  changed, and neither may be changed by anyone else while
+	 *  the merge is running.
+	 *
+	 * @param goodTokens A TokenStore of good tokens to be merged.
+	 * @param badTokens A TokenStore of bad tokens to be merged.
+	 * @param pool	The pool to run the merge on.
+	 *
+	 * @return A TokenStore which contains the combined values of
+	 * 			both stores.
+	 *
+	 * @see Analyzer#mergeTokenLists(TokenStore, TokenStore)
+	 */
+	public static TokenStore mergeTokenLists(
+			TokenStore goodTokens,
+			TokenStore badTokens,
+			ForkJoinPool pool
+	) {
+
+		int totalTokens = goodTokens.size() + badTokens.size();
+
+		// Not worth it for small merges or a single thread.
+		if ((totalTokens < MIN_PARALLEL_TOKENS) || (pool.getParallelism() < 2)) {
+			return Analyzer.mergeTokenLists(goodTokens, badTokens);
+		}
+
+		// Work out both sorted views at the same time.
+		SortedViewTask goodView = new SortedViewTask(goodTokens);
+		SortedViewTask badView = new SortedViewTask(badTokens);
+
+		pool.invoke(new InvokeAllTask(new ForkJoinTask<?>[] { goodView, badView }));
+
+		int[] goodOrder = goodView.order;
+		int[] badOrder = badView.order;
+
+		// Split along the bigger of the two stores, so that the
+		// split points are as evenly spread as they can be.
+		boolean splitOnGood = (goodOrder.length >= badOrder.length);
+
+		TokenStore leadTokens = (splitOnGood? goodTokens : badTokens);
+		int[] leadOrder = (splitOnGood? goodOrder : badOrder);
+		TokenStore otherTokens = (splitOnGood? badTokens : goodTokens);
+		int[] otherOrder = (splitOnGood? badOrder : goodOrder);
+
+		int numRanges = Math.min(
+			pool.getParallelism() * RANGES_PER_THREAD,
+			Math.max(1, totalTokens / MIN_RANGE_TOKENS));
+
+		// The boundaries of the ranges in both views. Range r
+		// covers [leadBounds[r], leadBounds[r + 1]) of the lead
+		// view and [otherBounds[r], otherBounds[r + 1]) of the
+		// other one.
+		int[] leadBounds = new int[numRanges + 1];
+		int[] otherBounds = new int[numRanges + 1];
+
+		for (int r = 1; r < numRanges; r++) {
+
+			leadBounds[r] = (int) (((long) leadOrder.length * r) / numRanges);
+
+			// Everything in the other view which sorts before the
+			// split point belongs to the ranges before it.
+			otherBounds[r] = lowerBound(
+				otherTokens, otherOrder,
+				leadTokens, leadOrder[leadBounds[r]]);
+		}
+
+		leadBounds[numRanges] = leadOrder.length;
+		otherBounds[numRanges] = otherOrder.length;
+
+		RangeMergeTask[] rangeTasks = new RangeMergeTask[numRanges];
+
+		for (int r = 0; r < numRanges; r++) {
+
+			// Keep the good store on the left, just as the
+			// sequential merge does.
+			if (splitOnGood) {
+
+				rangeTasks[r] = new RangeMergeTask(
+					goodTokens, goodOrder, leadBounds[r], leadBounds[r + 1],
+					badTokens, badOrder, otherBounds[r], otherBounds[r + 1]);
+
+			} else {
+
+				rangeTasks[r] = new RangeMergeTask(
+					goodTokens, goodOrder, otherBounds[r], otherBounds[r + 1],
+					badTokens, badOrder, leadBounds[r], leadBounds[r + 1]);
+			}
+		}
+
+		pool.invoke(new InvokeAllTask(rangeTasks));
+
+		// Every range was merged into the same kind of store, so
+		// join them with the matching concatenate().
+		if (rangeTasks[0].result instanceof DictionaryTokenStore) {
+
+			DictionaryTokenStore[] parts = new DictionaryTokenStore[numRanges];
+
+			for (int r = 0; r < numRanges; r++) {
+				parts[r] = (DictionaryTokenStore) rangeTasks[r].result;
+			}
+
+			return DictionaryTokenStore.concatenate(parts);
+		}
+
+		OpenAddressingTokenStore[] parts = new OpenAddressingTokenStore[numRanges];
+
+		for (int r = 0; r < numRanges; r++) {
+			parts[r] = (OpenAddressingTokenStore) rangeTasks[r].result;
+		}
+
+		return OpenAddressingTokenStore.concatenate(parts);
+	}
+
+	/** Finds the first position of a sorted view whose token does
+	 *  not sort before the given token.
+	 *
+	 * @param tokenStore	The store which the view belongs to.
+	 * @param order	The sorted view to search.
+	 * @param keyStore	The store holding the token to look for.
+	 * @param keyIndex	The index of that token in keyStore.
+	 *
+	 * @return The first position of order whose token is greater
+	 * 			than or equal to the key, or order.length if there
+	 * 			is none.
+	 */
+	private static int lowerBound(
+			TokenStore tokenStore,
+			int[] order,
+			TokenStore keyStore,
+			int keyIndex
+	) {
+
+		int low = 0;
+		int high = order.length;
+
+		while (low < high) {
+
+			int mid = (low + high) >>> 1;
+
+			if (TokenSorter.compare(tokenStore, order[mid], keyStore, keyIndex) < 0) {
+
+				low = mid + 1;
+
+			} else {
+
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/** Runs a group of tasks and waits for all of them.
+	 */
+	private static class InvokeAllTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The tasks to run.
+		 */
+		private ForkJoinTask<?>[] tasks = null;
+
+		/** Creates a new InvokeAllTask.
+		 *
+		 * @param tasks	The tasks to run.
+		 */
+		InvokeAllTask(ForkJoinTask<?>[] tasks) {
+			this.tasks = tasks;
+		}
+
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+
+	/** Works out the sorted view of a store.
+	 */
+	private static class SortedViewTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The store to sort.
+		 */
+		private TokenStore tokenStore = null;
+
+		/** The sorted view, once the task is done.
+		 */
+		int[] order = null;
+
+		/** Creates a new SortedViewTask.
+		 *
+		 * @param tokenStore	The store to sort.
+		 */
+		SortedViewTask(TokenStore tokenStore) {
+			this.tokenStore = tokenStore;
+		}
+
+		protected void compute() {
+			order = tokenStore.getSortedIndices();
+		}
+	}
+
+	/** Merges one range of the two sorted views into a store of
+	 *  its own.
+	 */
+	private static class RangeMergeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The first store, its sorted view, and the range of
+		 *  the view to merge.
+		 */
+		private TokenStore goodTokens = null;
+		private int[] goodOrder = null;
+		private int goodStart = 0;
+		private int goodEnd = 0;
+
+		/** The second store, its sorted view, and the range of
+		 *  the view to merge.
+		 */
+		private TokenStore badTokens = null;
+		private int[] badOrder = null;
+		private int badStart = 0;
+		private int badEnd = 0;
+
+		/** The merged tokens of the range, once the task is done.
+		 */
+		TokenStore result = null;
+
+		/** Creates a new RangeMergeTask. The ranges are given as
+		 *  for Analyzer.mergeSortedRanges().
+		 */
+		RangeMergeTask(
+				TokenStore goodTokens,
+				int[] goodOrder,
+				int goodStart,
+				int goodEnd,
+				TokenStore badTokens,
+				int[] badOrder,
+				int badStart,
+				int badEnd
+		) {
+
+			this.goodTokens = goodTokens;
+			this.goodOrder = goodOrder;
+			this.goodStart = goodStart;
+			this.goodEnd = goodEnd;
+			this.badTokens = badTokens;
+			this.badOrder = badOrder;
+			this.badStart = badStart;
+			this.badEnd = badEnd;
+		}
+
+		protected void compute() {
+
+			// Size the store so that it never has to grow.
+			result = Analyzer.createMergedStore(
+				goodTokens, goodOrder, goodStart, goodEnd,
+				badTokens, badOrder, badStart, badEnd);
+
+			Analyzer.mergeSortedRanges(
+				goodTokens, goodOrder, goodStart, goodEnd,
+				badTokens, badOrder, badStart, badEnd,
+				result);
+		}
+	}
+}
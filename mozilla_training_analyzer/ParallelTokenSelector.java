@@ -0,0 +1,189 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Tests every token of a TrainingData against a TokenPredicate
+ *  on several threads at once, giving exactly the same BitSet as
+ *  testing them one after the other.
+ *
+ *  The range of token indices is split in half again and again
+ *  until the pieces are small enough, and the pieces are tested
+ *  side by side on a ForkJoinPool. Every split falls on a
+ *  multiple of 64, so each piece owns whole words of the result
+ *  and can set its bits straight into one shared long[] without
+ *  any locking. Once the last piece has been joined, the words
+ *  simply become the BitSet.
+ *
+ *  Like the merge, there are several pieces per thread so that
+ *  a thread which finishes early (e.g. because its tokens were
+ *  all ruled out by a count before a regex was needed) can
+ *  steal work from one that doesn't.
+ */
+public class ParallelTokenSelector {
+
+	/** Stores with fewer tokens than this are searched on the
+	 *  calling thread, as splitting them up costs more than it
+	 *  saves.
+	 */
+	public static final int MIN_PARALLEL_TOKENS = 65536;
+
+	/** The smallest number of tokens which a piece should hold.
+	 *  This must be a multiple of 64.
+	 */
+	private static final int MIN_CHUNK_TOKENS = 16384;
+
+	/** The number of pieces to make for each thread of the pool.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	// No instantiation of this class, everything is static.
+	private ParallelTokenSelector() {
+	}
+
+	/** Picks out every token of the given TrainingData which
+	 *  matches the given predicate, using the shared pool of
+	 *  ParallelTokenMerger.
+	 *
+	 * @param predicate	The predicate to test.
+	 * @param trainer	The TrainingData to look through.
+	 *
+	 * @return A BitSet with the indices of the matching tokens
+	 * 			set.
+	 */
+	public static BitSet select(TokenPredicate predicate, TrainingData trainer) {
+
+		return select(predicate, trainer, ParallelTokenMerger.getSharedPool());
+	}
+
+	/** Picks out every token of the given TrainingData which
+	 *  matches the given predicate, using the given pool. The
+	 *  TrainingData must not be changed while this is running.
+	 *
+	 * @param predicate	The predicate to test.
+	 * @param trainer	The TrainingData to look through.
+	 * @param pool	The pool to run the search on.
+	 *
+	 * @return A BitSet with the indices of the matching tokens
+	 * 			set.
+	 */
+	public static BitSet select(TokenPredicate predicate, TrainingData trainer, ForkJoinPool pool) {
+
+		int size = trainer.getTokenStore().size();
+		long[] words = new long[(size + 63) >>> 6];
+
+		if ((size < MIN_PARALLEL_TOKENS) || (pool.getParallelism() < 2)) {
+
+			// Not worth the bother, do it here.
+			predicate.selectRange(trainer, 0, size, words);
+
+		} else {
+
+			// Aim for a few pieces per thread, rounded up to
+			// whole words.
+			int chunkTokens = size / (pool.getParallelism() * CHUNKS_PER_THREAD);
+			chunkTokens = Math.max(MIN_CHUNK_TOKENS, (chunkTokens + 63) & ~63);
+
+			pool.invoke(new SelectTask(predicate, trainer, 0, size, chunkTokens, words));
+		}
+
+		return BitSet.valueOf(words);
+	}
+
+	/** Tests a range of tokens, splitting it in two and testing
+	 *  the halves as separate tasks if it is too big.
+	 */
+	private static class SelectTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The predicate to test.
+		 */
+		private TokenPredicate predicate = null;
+
+		/** The TrainingData to look through.
+		 */
+		private TrainingData trainer = null;
+
+		/** The range of tokens to test. start is always a
+		 *  multiple of 64.
+		 */
+		private int start = 0;
+		private int end = 0;
+
+		/** The largest range that is tested without splitting.
+		 */
+		private int chunkTokens = 0;
+
+		/** The shared bits of the result.
+		 */
+		private long[] words = null;
+
+		SelectTask(
+				TokenPredicate predicate,
+				TrainingData trainer,
+				int start,
+				int end,
+				int chunkTokens,
+				long[] words
+		) {
+
+			this.predicate = predicate;
+			this.trainer = trainer;
+			this.start = start;
+			this.end = end;
+			this.chunkTokens = chunkTokens;
+			this.words = words;
+		}
+
+		protected void compute() {
+
+			if (end - start <= chunkTokens) {
+
+				predicate.selectRange(trainer, start, end, words);
+				return;
+			}
+
+			// Split on a word boundary, so that the two halves
+			// never touch the same word.
+			int middle = (start + ((end - start) >>> 1)) & ~63;
+
+			invokeAll(
+				new SelectTask(predicate, trainer, start, middle, chunkTokens, words),
+				new SelectTask(predicate, trainer, middle, end, chunkTokens, words));
+		}
+	}
+}
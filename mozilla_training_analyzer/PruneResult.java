@@ -0,0 +1,107 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+/** Reports what a bulk prune of a token store took out. A token
+ *  which had both a good and a bad count counts towards both
+ *  sections, just as it is written to both sections of a
+ *  training.dat.
+ */
+public class PruneResult {
+
+	/** The number of distinct tokens removed.
+	 */
+	private int numTokensRemoved = 0;
+
+	/** The number of tokens removed from the good section.
+	 */
+	private int numGoodTokensRemoved = 0;
+
+	/** The number of tokens removed from the bad section.
+	 */
+	private int numBadTokensRemoved = 0;
+
+	/** Creates a new PruneResult.
+	 *
+	 * @param tokensRemoved	The number of distinct tokens
+	 * 							removed.
+	 * @param goodTokensRemoved	The number of tokens removed from
+	 * 								the good section.
+	 * @param badTokensRemoved	The number of tokens removed from
+	 * 								the bad section.
+	 */
+	public PruneResult(int tokensRemoved, int goodTokensRemoved, int badTokensRemoved) {
+
+		numTokensRemoved = tokensRemoved;
+		numGoodTokensRemoved = goodTokensRemoved;
+		numBadTokensRemoved = badTokensRemoved;
+	}
+
+	/** Returns the number of distinct tokens removed.
+	 *
+	 * @return The number of distinct tokens removed.
+	 */
+	public int getNumTokensRemoved() {
+		return numTokensRemoved;
+	}
+
+	/** Returns the number of tokens removed from the good
+	 *  section, i.e. removed tokens with a good count &gt; 0.
+	 *
+	 * @return The number of tokens removed from the good section.
+	 */
+	public int getNumGoodTokensRemoved() {
+		return numGoodTokensRemoved;
+	}
+
+	/** Returns the number of tokens removed from the bad
+	 *  section, i.e. removed tokens with a bad count &gt; 0.
+	 *
+	 * @return The number of tokens removed from the bad section.
+	 */
+	public int getNumBadTokensRemoved() {
+		return numBadTokensRemoved;
+	}
+
+	/** Returns a one-line description of the prune, for console
+	 *  and status messages.
+	 *
+	 * @return A description of the prune.
+	 */
+	public String toString() {
+
+		return "Removed " + numTokensRemoved + " tokens (" +
+			numGoodTokensRemoved + " good, " +
+			numBadTokensRemoved + " bad)";
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+/** Scores messages against a TrainingData, giving the probability
+ *  that each one is spam. This is the Robinson-Fisher method that
+ *  Mozilla's own junk filter uses:
+ *
+ *  <ol>
+ *  <li>Each token gets a spam probability p from its counts, as in
+ *  	TopTokenReport.getSpamProbability(), which is then pulled
+ *  	towards an assumed probability x for tokens which have only
+ *  	been seen a few times: f = (s * x + n * p) / (s + n), where n
+ *  	is the number of times the token was seen and s is the
+ *  	strength of the assumption.</li>
+ *  <li>Tokens whose f is within minDeviation of 0.5 say little
+ *  	either way, and are ignored, as are tokens which aren't in
+ *  	the training data at all.</li>
+ *  <li>The remaining n tokens of a message are combined with
+ *  	Fisher's method: H = Q(-2 ln(product of f), 2n) and
+ *  	S = Q(-2 ln(product of 1 - f), 2n), where Q is the
+ *  	chi-square upper tail probability. The spam probability of
+ *  	the message is (1 + H - S) / 2.</li>
+ *  </ol>
+ *
+ *  All of the per-token work is done once, when the classifier is
+ *  built: only the tokens which count are kept, in an
+ *  OpenAddressingTokenStore of their own, and ln f and ln (1 - f)
+ *  are kept in flat columns beside it. Scoring a message is then
+ *  one hash probe and two additions per token, and allocates
+ *  nothing.
+ *
+ *  A classifier is a snapshot of the TrainingData it was built
+ *  from, and does not change if the TrainingData does. It is
+ *  never changed after it is built, so any number of threads may
+ *  use one at the same time.
+ */
+public class SpamClassifier {
+
+	/** The default strength s of the assumed probability, as in
+	 *  Mozilla's filter.
+	 */
+	public static final double DEFAULT_STRENGTH = 0.45;
+
+	/** The default assumed probability x of a token which hasn't
+	 *  been seen, as in Mozilla's filter.
+	 */
+	public static final double DEFAULT_ASSUMED_PROBABILITY = 0.5;
+
+	/** The default distance from 0.5 that a token's probability
+	 *  must have to count, as in Mozilla's filter.
+	 */
+	public static final double DEFAULT_MIN_DEVIATION = 0.1;
+
+	/** The score at or above which Mozilla treats a message as
+	 *  junk.
+	 */
+	public static final double DEFAULT_SPAM_THRESHOLD = 0.9;
+
+	/** The largest Poisson mean whose first term, e^-mean, is
+	 *  still comfortably within the range of a double.
+	 */
+	private static final double MAX_DIRECT_POISSON_MEAN = 700;
+
+	/** The tokens which count when scoring.
+	 */
+	private OpenAddressingTokenStore tokens = null;
+
+	/** ln f of each token, by its index in tokens.
+	 */
+	private double[] logSpamProbabilities = null;
+
+	/** ln (1 - f) of each token, by its index in tokens.
+	 */
+	private double[] logHamProbabilities = null;
+
+	/** Creates a new SpamClassifier with Mozilla's settings.
+	 *
+	 * @param trainer	The training data to score messages
+	 * 					against.
+	 */
+	public SpamClassifier(TrainingData trainer) {
+
+		this(trainer, DEFAULT_STRENGTH, DEFAULT_ASSUMED_PROBABILITY, DEFAULT_MIN_DEVIATION);
+	}
+
+	/** Creates a new SpamClassifier.
+	 *
+	 * @param trainer	The training data to score messages
+	 * 					against.
+	 * @param strength	The strength s of the assumed probability.
+	 * @param assumedProbability	The assumed probability x of a
+	 * 								token which hasn't been seen.
+	 * @param minDeviation	The distance from 0.5 that a token's
+	 * 						probability must have to count.
+	 */
+	public SpamClassifier(
+			TrainingData trainer,
+			double strength,
+			double assumedProbability,
+			double minDeviation
+	) {
+
+		TokenStore tokenStore = trainer.getTokenStore();
+		double[] probabilities = new double[tokenStore.size()];
+		int numSignificant = 0;
+		int significantBytes = 0;
+
+		// Work out every token's probability, and how much room
+		// the ones which count will need.
+		for (int i = 0; i < tokenStore.size(); i++) {
+
+			double p = TopTokenReport.getSpamProbability(trainer, i);
+			double n = (double) tokenStore.getGoodCount(i) + tokenStore.getBadCount(i);
+
+			probabilities[i] = (strength * assumedProbability + n * p) / (strength + n);
+
+			if (Math.abs(probabilities[i] - 0.5) >= minDeviation) {
+
+				numSignificant++;
+				significantBytes += tokenStore.getTokenLength(i);
+			}
+		}
+
+		tokens = new OpenAddressingTokenStore(numSignificant, significantBytes);
+		logSpamProbabilities = new double[numSignificant];
+		logHamProbabilities = new double[numSignificant];
+
+		for (int i = 0; i < tokenStore.size(); i++) {
+
+			if (Math.abs(probabilities[i] - 0.5) < minDeviation) {
+				continue;
+			}
+
+			// Every token is new to the store, so it lands at the
+			// next index.
+			int index = tokens.add(
+				tokenStore.getTokenArray(i),
+				tokenStore.getTokenOffset(i),
+				tokenStore.getTokenLength(i),
+				tokenStore.getGoodCount(i),
+				tokenStore.getBadCount(i));
+
+			logSpamProbabilities[index] = Math.log(probabilities[i]);
+			logHamProbabilities[index] = Math.log(1 - probabilities[i]);
+		}
+	}
+
+	/** Returns the number of tokens which count when scoring.
+	 *
+	 * @return The number of tokens in the lookup table.
+	 */
+	public int size() {
+		return tokens.size();
+	}
+
+	/** Returns the probability f used for a token when scoring.
+	 *
+	 * @param token	An array containing the token bytes.
+	 * @param offset	The offset of the token within the array.
+	 * @param length	The length in bytes of the token.
+	 *
+	 * @return The probability of the token, or -1 if the token
+	 * 			is ignored when scoring.
+	 */
+	public double getTokenProbability(byte[] token, int offset, int length) {
+
+		int index = tokens.indexOf(token, offset, length);
+
+		if (index == -1) {
+			return -1;
+		}
+
+		return Math.exp(logSpamProbabilities[index]);
+	}
+
+	/** Works out the probability that a message is spam.
+	 *
+	 * @param messageTokens	The distinct tokens of the message.
+	 * 						Only the tokens are used; their counts
+	 * 						are ignored, as a token counts once
+	 * 						however often it is in the message.
+	 *
+	 * @return The spam probability of the message, from 0 to 1.
+	 * 			A message with no tokens which count gets 0.5.
+	 */
+	public double score(TokenStore messageTokens) {
+
+		double logSpamSum = 0;
+		double logHamSum = 0;
+		int numTokens = 0;
+
+		for (int i = 0; i < messageTokens.size(); i++) {
+
+			int index = tokens.indexOf(
+				messageTokens.getTokenArray(i),
+				messageTokens.getTokenOffset(i),
+				messageTokens.getTokenLength(i));
+
+			if (index != -1) {
+
+				logSpamSum += logSpamProbabilities[index];
+				logHamSum += logHamProbabilities[index];
+				numTokens++;
+			}
+		}
+
+		if (numTokens == 0) {
+			return 0.5;
+		}
+
+		double spamminess = chiSquareQ(-2 * logSpamSum, 2 * numTokens);
+		double hamminess = chiSquareQ(-2 * logHamSum, 2 * numTokens);
+
+		return (1 + spamminess - hamminess) / 2;
+	}
+
+	/** Works out the probability that a chi-square distributed
+	 *  value with the given (even) number of degrees of freedom is
+	 *  at least the given value.
+	 *
+	 *  For even degrees of freedom 2k this is the sum of the first
+	 *  k terms of a Poisson distribution with mean chi / 2. Each
+	 *  term is the one before times a ratio, unless the first term
+	 *  is too small for a double, as it is for a long message; the
+	 *  terms are then worked out as logarithms instead.
+	 *
+	 * @param chi	The chi-square value.
+	 * @param degrees	The number of degrees of freedom, which
+	 * 					must be even.
+	 *
+	 * @return The upper tail probability of chi.
+	 */
+	static double chiSquareQ(double chi, int degrees) {
+
+		double m = chi / 2;
+
+		if (m < MAX_DIRECT_POISSON_MEAN) {
+
+			double term = Math.exp(-m);
+			double sum = term;
+
+			for (int i = 1; i < degrees / 2; i++) {
+
+				term *= m / i;
+				sum += term;
+			}
+
+			return Math.min(sum, 1.0);
+		}
+
+		double logM = Math.log(m);
+		double logTerm = -m;
+		double sum = Math.exp(logTerm);
+
+		for (int i = 1; i < degrees / 2; i++) {
+
+			logTerm += logM - Math.log(i);
+			sum += Math.exp(logTerm);
+		}
+
+		return Math.min(sum, 1.0);
+	}
+}
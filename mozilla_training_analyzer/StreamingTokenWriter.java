@@ -0,0 +1,330 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/** Writes a token file one token at a time, without ever holding
+ *  the whole set of tokens in memory. Tokens must be handed to
+ *  the writer in the order they should appear in the file,
+ *  which for the merging code is sorted order.
+ *
+ *  Two output formats are supported: Analyzer.OUTPUT_DATA and
+ *  Analyzer.OUTPUT_XML. A training.dat is awkward to stream, as
+ *  each section is preceded by its token count and all of the
+ *  good tokens come before all of the bad ones. The good section
+ *  is therefore written straight to the output file with a
+ *  placeholder count which is patched on close(), while the bad
+ *  section is spooled to a temporary file and appended to the
+ *  output on close().
+ *
+ *  The markup of both formats comes from the same code that
+ *  TrainingData writes whole files with: the XML from
+ *  TrainingData.writeXMLHeader() and friends, and the training.dat
+ *  framing from TrainingFileWriter.putHeader() and
+ *  putRecordHeader().
+ */
+public class StreamingTokenWriter {
+
+	/** The file which is being written.
+	 */
+	private File outputFile = null;
+
+	/** The format of the file being written.
+	 */
+	private int outputType = -1;
+
+	/** The stream for the output file.
+	 */
+	private OutputStream outStream = null;
+
+	/** The temporary file holding the bad section of a
+	 *  training.dat until the good section is complete.
+	 */
+	private File badSectionFile = null;
+
+	/** The stream for the bad section's temporary file.
+	 */
+	private OutputStream badStream = null;
+
+	/** The buffer that the header and the fixed part of each
+	 *  record of a training.dat are framed in.
+	 */
+	private ByteBuffer frameBuffer = ByteBuffer.allocate(TrainingFileWriter.HEADER_SIZE);
+
+	/** The number of tokens written with a good count > 0.
+	 */
+	private int numGoodTokens = 0;
+
+	/** The number of tokens written with a bad count > 0.
+	 */
+	private int numBadTokens = 0;
+
+	/** Creates a new StreamingTokenWriter, and writes the header
+	 *  of the output file.
+	 *
+	 * @param newOutputFile	The file to write. It is overwritten
+	 * 						if it already exists.
+	 * @param newOutputType	The format of the output. This can be
+	 * 						either Analyzer.OUTPUT_DATA or
+	 * 						Analyzer.OUTPUT_XML.
+	 * @param goodMsgCount	The number of good messages processed
+	 * 						by the tokens to be written.
+	 * @param badMsgCount	The number of bad messages processed
+	 * 						by the tokens to be written.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						creating the output file.
+	 * @throws IllegalArgumentException If the output type can't
+	 * 									 be streamed.
+	 */
+	public StreamingTokenWriter(
+			File newOutputFile,
+			int newOutputType,
+			int goodMsgCount,
+			int badMsgCount
+	) throws IOException, IllegalArgumentException {
+
+		if ((newOutputType != Analyzer.OUTPUT_DATA) &&
+			(newOutputType != Analyzer.OUTPUT_XML)) {
+
+			throw new IllegalArgumentException("Only data and xml output can be streamed: " + newOutputType);
+		}
+
+		outputFile = newOutputFile;
+		outputType = newOutputType;
+
+		// Erase the output file if it exists
+		if (outputFile.exists()) {
+
+			outputFile.delete();
+		}
+
+		outStream = new BufferedOutputStream(
+			new FileOutputStream(outputFile),
+			TrainingData.OUTPUT_BUFFER_SIZE);
+
+		if (outputType == Analyzer.OUTPUT_DATA) {
+
+			// Write the necessary file header to the output file.
+			// We don't know the number of good tokens yet, so this
+			// is patched by close().
+			frameBuffer.clear();
+			TrainingFileWriter.putHeader(frameBuffer, goodMsgCount, badMsgCount, 0);
+			outStream.write(frameBuffer.array(), 0, frameBuffer.position());
+
+			badSectionFile = File.createTempFile("bayesjunk", ".bad", outputFile.getAbsoluteFile().getParentFile());
+
+			badStream = new BufferedOutputStream(
+				new FileOutputStream(badSectionFile),
+				TrainingData.OUTPUT_BUFFER_SIZE);
+
+		} else {
+
+			TrainingData.writeXMLHeader(outStream, goodMsgCount, badMsgCount);
+		}
+	}
+
+	/** Writes a single token to the output file.
+	 *
+	 * @param token	An array containing the token bytes.
+	 * @param offset	The offset of the token within the array.
+	 * @param length	The length in bytes of the token.
+	 * @param goodCount	The good count of the token.
+	 * @param badCount	The bad count of the token.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the token.
+	 */
+	public void writeToken(
+			byte[] token,
+			int offset,
+			int length,
+			int goodCount,
+			int badCount
+	) throws IOException {
+
+		if (outputType == Analyzer.OUTPUT_DATA) {
+
+			// Only tokens with a count end up in each section,
+			// just as in TrainingData.outputTrainingDataFileContents().
+			if (goodCount > 0) {
+
+				writeRecord(outStream, token, offset, length, goodCount);
+
+				numGoodTokens++;
+			}
+
+			if (badCount > 0) {
+
+				writeRecord(badStream, token, offset, length, badCount);
+
+				numBadTokens++;
+			}
+
+		} else {
+
+			TrainingData.writeXMLToken(outStream, token, offset, length, goodCount, badCount);
+
+			if (goodCount > 0) {
+				numGoodTokens++;
+			}
+
+			if (badCount > 0) {
+				numBadTokens++;
+			}
+		}
+	}
+
+	/** Writes a single training.dat record to the given stream.
+	 *
+	 * @param out	The stream of the section the record is in.
+	 * @param token	An array containing the token bytes.
+	 * @param offset	The offset of the token within the array.
+	 * @param length	The length in bytes of the token.
+	 * @param count	The good or bad count of the token.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the record.
+	 */
+	private void writeRecord(
+			OutputStream out,
+			byte[] token,
+			int offset,
+			int length,
+			int count
+	) throws IOException {
+
+		frameBuffer.clear();
+		TrainingFileWriter.putRecordHeader(frameBuffer, count, length);
+
+		out.write(frameBuffer.array(), 0, frameBuffer.position());
+		out.write(token, offset, length);
+	}
+
+	/** Returns the number of tokens written so far which have a
+	 *  good count greater than 0.
+	 *
+	 * @return The number of good tokens written so far.
+	 */
+	public int getNumGoodTokens() {
+		return numGoodTokens;
+	}
+
+	/** Returns the number of tokens written so far which have a
+	 *  bad count greater than 0.
+	 *
+	 * @return The number of bad tokens written so far.
+	 */
+	public int getNumBadTokens() {
+		return numBadTokens;
+	}
+
+	/** Finishes the output file and closes it. For a training.dat
+	 *  this appends the bad section and fills in the good token
+	 *  count; for XML it writes the footer and the DTD.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						finishing the output file.
+	 */
+	public void close() throws IOException {
+
+		if (outputType == Analyzer.OUTPUT_DATA) {
+
+			badStream.close();
+
+			// The bad section follows the good one, preceded by
+			// its count.
+			frameBuffer.clear();
+			frameBuffer.putInt(numBadTokens);
+			outStream.write(frameBuffer.array(), 0, frameBuffer.position());
+
+			InputStream badIn = new BufferedInputStream(
+				new FileInputStream(badSectionFile),
+				TrainingData.OUTPUT_BUFFER_SIZE);
+
+			try {
+
+				byte[] copyBuffer = new byte[TrainingData.OUTPUT_BUFFER_SIZE];
+				int bytesRead = 0;
+
+				while ((bytesRead = badIn.read(copyBuffer)) != -1) {
+					outStream.write(copyBuffer, 0, bytesRead);
+				}
+
+			} finally {
+
+				badIn.close();
+				badSectionFile.delete();
+			}
+
+			outStream.flush();
+			outStream.close();
+
+			// Now that we know it, go back and fill in the number
+			// of good tokens.
+			RandomAccessFile patchFile = new RandomAccessFile(outputFile, "rw");
+
+			try {
+
+				patchFile.seek(TrainingFileWriter.GOOD_TOKEN_COUNT_OFFSET);
+				patchFile.writeInt(numGoodTokens);
+
+			} finally {
+
+				patchFile.close();
+			}
+
+		} else {
+
+			// Add a footer to the XML file.
+			TrainingData.writeXMLFooter(outStream);
+
+			outStream.flush();
+			outStream.close();
+
+			// Write out the DTD for this XML file.
+			new TrainingData().writeXMLDTD(
+				new File(outputFile.getAbsoluteFile().getParentFile(), "trainer_xml.dtd"));
+		}
+	}
+}
@@ -38,11 +38,13 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
+import java.text.ParseException;
 
 import javax.swing.DefaultListSelectionModel;
 import javax.swing.JFileChooser;
@@ -320,12 +322,12 @@ public class TableWindow extends JFrame {
 
 						// Create a new TrainingData from the
 						// chosen file.
-						TrainingData trainer = Analyzer.parseTrainingFile(trainingDatPath, true);
+						TrainingData trainer = MappedTrainingFileReader.parseTrainingFile(trainingDatPath, true);
 
 						// Wasn't binary, try XML.
 						if (trainer == null) {
 
-							trainer = Analyzer.parseXMLTrainingFile(trainingDatPath, true);
+							trainer = XMLTrainingFileReader.parseXMLTrainingFile(trainingDatPath, true);
 
 							if (trainer == null) {
 
@@ -437,15 +439,17 @@ public class TableWindow extends JFrame {
 						System.out.println("Checking if " + trainingDatPath + " is a Mozilla token file...");
 
 						// Create a new TrainingData from the
-						// chosen file.
-						TrainingData trainer = Analyzer.parseTrainingFile(trainingDatPath, true);
+						// chosen file. It goes into an ordinary
+						// store like the one already loaded, as
+						// there is no dictionary to share with it.
+						TrainingData trainer = MappedTrainingFileReader.parseTrainingFile(trainingDatPath, true);
 
 						// Wasn't binary, try XML.
 						if (trainer == null) {
 
 							System.out.println("Checking if " + trainingDatPath + " is an XML token file...");
 
-							trainer = Analyzer.parseXMLTrainingFile(trainingDatPath, true);
+							trainer = XMLTrainingFileReader.parseXMLTrainingFile(trainingDatPath, true);
 						}
 
 						if (trainer == null) {
@@ -470,11 +474,12 @@ public class TableWindow extends JFrame {
 							oldTrainer.getBadMessageCount()
 						);
 
-						// Assign the new token set.
-						trainer.setTokenSet(
-							Analyzer.mergeTokenLists(
-								trainer.getTokenSet(),
-								oldTrainer.getTokenSet()
+						// Assign the new token store. Big merges
+						// are spread over all of the processors.
+						trainer.setTokenStore(
+							ParallelTokenMerger.mergeTokenLists(
+								trainer.getTokenStore(),
+								oldTrainer.getTokenStore()
 							)
 						);
 
@@ -871,6 +876,68 @@ public class TableWindow extends JFrame {
 		// be executed when Ctrl-T is pressed.
 		removeTokensItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_T,KeyEvent.CTRL_MASK));
 
+		// Add in an item for removing the tokens matching a query
+		JMenuItem queryTokensItem = new JMenuItem("Remove Tokens by Query...");
+
+		// Add a new action listener that asks for a query when
+		// this button is pressed and removes the matching tokens.
+		queryTokensItem.addActionListener(new ActionListener() {
+
+			public void actionPerformed(ActionEvent ae) {
+
+				String query = JOptionPane.showInputDialog(
+					getTableWindow(),
+					"Remove all tokens matching the query, e.g.\n" +
+					"good < 2 and bad < 2\n" +
+					"bad% >= 50 and not (prefix \"from:\" or length > 40)",
+					"Remove Tokens by Query",
+					JOptionPane.QUESTION_MESSAGE
+				);
+
+				// The user cancelled.
+				if ((query == null) || (query.trim().length() == 0)) {
+					return;
+				}
+
+				TokenPredicate predicate = null;
+
+				try {
+
+					predicate = TokenQueryParser.parse(query);
+
+				} catch (ParseException pe) {
+
+					JOptionPane.showMessageDialog(
+						getTableWindow(),
+						pe.getMessage(),
+						"Invalid Query",
+						JOptionPane.ERROR_MESSAGE
+					);
+
+					return;
+				}
+
+				TrainingData trainer = getTableWindowTrainer();
+
+				// Evaluate the query in one pass and remove the
+				// matches in bulk.
+				PruneResult pruneResult = TokenPruner.prune(trainer.getTokenStore(), predicate.select(trainer));
+
+				// Refresh the table to reflect the change.
+				setNewTrainingData(trainer);
+
+				JOptionPane.showMessageDialog(getTableWindow(), pruneResult.toString());
+			}
+		});
+
+		// Add a keyboard accelerator that causes this menu item to
+		// be highlighted when Q is pressed.
+		queryTokensItem.setMnemonic(KeyEvent.VK_Q);
+
+		// Add a keyboard accelerator that causes this menu item to
+		// be executed when Ctrl-Q is pressed.
+		queryTokensItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q,InputEvent.CTRL_DOWN_MASK));
+
 		// Add in an item for removing a row from the table
 		JMenuItem aboutItem = new JMenuItem("About");
 
@@ -912,6 +979,7 @@ public class TableWindow extends JFrame {
 		// logically distinct operations.
 		editMenu.addSeparator();
 		editMenu.add(removeTokensItem);
+		editMenu.add(queryTokensItem);
 		menuBar.add(editMenu);
 
 		// Add the Help menu.
@@ -973,7 +1041,7 @@ public class TableWindow extends JFrame {
 		gbc.gridx = 3;
 
 		// Create our total tokens label.
-		totalTokens = new JLabel(String.valueOf(parentTrainer.getTokenSet().size()));
+		totalTokens = new JLabel(String.valueOf(parentTrainer.getNumTokens()));
 
 		// Add the selected tokens label.
 		statusPanel.add(totalTokens, gbc);
@@ -0,0 +1,396 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** A pull-based, forward-only cursor over the tokens of a Mozilla
+ *  Bayesian Filter Training file. Rather than loading every
+ *  token into memory, the cursor yields one (token bytes, count,
+ *  section) record at a time, reusing a single buffer for the
+ *  token bytes. This allows filtering, statistics and export
+ *  pipelines to process files which are far larger than the
+ *  heap.
+ *
+ *  A typical loop looks like this:
+ *
+ *  <pre>
+ *  TokenCursor cursor = TokenCursor.open("training.dat");
+ *  try {
+ *      while (cursor.next()) {
+ *          ... cursor.getTokenBytes(), cursor.getTokenLength(),
+ *              cursor.getCount(), cursor.getSection() ...
+ *      }
+ *  } finally {
+ *      cursor.close();
+ *  }
+ *  </pre>
+ *
+ *  Tokens are returned in file order: all of the good tokens
+ *  first, followed by all of the bad tokens. A token which
+ *  occurs in both good and bad emails is therefore returned
+ *  twice, once for each section.
+ */
+public class TokenCursor {
+
+	/** Indicates that the current token was read from the good
+	 *  (non-junk) section of the training file.
+	 */
+	public static final int SECTION_GOOD = 1;
+
+	/** Indicates that the current token was read from the bad
+	 *  (junk) section of the training file.
+	 */
+	public static final int SECTION_BAD = 2;
+
+	/** Indicates that the cursor is not positioned on a token,
+	 *  i.e. next() has not been called yet or has returned false.
+	 */
+	public static final int SECTION_NONE = 0;
+
+	/** The initial size of the reusable token buffer. It grows
+	 *  as needed to fit the longest token seen so far.
+	 */
+	private static final int INITIAL_TOKEN_BUFFER_SIZE = 64;
+
+	/** The stream which the training file is read from.
+	 */
+	private DataInputStream inStream = null;
+
+	/** The number of good messages processed by this file.
+	 */
+	private int goodMessageCount = -1;
+
+	/** The number of bad messages processed by this file.
+	 */
+	private int badMessageCount = -1;
+
+	/** The number of tokens in the good section of the file.
+	 */
+	private int numGoodTokens = -1;
+
+	/** The number of tokens in the bad section of the file. This
+	 *  is only known once the good section has been consumed.
+	 */
+	private int numBadTokens = -1;
+
+	/** The section that the cursor is currently positioned in.
+	 */
+	private int section = SECTION_NONE;
+
+	/** The number of tokens from the current section which have
+	 *  not been read yet.
+	 */
+	private int remainingInSection = 0;
+
+	/** The reusable buffer holding the bytes of the current
+	 *  token.
+	 */
+	private byte[] tokenBytes = new byte[INITIAL_TOKEN_BUFFER_SIZE];
+
+	/** The number of valid bytes in tokenBytes.
+	 */
+	private int tokenLength = 0;
+
+	/** The count (good or bad, depending on the section) of the
+	 *  current token.
+	 */
+	private int tokenCount = 0;
+
+	/** Creates a new TokenCursor which reads from the given
+	 *  stream. The header of the training file is read and
+	 *  checked immediately.
+	 *
+	 * @param in	The stream to read the training file from. It
+	 * 				should be buffered, as the cursor makes many
+	 * 				small reads.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the stream, or if the
+	 * 						stream does not contain a Mozilla
+	 * 						Bayesian filter token file.
+	 */
+	public TokenCursor(InputStream in) throws IOException {
+
+		// Throw an exception if the InputStream is null.
+		if (in == null) {
+			throw new IllegalArgumentException("in cannot be null!");
+		}
+
+		inStream = new DataInputStream(in);
+
+		// Read in the standard header from the file.
+		byte[] headerBytes = new byte[4];
+
+		try {
+
+			inStream.readFully(headerBytes);
+
+		} catch (EOFException eofe) {
+
+			// Too short to even hold a header, so it can't be a
+			// token file.
+			headerBytes[0] = 0;
+		}
+
+		if (!Analyzer.checkHeader(headerBytes)) {
+
+			throw new IOException("Not a Mozilla Bayesian filter token file, or corrupt header.");
+		}
+
+		goodMessageCount = inStream.readInt();
+		badMessageCount = inStream.readInt();
+		numGoodTokens = inStream.readInt();
+
+		// Position the cursor in front of the first good token.
+		section = SECTION_NONE;
+		remainingInSection = numGoodTokens;
+	}
+
+	/** Opens a TokenCursor over the training file at the given
+	 *  path.
+	 *
+	 * @param trainingDatPath	The path to the Mozilla Bayesian
+	 * 							Filter training file.
+	 *
+	 * @return A new TokenCursor positioned in front of the first
+	 * 			token of the file.
+	 *
+	 * @throws IOException If the file could not be opened, or if
+	 * 						it is not a Mozilla Bayesian filter
+	 * 						token file.
+	 */
+	public static TokenCursor open(String trainingDatPath) throws IOException {
+
+		InputStream in = new BufferedInputStream(
+			new FileInputStream(trainingDatPath),
+			TrainingData.OUTPUT_BUFFER_SIZE);
+
+		try {
+
+			return new TokenCursor(in);
+
+		} catch (IOException ioe) {
+
+			// Don't leak the file handle if the header was bad.
+			in.close();
+			throw ioe;
+		}
+	}
+
+	/** Advances the cursor to the next token in the file.
+	 *
+	 * @return true if the cursor is now positioned on a token,
+	 * 			false if the end of the file has been reached.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the file, or if the file
+	 * 						is truncated.
+	 */
+	public boolean next() throws IOException {
+
+		// The first call moves the cursor into the good section.
+		if ((section == SECTION_NONE) && (numBadTokens == -1)) {
+
+			section = SECTION_GOOD;
+		}
+
+		// Move on to the bad section once the good one has been
+		// used up. The bad token count sits between the two.
+		while (remainingInSection == 0) {
+
+			if (section == SECTION_GOOD) {
+
+				numBadTokens = inStream.readInt();
+				remainingInSection = numBadTokens;
+				section = SECTION_BAD;
+
+			} else {
+
+				// Nothing left in either section.
+				section = SECTION_NONE;
+				tokenLength = 0;
+				tokenCount = 0;
+
+				return false;
+			}
+		}
+
+		if (remainingInSection < 0) {
+			throw new IOException("Corrupt token file: negative token count " + remainingInSection);
+		}
+
+		// Read in the count and the length of the token.
+		tokenCount = inStream.readInt();
+		tokenLength = inStream.readInt();
+
+		if (tokenLength < 0) {
+			throw new IOException("Corrupt token file: negative token length " + tokenLength);
+		}
+
+		// Read in the token itself. The length of the stream
+		// isn't known, so a corrupt length can't be spotted up
+		// front; instead the buffer only grows as the bytes
+		// actually come in, and a stream which ends first is
+		// reported as truncated rather than running out of
+		// memory on a huge length.
+		int bytesRead = 0;
+
+		while (bytesRead < tokenLength) {
+
+			// Grow the reusable buffer if this token doesn't fit.
+			if (bytesRead == tokenBytes.length) {
+
+				byte[] newBuffer = new byte[(int) Math.min(tokenLength, 2L * tokenBytes.length)];
+				System.arraycopy(tokenBytes, 0, newBuffer, 0, bytesRead);
+				tokenBytes = newBuffer;
+			}
+
+			int chunk = Math.min(tokenLength, tokenBytes.length) - bytesRead;
+
+			inStream.readFully(tokenBytes, bytesRead, chunk);
+			bytesRead += chunk;
+		}
+
+		remainingInSection--;
+
+		return true;
+	}
+
+	/** Returns the buffer holding the bytes of the current token.
+	 *  Only the first getTokenLength() bytes are valid, and the
+	 *  buffer is reused (and overwritten) by the next call to
+	 *  next(), so copy it if it needs to be kept.
+	 *
+	 * @return The buffer holding the bytes of the current token.
+	 */
+	public byte[] getTokenBytes() {
+		return tokenBytes;
+	}
+
+	/** Returns the length in bytes of the current token.
+	 *
+	 * @return The length in bytes of the current token.
+	 */
+	public int getTokenLength() {
+		return tokenLength;
+	}
+
+	/** Decodes the current token into a String. This allocates,
+	 * 	so pipelines which don't need the String should work on
+	 *  getTokenBytes() instead.
+	 *
+	 * @return The current token as a String.
+	 */
+	public String getTokenString() {
+		return Globals.decodeToken(tokenBytes, 0, tokenLength);
+	}
+
+	/** Returns the count of the current token. This is the good
+	 *  count if the cursor is in the good section, and the bad
+	 *  count if it is in the bad section.
+	 *
+	 * @return The count of the current token.
+	 */
+	public int getCount() {
+		return tokenCount;
+	}
+
+	/** Returns the section that the current token was read from.
+	 *
+	 * @return One of SECTION_GOOD, SECTION_BAD or SECTION_NONE.
+	 */
+	public int getSection() {
+		return section;
+	}
+
+	/** Returns whether the current token was read from the good
+	 *  section of the file.
+	 *
+	 * @return true if the current token is a good token, false
+	 * 			otherwise.
+	 */
+	public boolean isGood() {
+		return section == SECTION_GOOD;
+	}
+
+	/** Returns the number of good messages processed by the file.
+	 *
+	 * @return The number of good messages processed by the file.
+	 */
+	public int getGoodMessageCount() {
+		return goodMessageCount;
+	}
+
+	/** Returns the number of bad messages processed by the file.
+	 *
+	 * @return The number of bad messages processed by the file.
+	 */
+	public int getBadMessageCount() {
+		return badMessageCount;
+	}
+
+	/** Returns the number of tokens in the good section of the
+	 *  file.
+	 *
+	 * @return The number of tokens in the good section.
+	 */
+	public int getNumGoodTokens() {
+		return numGoodTokens;
+	}
+
+	/** Returns the number of tokens in the bad section of the
+	 *  file. This is only known once the cursor has moved past
+	 *  the good section, and is -1 before that.
+	 *
+	 * @return The number of tokens in the bad section, or -1 if
+	 * 			it has not been read yet.
+	 */
+	public int getNumBadTokens() {
+		return numBadTokens;
+	}
+
+	/** Closes the underlying stream.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						closing the stream.
+	 */
+	public void close() throws IOException {
+		inStream.close();
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+/** Gives every distinct token a small int ID, and keeps a single
+ *  copy of the token's bytes for all of the stores which use it.
+ *
+ *  When two training files are merged in memory, the same
+ *  popular tokens turn up in both of them. Stores built on a
+ *  shared dictionary (see DictionaryTokenStore) only hold the IDs
+ *  of their tokens, so the bytes of "the" or "http" are kept
+ *  once, and the two stores can be merged by ID without ever
+ *  looking at a token's bytes.
+ *
+ *  The dictionary is laid out the same way as an
+ *  OpenAddressingTokenStore: the bytes of every token back to
+ *  back in one arena, the offset, length and hash of each ID in
+ *  parallel columns, and an open-addressing hash table of IDs.
+ *  Tokens are only ever added, never removed, so an ID stays
+ *  valid (and its bytes stay where they are) for as long as the
+ *  dictionary lives.
+ *
+ *  A dictionary is only used by the two-file merge in
+ *  Analyzer.main() (-m), and goes away with the stores of that
+ *  merge. The other ways of combining files do without one on
+ *  purpose. TokenFileMerger (--merge-all) keeps within its memory
+ *  budget by spilling sorted runs to disk, and a dictionary,
+ *  which never lets go of a token, would grow with every
+ *  distinct token of the inputs and undo that bound. The merge in
+ *  the GUI adds a file to tokens which are already loaded (and
+ *  perhaps edited) in an ordinary store, so there is nothing for
+ *  the new file to share a dictionary with. For the same reason
+ *  there is no dictionary shared by the whole process: it would
+ *  only ever grow, and every load would pay for interning.
+ *
+ *  Adding tokens is not synchronized, as the files of a job are
+ *  loaded one after another. Once they are in, any number of
+ *  threads may read the bytes of the IDs they were handed, as the
+ *  parallel merge does.
+ */
+public class TokenDictionary {
+
+	/** The number of tokens a new dictionary has room for.
+	 */
+	private static final int DEFAULT_CAPACITY = 4096;
+
+	/** The average token length assumed when sizing the arena.
+	 */
+	private static final int DEFAULT_TOKEN_LENGTH = 8;
+
+	/** The hash table is grown once it is more than this many
+	 *  sixteenths full.
+	 */
+	private static final int MAX_LOAD_SIXTEENTHS = 11;
+
+	/** The arena holding the bytes of every token.
+	 */
+	private byte[] arena = null;
+
+	/** The number of bytes of the arena which are in use.
+	 */
+	private int arenaUsed = 0;
+
+	/** The offset of each token within the arena, by ID.
+	 */
+	private int[] offsets = null;
+
+	/** The length in bytes of each token, by ID.
+	 */
+	private int[] lengths = null;
+
+	/** The hash of each token, by ID.
+	 */
+	private int[] hashes = null;
+
+	/** The number of tokens in the dictionary, which is also the
+	 *  next ID to be handed out.
+	 */
+	private int size = 0;
+
+	/** The hash table. Each slot holds an ID plus one, so that 0
+	 *  can mark an empty slot.
+	 */
+	private int[] table = null;
+
+	/** The number of tokens after which the table is grown.
+	 */
+	private int growThreshold = 0;
+
+	/** Creates a new, empty TokenDictionary.
+	 */
+	public TokenDictionary() {
+
+		arena = new byte[DEFAULT_CAPACITY * DEFAULT_TOKEN_LENGTH];
+		offsets = new int[DEFAULT_CAPACITY];
+		lengths = new int[DEFAULT_CAPACITY];
+		hashes = new int[DEFAULT_CAPACITY];
+
+		allocateTable(DEFAULT_CAPACITY);
+	}
+
+	/** Returns the ID of the given token, giving it a new one if
+	 *  it has not been seen before.
+	 *
+	 * @param token	The array holding the token.
+	 * @param offset	The offset of the token in the array.
+	 * @param length	The length of the token in bytes.
+	 *
+	 * @return The ID of the token.
+	 */
+	public int intern(byte[] token, int offset, int length) {
+
+		int h = OpenAddressingTokenStore.hash(token, offset, length);
+		int slot = findSlot(h, token, offset, length);
+
+		if (table[slot] != 0) {
+			return table[slot] - 1;
+		}
+
+		int id = size;
+
+		ensureCapacity(length);
+
+		System.arraycopy(token, offset, arena, arenaUsed, length);
+		offsets[id] = arenaUsed;
+		lengths[id] = length;
+		hashes[id] = h;
+
+		arenaUsed += length;
+		table[slot] = id + 1;
+		size++;
+
+		if (size > growThreshold) {
+			rehash(size * 2);
+		}
+
+		return id;
+	}
+
+	/** Returns the ID of the given token, without adding it.
+	 *
+	 * @param token	The array holding the token.
+	 * @param offset	The offset of the token in the array.
+	 * @param length	The length of the token in bytes.
+	 *
+	 * @return The ID of the token, or -1 if it is not in the
+	 * 			dictionary.
+	 */
+	public int lookup(byte[] token, int offset, int length) {
+
+		int h = OpenAddressingTokenStore.hash(token, offset, length);
+
+		return table[findSlot(h, token, offset, length)] - 1;
+	}
+
+	/** Returns the array holding the bytes of the given ID. The
+	 *  array may be replaced by a bigger one as tokens are added,
+	 *  so don't hold on to it, but the bytes of an ID are the same
+	 *  in every copy.
+	 *
+	 * @param id	The ID of a token.
+	 *
+	 * @return The array holding the token.
+	 */
+	public byte[] getArray(int id) {
+		return arena;
+	}
+
+	/** Returns the offset of the given ID's bytes in getArray().
+	 *
+	 * @param id	The ID of a token.
+	 *
+	 * @return The offset of the token.
+	 */
+	public int getOffset(int id) {
+		return offsets[id];
+	}
+
+	/** Returns the length in bytes of the given ID's token.
+	 *
+	 * @param id	The ID of a token.
+	 *
+	 * @return The length of the token.
+	 */
+	public int getLength(int id) {
+		return lengths[id];
+	}
+
+	/** Returns the number of distinct tokens in the dictionary.
+	 *  IDs run from 0 to size() - 1.
+	 *
+	 * @return The number of tokens.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** Returns roughly how many bytes of memory the dictionary's
+	 *  arrays take up.
+	 *
+	 * @return The number of bytes allocated by the dictionary.
+	 */
+	public long getMemoryUsage() {
+
+		// The arena, three int columns, and the int hash table.
+		return arena.length + (12L * offsets.length) + (4L * table.length);
+	}
+
+	/** Finds the table slot which holds the given token, or the
+	 *  empty slot where it would go.
+	 */
+	private int findSlot(int h, byte[] token, int offset, int length) {
+
+		int mask = table.length - 1;
+		int slot = (h ^ (h >>> 16)) & mask;
+		int entry = 0;
+
+		while ((entry = table[slot]) != 0) {
+
+			entry--;
+
+			if ((hashes[entry] == h) && tokenEquals(entry, token, offset, length)) {
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/** Checks whether the token with the given ID is equal to the
+	 *  given bytes.
+	 */
+	private boolean tokenEquals(int id, byte[] token, int offset, int length) {
+
+		if (lengths[id] != length) {
+			return false;
+		}
+
+		int tokenOffset = offsets[id];
+
+		for (int i = 0; i < length; i++) {
+
+			if (arena[tokenOffset + i] != token[offset + i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/** Makes sure that there is room for one more token of the
+	 *  given length.
+	 */
+	private void ensureCapacity(int length) {
+
+		if (size == offsets.length) {
+
+			int newCapacity = offsets.length + (offsets.length >> 1) + 1;
+
+			int[] newOffsets = new int[newCapacity];
+			int[] newLengths = new int[newCapacity];
+			int[] newHashes = new int[newCapacity];
+
+			System.arraycopy(offsets, 0, newOffsets, 0, size);
+			System.arraycopy(lengths, 0, newLengths, 0, size);
+			System.arraycopy(hashes, 0, newHashes, 0, size);
+
+			offsets = newOffsets;
+			lengths = newLengths;
+			hashes = newHashes;
+		}
+
+		if (arenaUsed + length > arena.length) {
+
+			long newLength = Math.max((long) arena.length * 2, (long) arenaUsed + length);
+
+			if (newLength > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("The token dictionary is full!");
+			}
+
+			byte[] newArena = new byte[(int) newLength];
+			System.arraycopy(arena, 0, newArena, 0, arenaUsed);
+			arena = newArena;
+		}
+	}
+
+	/** Allocates an empty hash table which is big enough to hold
+	 *  the given number of tokens.
+	 */
+	private void allocateTable(int capacity) {
+
+		int tableSize = 16;
+
+		while ((tableSize * MAX_LOAD_SIXTEENTHS) / 16 < capacity) {
+			tableSize <<= 1;
+		}
+
+		table = new int[tableSize];
+		growThreshold = (tableSize * MAX_LOAD_SIXTEENTHS) / 16;
+	}
+
+	/** Rebuilds the hash table from the hash column, making it
+	 *  big enough to hold at least the given number of tokens.
+	 */
+	private void rehash(int capacity) {
+
+		allocateTable(capacity);
+
+		int mask = table.length - 1;
+
+		for (int id = 0; id < size; id++) {
+
+			int h = hashes[id];
+			int slot = (h ^ (h >>> 16)) & mask;
+
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+
+			table[slot] = id + 1;
+		}
+	}
+}
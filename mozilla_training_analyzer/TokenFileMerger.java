@@ -0,0 +1,428 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+/** Merges any number of token files (training.dat or XML) into a
+ *  single output file with an external k-way merge, so that the
+ *  inputs together may be far bigger than the heap.
+ *
+ *  The inputs are streamed one token at a time into a
+ *  TokenRunSpiller, which sums tokens in memory until its memory
+ *  budget is used up and then spills them to a sorted temporary
+ *  run. The runs are then merged with a TokenRunMerger, which
+ *  adds up the counts of a token found in several runs, and the
+ *  result is streamed straight into a StreamingTokenWriter. The
+ *  message counts of the output are the sums of those of the
+ *  inputs, just as for a single merge in Analyzer.main().
+ *
+ *  Training files are read with a TokenCursor, and their token
+ *  bytes are carried through untouched. The tokens are not
+ *  interned in a TokenDictionary: the spiller's budget is what
+ *  keeps the merge within the heap, and a dictionary never gives
+ *  a token back.
+ */
+public class TokenFileMerger {
+
+	/** The most runs which are merged at once. If there are more
+	 *  runs than this, groups of them are first merged into
+	 *  bigger runs, so that the number of open files (and run
+	 *  buffers) stays bounded.
+	 */
+	public static final int MAX_MERGE_WIDTH = 64;
+
+	// No instantiation of this class, everything is static.
+	private TokenFileMerger() {
+	}
+
+	/** Returns the memory budget used when none is given, which
+	 *  is a quarter of the heap.
+	 *
+	 * @return The default memory budget, in bytes.
+	 */
+	public static long getDefaultMemoryBudget() {
+
+		return Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	/** Merges the given token files into a single output file.
+	 *
+	 * @param inputPaths	The paths of the training.dat or XML
+	 * 						token files to be merged.
+	 * @param outputFile	The file to write the merged tokens to.
+	 * @param outputType	The format of the output, either
+	 * 						Analyzer.OUTPUT_DATA or
+	 * 						Analyzer.OUTPUT_XML.
+	 * @param removeGood	Tokens are dropped from the output as
+	 * 						by TrainingData.removeTokens(removeGood,
+	 * 						removeBad). Pass in a number &lt;= 0
+	 * 						to disable.
+	 * @param removeBad	See removeGood.
+	 * @param memoryBudget	The number of bytes of memory that
+	 * 						tokens may take up before they are
+	 * 						spilled to disk.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while merging,
+	 * 							false otherwise.
+	 *
+	 * @return true if the merge succeeded, false if one of the
+	 * 			inputs was not a valid token file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading the inputs, writing the runs
+	 * 						or writing the output.
+	 */
+	public static boolean mergeFiles(
+			String[] inputPaths,
+			File outputFile,
+			int outputType,
+			int removeGood,
+			int removeBad,
+			long memoryBudget,
+			boolean displayOutput
+	) throws IOException {
+
+		TokenRunSpiller spiller = new TokenRunSpiller(memoryBudget);
+		File[] intermediateRuns = null;
+		int[] messageCounts = new int[2];
+
+		try {
+
+			// Stream every input into the spiller.
+			for (int i = 0; i < inputPaths.length; i++) {
+
+				if (!readInput(inputPaths[i], spiller, messageCounts, displayOutput)) {
+
+					System.err.println(inputPaths[i] + " was not a valid Mozilla token file or XML token file.");
+					return false;
+				}
+			}
+
+			File[] runFiles = spiller.finish();
+
+			if (displayOutput) {
+
+				// Console status message
+				System.out.println("Spilled " + runFiles.length + " sorted runs. Now merging them into " + outputFile);
+			}
+
+			// Narrow the runs down until they can all be merged
+			// at once.
+			while (runFiles.length > MAX_MERGE_WIDTH) {
+
+				File[] mergedRuns = mergeRunGroups(runFiles);
+
+				deleteFiles(intermediateRuns);
+				intermediateRuns = mergedRuns;
+				runFiles = mergedRuns;
+			}
+
+			StreamingTokenWriter writer = new StreamingTokenWriter(
+				outputFile,
+				outputType,
+				messageCounts[0],
+				messageCounts[1]);
+
+			try {
+
+				mergeRuns(runFiles, writer, removeGood, removeBad);
+
+			} finally {
+
+				writer.close();
+			}
+
+			if (displayOutput) {
+
+				// Console status message
+				System.out.println("Wrote " + writer.getNumGoodTokens() + " good and " + writer.getNumBadTokens() + " bad tokens.");
+			}
+
+			return true;
+
+		} finally {
+
+			// Clean up the runs, whether or not we got that far.
+			spiller.deleteRuns();
+			deleteFiles(intermediateRuns);
+		}
+	}
+
+	/** Streams every token of the given file into the spiller,
+	 *  and adds its message counts to the running totals.
+	 *
+	 * @param inputPath	The path of the training.dat or XML
+	 * 					token file.
+	 * @param spiller	The spiller to add the tokens to.
+	 * @param messageCounts	The running totals of the good (at
+	 * 							index 0) and bad (at index 1)
+	 * 							message counts.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while reading,
+	 * 							false otherwise.
+	 *
+	 * @return true if the file was read, false if it was not a
+	 * 			valid token file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading the file or spilling tokens.
+	 */
+	private static boolean readInput(
+			String inputPath,
+			TokenRunSpiller spiller,
+			int[] messageCounts,
+			boolean displayOutput
+	) throws IOException {
+
+		if (!new File(inputPath).exists()) {
+			return false;
+		}
+
+		if (isTrainingFile(inputPath)) {
+
+			if (displayOutput) {
+
+				// Console status message
+				System.out.println("Streaming tokens from Mozilla token file " + inputPath);
+			}
+
+			TokenCursor cursor = TokenCursor.open(inputPath);
+
+			try {
+
+				messageCounts[0] += cursor.getGoodMessageCount();
+				messageCounts[1] += cursor.getBadMessageCount();
+
+				while (cursor.next()) {
+
+					spiller.add(
+						cursor.getTokenBytes(),
+						0,
+						cursor.getTokenLength(),
+						(cursor.isGood()? cursor.getCount() : 0),
+						(cursor.isGood()? 0 : cursor.getCount()));
+				}
+
+			} finally {
+
+				cursor.close();
+			}
+
+			return true;
+		}
+
+		TrainingData trainer = null;
+
+		try {
+
+			trainer = XMLTrainingFileReader.streamXMLTrainingFile(inputPath, displayOutput, spiller);
+
+		} catch (XMLStreamException xse) {
+
+			// Let the user know what was wrong with the file.
+			if (displayOutput) {
+
+				System.err.println(xse.getMessage());
+			}
+		}
+
+		if (trainer == null) {
+			return false;
+		}
+
+		messageCounts[0] += trainer.getGoodMessageCount();
+		messageCounts[1] += trainer.getBadMessageCount();
+
+		return true;
+	}
+
+	/** Checks whether the given file starts with the header of a
+	 *  Mozilla Bayesian Filter training file.
+	 *
+	 * @param path	The path of the file to check.
+	 *
+	 * @return true if the file has a training file header, false
+	 * 			otherwise.
+	 *
+	 * @throws IOException If the file could not be read.
+	 */
+	private static boolean isTrainingFile(String path) throws IOException {
+
+		InputStream inStream = new FileInputStream(path);
+
+		try {
+
+			byte[] headerBytes = new byte[4];
+
+			return (inStream.read(headerBytes) == 4) && Analyzer.checkHeader(headerBytes);
+
+		} finally {
+
+			inStream.close();
+		}
+	}
+
+	/** Merges the given runs in groups of MAX_MERGE_WIDTH, giving
+	 *  one bigger run per group.
+	 *
+	 * @param runFiles	The runs to merge.
+	 *
+	 * @return The merged runs.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading or writing the runs.
+	 */
+	private static File[] mergeRunGroups(File[] runFiles) throws IOException {
+
+		int numGroups = (runFiles.length + MAX_MERGE_WIDTH - 1) / MAX_MERGE_WIDTH;
+		File[] mergedRuns = new File[numGroups];
+
+		try {
+
+			for (int i = 0; i < numGroups; i++) {
+
+				int groupStart = i * MAX_MERGE_WIDTH;
+				File[] group = new File[Math.min(MAX_MERGE_WIDTH, runFiles.length - groupStart)];
+				System.arraycopy(runFiles, groupStart, group, 0, group.length);
+
+				mergedRuns[i] = File.createTempFile("bayesjunk", ".run");
+
+				TokenRunMerger merger = new TokenRunMerger(group);
+				TokenRunWriter runWriter = new TokenRunWriter(mergedRuns[i]);
+
+				try {
+
+					while (merger.next()) {
+
+						runWriter.writeToken(
+							merger.getTokenBytes(),
+							0,
+							merger.getTokenLength(),
+							merger.getGoodCount(),
+							merger.getBadCount());
+					}
+
+				} finally {
+
+					runWriter.close();
+					merger.close();
+				}
+			}
+
+		} catch (IOException ioe) {
+
+			// Don't leave half of a pass lying around.
+			deleteFiles(mergedRuns);
+			throw ioe;
+		}
+
+		return mergedRuns;
+	}
+
+	/** Merges the given sorted runs into the given writer. Every
+	 *  distinct token is written once, with the sum of its counts
+	 *  across all of the runs.
+	 *
+	 * @param runFiles	The run files to merge, each written by
+	 * 					a TokenRunWriter.
+	 * @param writer	The writer to stream the merged tokens to.
+	 * @param removeGood	Tokens are dropped as by
+	 * 						TrainingData.removeTokens(removeGood,
+	 * 						removeBad). Pass in a number &lt;= 0
+	 * 						to disable.
+	 * @param removeBad	See removeGood.
+	 *
+	 * @return The number of distinct tokens written.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading the runs or writing the output.
+	 */
+	public static int mergeRuns(
+			File[] runFiles,
+			StreamingTokenWriter writer,
+			int removeGood,
+			int removeBad
+	) throws IOException {
+
+		TokenRunMerger merger = new TokenRunMerger(runFiles);
+		int numWritten = 0;
+
+		try {
+
+			while (merger.next()) {
+
+				if (!TrainingData.isRemovable(merger.getGoodCount(), merger.getBadCount(), removeGood, removeBad)) {
+
+					writer.writeToken(
+						merger.getTokenBytes(),
+						0,
+						merger.getTokenLength(),
+						merger.getGoodCount(),
+						merger.getBadCount());
+
+					numWritten++;
+				}
+			}
+
+		} finally {
+
+			merger.close();
+		}
+
+		return numWritten;
+	}
+
+	/** Deletes the given files, skipping any nulls.
+	 *
+	 * @param files	The files to delete, or null.
+	 */
+	private static void deleteFiles(File[] files) {
+
+		if (files == null) {
+			return;
+		}
+
+		for (int i = 0; i < files.length; i++) {
+
+			if (files[i] != null) {
+				files[i].delete();
+			}
+		}
+	}
+}
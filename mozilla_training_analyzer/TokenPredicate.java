@@ -0,0 +1,555 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.util.BitSet;
+import java.util.regex.Pattern;
+
+/** A condition on the tokens of a TrainingData, used to pick out
+ *  tokens for pruning or export. Predicates are built with the
+ *  static factory methods of this class, or parsed from text
+ *  with TokenQueryParser, and combine freely with and(), or()
+ *  and not().
+ *
+ *  select() tests every token against the whole predicate in a
+ *  single pass over the store, rather than making one pass per
+ *  condition and combining the results. And and or short-cut
+ *  as soon as the answer is known, and they test their cheaper
+ *  side first, so conditions on the count columns are checked
+ *  before a token's bytes are ever looked at. Large stores are
+ *  split into chunks which are tested on several threads at
+ *  once by ParallelTokenSelector.
+ */
+public abstract class TokenPredicate {
+
+	/** Compares the good count of a token.
+	 */
+	public static final int FIELD_GOOD = 1;
+
+	/** Compares the bad count of a token.
+	 */
+	public static final int FIELD_BAD = 2;
+
+	/** Compares the good count of a token as a percentage of the
+	 *  good messages, as shown in the Good % column of the table.
+	 */
+	public static final int FIELD_GOOD_PERCENT = 3;
+
+	/** Compares the bad count of a token as a percentage of the
+	 *  bad messages, as shown in the Bad % column of the table.
+	 */
+	public static final int FIELD_BAD_PERCENT = 4;
+
+	/** Compares the length of a token in bytes.
+	 */
+	public static final int FIELD_LENGTH = 5;
+
+	/** The names of the fields, as used by TokenQueryParser,
+	 *  indexed by field number.
+	 */
+	static final String[] FIELD_NAMES = {
+		null, "good", "bad", "good%", "bad%", "length"
+	};
+
+	/** Less than.
+	 */
+	public static final int OP_LT = 1;
+
+	/** Less than or equal to.
+	 */
+	public static final int OP_LE = 2;
+
+	/** Greater than.
+	 */
+	public static final int OP_GT = 3;
+
+	/** Greater than or equal to.
+	 */
+	public static final int OP_GE = 4;
+
+	/** Equal to.
+	 */
+	public static final int OP_EQ = 5;
+
+	/** Not equal to.
+	 */
+	public static final int OP_NE = 6;
+
+	/** The symbols of the operators, indexed by operator number.
+	 */
+	static final String[] OP_SYMBOLS = {
+		null, "<", "<=", ">", ">=", "=", "!="
+	};
+
+	/** The cost of a test which only reads the count columns.
+	 */
+	private static final int COST_COLUMN = 1;
+
+	/** The cost of a test which reads the token's bytes.
+	 */
+	private static final int COST_BYTES = 4;
+
+	/** The cost of a test which decodes the token into a String.
+	 */
+	private static final int COST_STRING = 16;
+
+	/** Tests a single token.
+	 *
+	 * @param trainer	The TrainingData holding the token.
+	 * @param index	The index of the token in the TrainingData's
+	 * 				store.
+	 *
+	 * @return true if the token matches, false otherwise.
+	 */
+	public abstract boolean matches(TrainingData trainer, int index);
+
+	/** Returns a rough measure of how expensive matches() is, so
+	 *  that and and or can test their cheaper side first.
+	 *
+	 * @return The relative cost of testing a token.
+	 */
+	public abstract int getCost();
+
+	/** Picks out every token of the given TrainingData which
+	 *  matches this predicate, in a single pass. Big stores are
+	 *  searched on the shared pool of ParallelTokenMerger, small
+	 *  ones on the calling thread; the result is the same.
+	 *
+	 * @param trainer	The TrainingData to look through. It must
+	 * 					not be changed while the search is running.
+	 *
+	 * @return A BitSet with the indices of the matching tokens
+	 * 			set.
+	 */
+	public BitSet select(TrainingData trainer) {
+		return ParallelTokenSelector.select(this, trainer);
+	}
+
+	/** Tests the tokens from start up to (but not including) end,
+	 *  setting bit (i % 64) of words[i / 64] for every token i
+	 *  which matches. The words are only ever set, never cleared,
+	 *  so a caller which gives each thread its own run of whole
+	 *  words can share one array between them.
+	 *
+	 * @param trainer	The TrainingData to look through.
+	 * @param start	The index of the first token to test.
+	 * @param end	The index after the last token to test.
+	 * @param words	The bits of the result, big enough to hold
+	 * 				bit end - 1.
+	 */
+	void selectRange(TrainingData trainer, int start, int end, long[] words) {
+
+		for (int i = start; i < end; i++) {
+
+			if (matches(trainer, i)) {
+				words[i >>> 6] |= 1L << i;
+			}
+		}
+	}
+
+	/** Creates a predicate which compares a number about the
+	 *  token against a value.
+	 *
+	 * @param field	What to compare, one of the FIELD_ constants.
+	 * @param op	How to compare, one of the OP_ constants.
+	 * @param value	The value to compare against.
+	 *
+	 * @return The new predicate.
+	 */
+	public static TokenPredicate compare(int field, int op, double value) {
+
+		if ((field < FIELD_GOOD) || (field > FIELD_LENGTH)) {
+			throw new IllegalArgumentException("Unknown field: " + field);
+		}
+
+		if ((op < OP_LT) || (op > OP_NE)) {
+			throw new IllegalArgumentException("Unknown operator: " + op);
+		}
+
+		return new Comparison(field, op, value);
+	}
+
+	/** Creates a predicate which matches exactly the tokens that
+	 *  TrainingData.removeTokens(goodCount, badCount) removes,
+	 *  i.e. those below every threshold which is enabled.
+	 *
+	 * @param goodCount	The good threshold, or a number &lt;= 0
+	 * 						if the good count is not compared.
+	 * @param badCount		The bad threshold, or a number &lt;= 0
+	 * 						if the bad count is not compared.
+	 *
+	 * @return The new predicate.
+	 */
+	public static TokenPredicate removable(int goodCount, int badCount) {
+
+		if (goodCount <= 0) {
+
+			if (badCount <= 0) {
+
+				// With both thresholds disabled, everything is
+				// kept. No token has a negative length.
+				return compare(FIELD_LENGTH, OP_LT, 0);
+			}
+
+			return compare(FIELD_BAD, OP_LT, badCount);
+		}
+
+		if (badCount <= 0) {
+			return compare(FIELD_GOOD, OP_LT, goodCount);
+		}
+
+		return and(compare(FIELD_GOOD, OP_LT, goodCount), compare(FIELD_BAD, OP_LT, badCount));
+	}
+
+	/** Creates a predicate which matches tokens starting with the
+	 *  given prefix. The prefix is compared byte for byte, in the
+	 *  same encoding that the token store uses for Strings.
+	 *
+	 * @param prefix	The prefix to look for.
+	 *
+	 * @return The new predicate.
+	 */
+	public static TokenPredicate prefix(String prefix) {
+		return new Prefix(prefix);
+	}
+
+	/** Creates a predicate which matches tokens containing a
+	 *  match for the given regular expression. Use ^ and $ to
+	 *  match the whole token.
+	 *
+	 * @param regex	The regular expression, in java.util.regex
+	 * 				syntax.
+	 *
+	 * @return The new predicate.
+	 *
+	 * @throws java.util.regex.PatternSyntaxException If the
+	 * 			regular expression is not valid.
+	 */
+	public static TokenPredicate regex(String regex) {
+		return new Regex(regex);
+	}
+
+	/** Creates a predicate which matches tokens that match both
+	 *  of the given predicates.
+	 *
+	 * @param a	The first predicate.
+	 * @param b	The second predicate.
+	 *
+	 * @return The new predicate.
+	 */
+	public static TokenPredicate and(TokenPredicate a, TokenPredicate b) {
+		return new Junction(true, a, b);
+	}
+
+	/** Creates a predicate which matches tokens that match either
+	 *  of the given predicates.
+	 *
+	 * @param a	The first predicate.
+	 * @param b	The second predicate.
+	 *
+	 * @return The new predicate.
+	 */
+	public static TokenPredicate or(TokenPredicate a, TokenPredicate b) {
+		return new Junction(false, a, b);
+	}
+
+	/** Creates a predicate which matches tokens that don't match
+	 *  the given predicate.
+	 *
+	 * @param a	The predicate to negate.
+	 *
+	 * @return The new predicate.
+	 */
+	public static TokenPredicate not(TokenPredicate a) {
+		return new Negation(a);
+	}
+
+	/** Compares a number about the token against a value.
+	 */
+	private static class Comparison extends TokenPredicate {
+
+		/** What to compare, one of the FIELD_ constants.
+		 */
+		private int field = 0;
+
+		/** How to compare, one of the OP_ constants.
+		 */
+		private int op = 0;
+
+		/** The value to compare against.
+		 */
+		private double value = 0;
+
+		Comparison(int field, int op, double value) {
+
+			this.field = field;
+			this.op = op;
+			this.value = value;
+		}
+
+		public boolean matches(TrainingData trainer, int index) {
+
+			TokenStore tokenStore = trainer.getTokenStore();
+			double tokenValue = 0;
+
+			switch (field) {
+
+				case FIELD_GOOD:
+					tokenValue = tokenStore.getGoodCount(index);
+					break;
+
+				case FIELD_BAD:
+					tokenValue = tokenStore.getBadCount(index);
+					break;
+
+				case FIELD_GOOD_PERCENT:
+					tokenValue = percent(tokenStore.getGoodCount(index), trainer.getGoodMessageCount());
+					break;
+
+				case FIELD_BAD_PERCENT:
+					tokenValue = percent(tokenStore.getBadCount(index), trainer.getBadMessageCount());
+					break;
+
+				default:
+					tokenValue = tokenStore.getTokenLength(index);
+					break;
+			}
+
+			switch (op) {
+
+				case OP_LT:
+					return tokenValue < value;
+
+				case OP_LE:
+					return tokenValue <= value;
+
+				case OP_GT:
+					return tokenValue > value;
+
+				case OP_GE:
+					return tokenValue >= value;
+
+				case OP_EQ:
+					return tokenValue == value;
+
+				default:
+					return tokenValue != value;
+			}
+		}
+
+		/** Works out a count as a percentage of a message count.
+		 *  Just like the table, a message count of zero gives 0%.
+		 *
+		 * @param count	The token count.
+		 * @param messageCount	The message count.
+		 *
+		 * @return The count as a percentage.
+		 */
+		private static double percent(int count, int messageCount) {
+
+			if (messageCount <= 0) {
+				return 0;
+			}
+
+			return (100.0 * count) / messageCount;
+		}
+
+		public int getCost() {
+			return COST_COLUMN;
+		}
+
+		public String toString() {
+
+			// Print whole numbers without a trailing .0
+			String valueString = (value == Math.rint(value) && Math.abs(value) < 1e15)?
+				Long.toString((long) value) : Double.toString(value);
+
+			return FIELD_NAMES[field] + " " + OP_SYMBOLS[op] + " " + valueString;
+		}
+	}
+
+	/** Matches tokens which start with a given prefix.
+	 */
+	private static class Prefix extends TokenPredicate {
+
+		/** The prefix as a String, for toString().
+		 */
+		private String prefixString = null;
+
+		/** The prefix as bytes, for comparing with the store.
+		 */
+		private byte[] prefixBytes = null;
+
+		Prefix(String prefix) {
+
+			prefixString = prefix;
+			prefixBytes = Globals.encodeToken(prefix);
+		}
+
+		public boolean matches(TrainingData trainer, int index) {
+
+			TokenStore tokenStore = trainer.getTokenStore();
+
+			if (tokenStore.getTokenLength(index) < prefixBytes.length) {
+				return false;
+			}
+
+			byte[] tokenArray = tokenStore.getTokenArray(index);
+			int offset = tokenStore.getTokenOffset(index);
+
+			for (int i = 0; i < prefixBytes.length; i++) {
+
+				if (tokenArray[offset + i] != prefixBytes[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		public int getCost() {
+			return COST_BYTES;
+		}
+
+		public String toString() {
+			return "prefix " + TokenQueryParser.quote(prefixString);
+		}
+	}
+
+	/** Matches tokens which contain a match for a regular
+	 *  expression.
+	 */
+	private static class Regex extends TokenPredicate {
+
+		/** The compiled regular expression.
+		 */
+		private Pattern pattern = null;
+
+		Regex(String regex) {
+			pattern = Pattern.compile(regex);
+		}
+
+		public boolean matches(TrainingData trainer, int index) {
+			return pattern.matcher(trainer.getTokenStore().getTokenString(index)).find();
+		}
+
+		public int getCost() {
+			return COST_STRING;
+		}
+
+		public String toString() {
+			return "regex " + TokenQueryParser.quote(pattern.pattern());
+		}
+	}
+
+	/** Matches tokens which match both (for and) or either (for
+	 *  or) of two predicates.
+	 */
+	private static class Junction extends TokenPredicate {
+
+		/** true for and, false for or.
+		 */
+		private boolean isAnd = true;
+
+		/** The predicate which is tested first, the cheaper one.
+		 */
+		private TokenPredicate first = null;
+
+		/** The predicate which is tested second, if need be.
+		 */
+		private TokenPredicate second = null;
+
+		Junction(boolean isAnd, TokenPredicate a, TokenPredicate b) {
+
+			this.isAnd = isAnd;
+
+			// Predicates have no side effects, so the cheaper
+			// one can safely go first.
+			if (b.getCost() < a.getCost()) {
+
+				first = b;
+				second = a;
+
+			} else {
+
+				first = a;
+				second = b;
+			}
+		}
+
+		public boolean matches(TrainingData trainer, int index) {
+
+			if (isAnd) {
+
+				return first.matches(trainer, index) && second.matches(trainer, index);
+
+			} else {
+
+				return first.matches(trainer, index) || second.matches(trainer, index);
+			}
+		}
+
+		public int getCost() {
+			return first.getCost() + second.getCost();
+		}
+
+		public String toString() {
+			return "(" + first + (isAnd? " and " : " or ") + second + ")";
+		}
+	}
+
+	/** Matches tokens which don't match a predicate.
+	 */
+	private static class Negation extends TokenPredicate {
+
+		/** The predicate to negate.
+		 */
+		private TokenPredicate negated = null;
+
+		Negation(TokenPredicate negated) {
+			this.negated = negated;
+		}
+
+		public boolean matches(TrainingData trainer, int index) {
+			return !negated.matches(trainer, index);
+		}
+
+		public int getCost() {
+			return negated.getCost();
+		}
+
+		public String toString() {
+			return "not " + negated;
+		}
+	}
+}
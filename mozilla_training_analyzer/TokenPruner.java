@@ -0,0 +1,117 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.util.BitSet;
+
+/** Removes large numbers of tokens from a token store in bulk.
+ *
+ *  Pruning is split into two steps. First the tokens to drop are
+ *  marked in a BitSet, usually by TokenPredicate.select(), which
+ *  only reads the count columns of the store and splits big
+ *  stores up between several threads. Then the store removes all of the
+ *  marked tokens with TokenStore.removeAll(), which compacts the
+ *  survivors in a single pass instead of patching the store up
+ *  once per removed token. Keeping the two apart means other
+ *  ways of choosing tokens can feed the same removal step.
+ */
+public class TokenPruner {
+
+	// No instantiation of this class, everything is static.
+	private TokenPruner() {
+	}
+
+	/** Marks every token of the given store which
+	 *  TrainingData.removeTokens(goodCount, badCount) would
+	 *  remove.
+	 *
+	 * @param tokenStore	The store to look through.
+	 * @param goodCount	The good threshold, or a number &lt;= 0
+	 * 						if the good count is not compared.
+	 * @param badCount		The bad threshold, or a number &lt;= 0
+	 * 						if the bad count is not compared.
+	 *
+	 * @return A BitSet with the indices of the tokens to remove
+	 * 			set.
+	 */
+	public static BitSet markRemovable(TokenStore tokenStore, int goodCount, int badCount) {
+
+		// With both thresholds disabled, everything is kept.
+		if ((goodCount <= 0) && (badCount <= 0)) {
+			return new BitSet();
+		}
+
+		// The thresholds only look at the token counts, so the
+		// message counts of the wrapper don't matter.
+		return TokenPredicate.removable(goodCount, badCount).select(new TrainingData(0, 0, tokenStore));
+	}
+
+	/** Removes every marked token from the given store in one
+	 *  pass.
+	 *
+	 * @param tokenStore	The store to prune.
+	 * @param marked	The indices of the tokens to remove.
+	 *
+	 * @return What was removed from each section.
+	 */
+	public static PruneResult prune(TokenStore tokenStore, BitSet marked) {
+
+		int sizeBefore = tokenStore.size();
+		int goodBefore = tokenStore.getNumGoodTokens();
+		int badBefore = tokenStore.getNumBadTokens();
+
+		tokenStore.removeAll(marked);
+
+		return new PruneResult(
+			sizeBefore - tokenStore.size(),
+			goodBefore - tokenStore.getNumGoodTokens(),
+			badBefore - tokenStore.getNumBadTokens());
+	}
+
+	/** Removes every token of the given store which
+	 *  TrainingData.removeTokens(goodCount, badCount) would
+	 *  remove.
+	 *
+	 * @param tokenStore	The store to prune.
+	 * @param goodCount	The good threshold, or a number &lt;= 0
+	 * 						if the good count is not compared.
+	 * @param badCount		The bad threshold, or a number &lt;= 0
+	 * 						if the bad count is not compared.
+	 *
+	 * @return What was removed from each section.
+	 */
+	public static PruneResult prune(TokenStore tokenStore, int goodCount, int badCount) {
+
+		return prune(tokenStore, markRemovable(tokenStore, goodCount, badCount));
+	}
+}
@@ -0,0 +1,408 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.text.ParseException;
+import java.util.regex.PatternSyntaxException;
+
+/** Turns the text form of a token query into a TokenPredicate.
+ *  The same syntax is used on the command-line and in the GUI:
+ *
+ *  <pre>
+ *  query      := term { "or" term }
+ *  term       := factor { "and" factor }
+ *  factor     := "not" factor | "(" query ")" | condition
+ *  condition  := field op number
+ *              | "prefix" string
+ *              | "regex" string
+ *  field      := "good" | "bad" | "good%" | "bad%" | "length"
+ *  op         := "&lt;" | "&lt;=" | "&gt;" | "&gt;=" | "=" | "==" | "!="
+ *  </pre>
+ *
+ *  Keywords and fields may be in any case. A string is either a
+ *  single word or is wrapped in double quotes, in which case a
+ *  backslash escapes a quote or another backslash. For example:
+ *
+ *  <pre>
+ *  good &lt; 2 and bad &lt; 2
+ *  bad% &gt;= 50 and not (prefix "from:" or length &gt; 40)
+ *  regex "^[0-9]+$"
+ *  </pre>
+ */
+public class TokenQueryParser {
+
+	/** The text being parsed.
+	 */
+	private String query = null;
+
+	/** The position of the next character to be read.
+	 */
+	private int pos = 0;
+
+	/** The current token of the query text.
+	 */
+	private String token = null;
+
+	/** The position at which the current token starts.
+	 */
+	private int tokenStart = 0;
+
+	/** Whether the current token was a quoted string.
+	 */
+	private boolean tokenQuoted = false;
+
+	/** Creates a new parser for the given query text.
+	 *
+	 * @param query	The text to parse.
+	 */
+	private TokenQueryParser(String query) {
+		this.query = query;
+	}
+
+	/** Parses the given query text.
+	 *
+	 * @param query	The text of the query.
+	 *
+	 * @return The TokenPredicate described by the query.
+	 *
+	 * @throws ParseException If the query is not valid. The
+	 * 							error offset gives the position
+	 * 							of the problem.
+	 */
+	public static TokenPredicate parse(String query) throws ParseException {
+
+		TokenQueryParser parser = new TokenQueryParser(query);
+
+		parser.advance();
+
+		TokenPredicate predicate = parser.parseQuery();
+
+		// Anything left over is a mistake.
+		if (parser.token != null) {
+			throw parser.error("Unexpected [" + parser.token + "]");
+		}
+
+		return predicate;
+	}
+
+	/** Wraps the given String in double quotes, escaping it so
+	 *  that it parses back to the same String.
+	 *
+	 * @param s	The String to quote.
+	 *
+	 * @return The quoted String.
+	 */
+	public static String quote(String s) {
+
+		StringBuffer quoted = new StringBuffer(s.length() + 2);
+
+		quoted.append('"');
+
+		for (int i = 0; i < s.length(); i++) {
+
+			char c = s.charAt(i);
+
+			if ((c == '"') || (c == '\\')) {
+				quoted.append('\\');
+			}
+
+			quoted.append(c);
+		}
+
+		quoted.append('"');
+
+		return quoted.toString();
+	}
+
+	/** query := term { "or" term }
+	 */
+	private TokenPredicate parseQuery() throws ParseException {
+
+		TokenPredicate predicate = parseTerm();
+
+		while (isKeyword("or")) {
+
+			advance();
+			predicate = TokenPredicate.or(predicate, parseTerm());
+		}
+
+		return predicate;
+	}
+
+	/** term := factor { "and" factor }
+	 */
+	private TokenPredicate parseTerm() throws ParseException {
+
+		TokenPredicate predicate = parseFactor();
+
+		while (isKeyword("and")) {
+
+			advance();
+			predicate = TokenPredicate.and(predicate, parseFactor());
+		}
+
+		return predicate;
+	}
+
+	/** factor := "not" factor | "(" query ")" | condition
+	 */
+	private TokenPredicate parseFactor() throws ParseException {
+
+		if (token == null) {
+			throw error("Unexpected end of query");
+		}
+
+		if (isKeyword("not")) {
+
+			advance();
+			return TokenPredicate.not(parseFactor());
+		}
+
+		if (isKeyword("(")) {
+
+			advance();
+
+			TokenPredicate predicate = parseQuery();
+
+			if (!isKeyword(")")) {
+				throw error("Expected [)]");
+			}
+
+			advance();
+
+			return predicate;
+		}
+
+		if (isKeyword("prefix")) {
+
+			advance();
+			return TokenPredicate.prefix(takeString());
+		}
+
+		if (isKeyword("regex")) {
+
+			advance();
+
+			int regexStart = tokenStart;
+			String regex = takeString();
+
+			try {
+
+				return TokenPredicate.regex(regex);
+
+			} catch (PatternSyntaxException pse) {
+
+				throw new ParseException("Invalid regex: " + pse.getDescription(), regexStart);
+			}
+		}
+
+		return parseCondition();
+	}
+
+	/** condition := field op number
+	 */
+	private TokenPredicate parseCondition() throws ParseException {
+
+		int field = -1;
+
+		for (int i = 1; i < TokenPredicate.FIELD_NAMES.length; i++) {
+
+			if (isKeyword(TokenPredicate.FIELD_NAMES[i])) {
+				field = i;
+			}
+		}
+
+		if (field == -1) {
+			throw error("Expected a field, [prefix] or [regex] but found [" + token + "]");
+		}
+
+		advance();
+
+		int op = -1;
+
+		for (int i = 1; i < TokenPredicate.OP_SYMBOLS.length; i++) {
+
+			if (isKeyword(TokenPredicate.OP_SYMBOLS[i])) {
+				op = i;
+			}
+		}
+
+		// Allow == as well as =.
+		if (isKeyword("==")) {
+			op = TokenPredicate.OP_EQ;
+		}
+
+		if (op == -1) {
+			throw error("Expected a comparison operator but found [" + token + "]");
+		}
+
+		advance();
+
+		if ((token == null) || tokenQuoted) {
+			throw error("Expected a number");
+		}
+
+		double value = 0;
+
+		try {
+
+			value = Double.parseDouble(token);
+
+		} catch (NumberFormatException nfe) {
+
+			throw error("Expected a number but found [" + token + "]");
+		}
+
+		advance();
+
+		return TokenPredicate.compare(field, op, value);
+	}
+
+	/** Takes the current token as a string argument.
+	 */
+	private String takeString() throws ParseException {
+
+		if (token == null) {
+			throw error("Expected a string");
+		}
+
+		String s = token;
+		advance();
+
+		return s;
+	}
+
+	/** Checks whether the current token is the given unquoted
+	 *  keyword, ignoring case.
+	 *
+	 * @param keyword	The keyword to check for.
+	 *
+	 * @return true if the current token is that keyword.
+	 */
+	private boolean isKeyword(String keyword) {
+
+		return (token != null) && !tokenQuoted && token.equalsIgnoreCase(keyword);
+	}
+
+	/** Creates an exception for a problem at the current token.
+	 *
+	 * @param message	A description of the problem.
+	 *
+	 * @return The exception, for the caller to throw.
+	 */
+	private ParseException error(String message) {
+
+		return new ParseException(message + " at position " + (tokenStart + 1), tokenStart);
+	}
+
+	/** Moves on to the next token of the query text, or sets the
+	 *  current token to null at the end of the text.
+	 */
+	private void advance() throws ParseException {
+
+		// Skip any whitespace.
+		while ((pos < query.length()) && Character.isWhitespace(query.charAt(pos))) {
+			pos++;
+		}
+
+		tokenStart = pos;
+		tokenQuoted = false;
+
+		if (pos >= query.length()) {
+
+			token = null;
+			return;
+		}
+
+		char c = query.charAt(pos);
+
+		if ((c == '(') || (c == ')')) {
+
+			// Parentheses stand alone.
+			token = String.valueOf(c);
+			pos++;
+
+		} else if ((c == '<') || (c == '>') || (c == '=') || (c == '!')) {
+
+			// An operator, possibly followed by =.
+			pos++;
+
+			if ((pos < query.length()) && (query.charAt(pos) == '=')) {
+				pos++;
+			}
+
+			token = query.substring(tokenStart, pos);
+
+		} else if (c == '"') {
+
+			// A quoted string, with backslash escapes.
+			StringBuffer quoted = new StringBuffer();
+			pos++;
+
+			while (true) {
+
+				if (pos >= query.length()) {
+					throw new ParseException("Unterminated string at position " + (tokenStart + 1), tokenStart);
+				}
+
+				c = query.charAt(pos++);
+
+				if (c == '"') {
+					break;
+				}
+
+				if ((c == '\\') && (pos < query.length())) {
+					c = query.charAt(pos++);
+				}
+
+				quoted.append(c);
+			}
+
+			token = quoted.toString();
+			tokenQuoted = true;
+
+		} else {
+
+			// A word runs up to whitespace, a parenthesis, an
+			// operator or a quote.
+			while ((pos < query.length()) &&
+				!Character.isWhitespace(query.charAt(pos)) &&
+				("()<>=!\"".indexOf(query.charAt(pos)) == -1)) {
+
+				pos++;
+			}
+
+			token = query.substring(tokenStart, pos);
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.File;
+import java.io.IOException;
+
+/** A forward-only cursor over the merge of several run files.
+ *  Each distinct token of the runs is yielded once, in ascending
+ *  order, with its counts from all of the runs added up.
+ *
+ *  The runs are kept in a binary min-heap ordered by their
+ *  current token, so each step costs log(number of runs)
+ *  comparisons no matter how many runs there are. Only one
+ *  buffer per run is held in memory.
+ */
+public class TokenRunMerger {
+
+	/** A binary min-heap of the runs, ordered by their current
+	 *  token. Runs which are used up drop out of the heap.
+	 */
+	private TokenRunReader[] heap = null;
+
+	/** The number of runs still in the heap.
+	 */
+	private int heapSize = 0;
+
+	/** The buffer holding the bytes of the current token. It is
+	 *  a copy, since advancing a run overwrites that run's own
+	 *  buffer.
+	 */
+	private byte[] tokenBytes = new byte[64];
+
+	/** The number of valid bytes in tokenBytes.
+	 */
+	private int tokenLength = 0;
+
+	/** The summed good count of the current token.
+	 */
+	private int goodCount = 0;
+
+	/** The summed bad count of the current token.
+	 */
+	private int badCount = 0;
+
+	/** Opens all of the given runs for merging.
+	 *
+	 * @param runFiles	The run files to merge, each written by
+	 * 					a TokenRunWriter.
+	 *
+	 * @throws IOException If one of the runs could not be opened.
+	 */
+	public TokenRunMerger(File[] runFiles) throws IOException {
+
+		heap = new TokenRunReader[runFiles.length];
+
+		try {
+
+			for (int i = 0; i < runFiles.length; i++) {
+
+				TokenRunReader run = new TokenRunReader(runFiles[i]);
+
+				if (run.next()) {
+
+					heap[heapSize++] = run;
+
+				} else {
+
+					// An empty run has nothing to contribute.
+					run.close();
+				}
+			}
+
+		} catch (IOException ioe) {
+
+			// Don't leak the runs which did open.
+			close();
+			throw ioe;
+		}
+
+		// Build the heap bottom-up.
+		for (int i = (heapSize / 2) - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+
+	/** Advances the cursor to the next distinct token.
+	 *
+	 * @return true if the cursor is now positioned on a token,
+	 * 			false if all of the runs have been used up.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading the runs.
+	 */
+	public boolean next() throws IOException {
+
+		if (heapSize == 0) {
+
+			tokenLength = 0;
+			goodCount = 0;
+			badCount = 0;
+
+			return false;
+		}
+
+		TokenRunReader top = heap[0];
+
+		tokenLength = top.getTokenLength();
+
+		// Grow the buffer if this token doesn't fit.
+		if (tokenLength > tokenBytes.length) {
+			tokenBytes = new byte[Math.max(tokenLength, tokenBytes.length * 2)];
+		}
+
+		System.arraycopy(top.getTokenBytes(), 0, tokenBytes, 0, tokenLength);
+		goodCount = 0;
+		badCount = 0;
+
+		// Pull the same token off of every run which has it.
+		// Those runs all come to the top of the heap, one after
+		// the other.
+		while ((heapSize > 0) &&
+			(Globals.compareBytes(
+				heap[0].getTokenBytes(), 0, heap[0].getTokenLength(),
+				tokenBytes, 0, tokenLength) == 0)) {
+
+			top = heap[0];
+
+			goodCount += top.getGoodCount();
+			badCount += top.getBadCount();
+
+			if (!top.next()) {
+
+				// This run is used up, so replace it with the
+				// last run in the heap.
+				top.close();
+				heap[0] = heap[--heapSize];
+				heap[heapSize] = null;
+			}
+
+			siftDown(0);
+		}
+
+		return true;
+	}
+
+	/** Returns the buffer holding the bytes of the current token.
+	 *  Only the first getTokenLength() bytes are valid, and the
+	 *  buffer is overwritten by the next call to next().
+	 *
+	 * @return The buffer holding the bytes of the current token.
+	 */
+	public byte[] getTokenBytes() {
+		return tokenBytes;
+	}
+
+	/** Returns the length in bytes of the current token.
+	 *
+	 * @return The length in bytes of the current token.
+	 */
+	public int getTokenLength() {
+		return tokenLength;
+	}
+
+	/** Returns the good count of the current token, summed over
+	 *  all of the runs.
+	 *
+	 * @return The good count of the current token.
+	 */
+	public int getGoodCount() {
+		return goodCount;
+	}
+
+	/** Returns the bad count of the current token, summed over
+	 *  all of the runs.
+	 *
+	 * @return The bad count of the current token.
+	 */
+	public int getBadCount() {
+		return badCount;
+	}
+
+	/** Closes any runs which are still open.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						closing a run.
+	 */
+	public void close() throws IOException {
+
+		while (heapSize > 0) {
+
+			heap[--heapSize].close();
+			heap[heapSize] = null;
+		}
+	}
+
+	/** Moves the run at the given position of the heap down until
+	 *  neither of its children has a smaller token.
+	 *
+	 * @param position	The position of the run to move down.
+	 */
+	private void siftDown(int position) {
+
+		if (position >= heapSize) {
+			return;
+		}
+
+		TokenRunReader run = heap[position];
+
+		while (true) {
+
+			int child = (2 * position) + 1;
+
+			if (child >= heapSize) {
+				break;
+			}
+
+			// Pick the smaller of the two children.
+			if ((child + 1 < heapSize) && (heap[child + 1].compareTo(heap[child]) < 0)) {
+				child++;
+			}
+
+			if (heap[child].compareTo(run) >= 0) {
+				break;
+			}
+
+			heap[position] = heap[child];
+			position = child;
+		}
+
+		heap[position] = run;
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/** A forward-only cursor over a run file written by
+ *  TokenRunWriter. Like a TokenCursor, it yields one token at a
+ *  time and reuses a single buffer for the token bytes, so any
+ *  number of runs can be read side by side in constant memory.
+ */
+public class TokenRunReader {
+
+	/** The initial size of the reusable token buffer. It grows
+	 *  as needed to fit the longest token seen so far.
+	 */
+	private static final int INITIAL_TOKEN_BUFFER_SIZE = 64;
+
+	/** The size of buffer used for each run. Many runs are read
+	 *  at once, so this is smaller than the usual buffer size.
+	 */
+	private static final int RUN_BUFFER_SIZE = 16384;
+
+	/** The stream which the run is read from.
+	 */
+	private DataInputStream inStream = null;
+
+	/** The number of tokens in the run which have not been read
+	 *  yet.
+	 */
+	private int remaining = 0;
+
+	/** The reusable buffer holding the bytes of the current
+	 *  token.
+	 */
+	private byte[] tokenBytes = new byte[INITIAL_TOKEN_BUFFER_SIZE];
+
+	/** The number of valid bytes in tokenBytes.
+	 */
+	private int tokenLength = 0;
+
+	/** The good count of the current token.
+	 */
+	private int goodCount = 0;
+
+	/** The bad count of the current token.
+	 */
+	private int badCount = 0;
+
+	/** Opens the given run file for reading.
+	 *
+	 * @param runFile	A run file written by TokenRunWriter.
+	 *
+	 * @throws IOException If the run file could not be opened.
+	 */
+	public TokenRunReader(File runFile) throws IOException {
+
+		inStream = new DataInputStream(
+			new BufferedInputStream(
+				new FileInputStream(runFile),
+				RUN_BUFFER_SIZE));
+
+		remaining = inStream.readInt();
+	}
+
+	/** Advances the cursor to the next token in the run.
+	 *
+	 * @return true if the cursor is now positioned on a token,
+	 * 			false if the end of the run has been reached.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading the run.
+	 */
+	public boolean next() throws IOException {
+
+		if (remaining == 0) {
+
+			tokenLength = 0;
+			goodCount = 0;
+			badCount = 0;
+
+			return false;
+		}
+
+		goodCount = inStream.readInt();
+		badCount = inStream.readInt();
+		tokenLength = inStream.readInt();
+
+		// Grow the reusable buffer if this token doesn't fit.
+		if (tokenLength > tokenBytes.length) {
+
+			tokenBytes = new byte[Math.max(tokenLength, tokenBytes.length * 2)];
+		}
+
+		inStream.readFully(tokenBytes, 0, tokenLength);
+
+		remaining--;
+
+		return true;
+	}
+
+	/** Returns the buffer holding the bytes of the current token.
+	 *  Only the first getTokenLength() bytes are valid, and the
+	 *  buffer is overwritten by the next call to next().
+	 *
+	 * @return The buffer holding the bytes of the current token.
+	 */
+	public byte[] getTokenBytes() {
+		return tokenBytes;
+	}
+
+	/** Returns the length in bytes of the current token.
+	 *
+	 * @return The length in bytes of the current token.
+	 */
+	public int getTokenLength() {
+		return tokenLength;
+	}
+
+	/** Returns the good count of the current token.
+	 *
+	 * @return The good count of the current token.
+	 */
+	public int getGoodCount() {
+		return goodCount;
+	}
+
+	/** Returns the bad count of the current token.
+	 *
+	 * @return The bad count of the current token.
+	 */
+	public int getBadCount() {
+		return badCount;
+	}
+
+	/** Compares the current token of this run with the current
+	 *  token of another run.
+	 *
+	 * @param other	The run to compare with.
+	 *
+	 * @return A negative number, zero, or a positive number if
+	 * 			this run's token sorts before, equal to, or after
+	 * 			the other run's token.
+	 */
+	public int compareTo(TokenRunReader other) {
+
+		return Globals.compareBytes(
+			tokenBytes, 0, tokenLength,
+			other.tokenBytes, 0, other.tokenLength);
+	}
+
+	/** Closes the underlying stream.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						closing the stream.
+	 */
+	public void close() throws IOException {
+		inStream.close();
+	}
+}
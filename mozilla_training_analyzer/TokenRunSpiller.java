@@ -0,0 +1,203 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Vector;
+
+/** Collects tokens in memory and spills them to sorted run files
+ *  whenever a memory budget is used up. This is the first half
+ *  of an external merge: tokens can be fed in from any number of
+ *  inputs, in any order, and the resulting runs are combined
+ *  afterwards by TokenFileMerger.mergeRuns().
+ *
+ *  A token which is added more than once before a spill has its
+ *  counts added up in memory, so only the runs themselves can
+ *  hold duplicates of a token.
+ *
+ *  The store's arrays double in size as it grows, and the old
+ *  arrays are still alive while they are being copied, so the
+ *  store is spilled once it takes up a third of the budget. That
+ *  keeps the worst case, just after a grow, inside the budget.
+ */
+public class TokenRunSpiller {
+
+	/** The smallest memory budget which is accepted, in bytes.
+	 *  Anything smaller just produces a flood of tiny runs.
+	 */
+	public static final long MIN_MEMORY_BUDGET = 1024 * 1024;
+
+	/** The number of bytes of memory that the in-memory tokens
+	 *  may take up.
+	 */
+	private long memoryBudget = 0;
+
+	/** The tokens collected since the last spill.
+	 */
+	private OpenAddressingTokenStore tokenStore = null;
+
+	/** The run files spilled so far.
+	 */
+	private Vector<File> runFiles = new Vector<File>();
+
+	/** Creates a new TokenRunSpiller with the given memory
+	 *  budget.
+	 *
+	 * @param memoryBudget	The number of bytes of memory that the
+	 * 						in-memory tokens may take up. Budgets
+	 * 						below MIN_MEMORY_BUDGET are raised to
+	 * 						it.
+	 */
+	public TokenRunSpiller(long memoryBudget) {
+
+		this.memoryBudget = Math.max(memoryBudget, MIN_MEMORY_BUDGET);
+
+		tokenStore = new OpenAddressingTokenStore();
+	}
+
+	/** Adds a token, spilling the tokens collected so far to a
+	 *  new run if the memory budget has been used up.
+	 *
+	 * @param tokenBytes	The array holding the token's bytes.
+	 * @param offset	The offset of the token in tokenBytes.
+	 * @param length	The length of the token in bytes.
+	 * @param goodCount	The good count to add for the token.
+	 * @param badCount	The bad count to add for the token.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						spilling a run.
+	 */
+	public void add(
+			byte[] tokenBytes,
+			int offset,
+			int length,
+			int goodCount,
+			int badCount
+	) throws IOException {
+
+		tokenStore.add(tokenBytes, offset, length, goodCount, badCount);
+
+		spillIfFull();
+	}
+
+	/** Adds a token, spilling the tokens collected so far to a
+	 *  new run if the memory budget has been used up.
+	 *
+	 * @param tokenString	The token.
+	 * @param goodCount	The good count to add for the token.
+	 * @param badCount	The bad count to add for the token.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						spilling a run.
+	 */
+	public void add(String tokenString, int goodCount, int badCount) throws IOException {
+
+		tokenStore.add(tokenString, goodCount, badCount);
+
+		spillIfFull();
+	}
+
+	/** Spills the in-memory tokens if they take up more than a
+	 *  third of the budget.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						spilling the run.
+	 */
+	private void spillIfFull() throws IOException {
+
+		if (tokenStore.getMemoryUsage() * 3 > memoryBudget) {
+			spill();
+		}
+	}
+
+	/** Writes the in-memory tokens to a new run file, and starts
+	 *  over with an empty store.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the run.
+	 */
+	private void spill() throws IOException {
+
+		File runFile = File.createTempFile("bayesjunk", ".run");
+
+		// Add it first, so that it gets cleaned up even if the
+		// write fails half way through.
+		runFiles.add(runFile);
+
+		TokenRunWriter.writeRun(tokenStore, runFile);
+
+		// A new store rather than clear(), so that the grown
+		// arrays of this one can be reclaimed.
+		tokenStore = new OpenAddressingTokenStore();
+	}
+
+	/** Returns the number of runs spilled so far.
+	 *
+	 * @return The number of runs spilled so far.
+	 */
+	public int getNumRuns() {
+		return runFiles.size();
+	}
+
+	/** Spills whatever tokens are still in memory and returns all
+	 *  of the runs. No more tokens should be added after this.
+	 *
+	 * @return The run files, ready to be merged.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the last run.
+	 */
+	public File[] finish() throws IOException {
+
+		if (tokenStore.size() > 0) {
+			spill();
+		}
+
+		File[] retFiles = new File[runFiles.size()];
+		runFiles.copyInto(retFiles);
+
+		return retFiles;
+	}
+
+	/** Deletes every run file spilled so far.
+	 */
+	public void deleteRuns() {
+
+		for (int i = 0; i < runFiles.size(); i++) {
+			runFiles.get(i).delete();
+		}
+
+		runFiles.clear();
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/** Writes tokens to a temporary run file, in sorted order. Run
+ *  files are what the merging code uses to combine token sets
+ *  without holding all of them in memory at once; they are read
+ *  back with a TokenRunReader.
+ *
+ *  A run file is a simple, private format: the number of tokens
+ *  in the run, followed by a (good count, bad count, length,
+ *  token bytes) record for every token, with all ints written
+ *  big-endian. Unlike a training.dat, a token which has both a
+ *  good and a bad count is only written once.
+ *
+ *  A whole TokenStore can be written in one go with writeRun().
+ *  Otherwise the tokens are handed over one at a time, already
+ *  in ascending order, and the token count at the front of the
+ *  file is filled in when the writer is closed.
+ */
+public class TokenRunWriter {
+
+	/** The stream which the run is written to.
+	 */
+	private DataOutputStream outStream = null;
+
+	/** The file which the run is written to.
+	 */
+	private File runFile = null;
+
+	/** The number of tokens written so far.
+	 */
+	private int numTokens = 0;
+
+	/** Creates a new run file, ready for tokens to be written to
+	 *  it.
+	 *
+	 * @param runFile	The file to write the run to. Any
+	 * 					existing contents are overwritten.
+	 *
+	 * @throws IOException If the run file could not be created.
+	 */
+	public TokenRunWriter(File runFile) throws IOException {
+
+		this.runFile = runFile;
+
+		outStream = new DataOutputStream(
+			new BufferedOutputStream(
+				new FileOutputStream(runFile),
+				TrainingData.OUTPUT_BUFFER_SIZE));
+
+		// Leave room for the token count, which isn't known yet.
+		outStream.writeInt(0);
+	}
+
+	/** Writes a single token to the run. Tokens must be written in
+	 *  ascending order of their bytes, each one only once.
+	 *
+	 * @param tokenBytes	The array holding the token's bytes.
+	 * @param offset	The offset of the token in tokenBytes.
+	 * @param length	The length of the token in bytes.
+	 * @param goodCount	The good count of the token.
+	 * @param badCount	The bad count of the token.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the run file.
+	 */
+	public void writeToken(
+			byte[] tokenBytes,
+			int offset,
+			int length,
+			int goodCount,
+			int badCount
+	) throws IOException {
+
+		outStream.writeInt(goodCount);
+		outStream.writeInt(badCount);
+		outStream.writeInt(length);
+		outStream.write(tokenBytes, offset, length);
+
+		numTokens++;
+	}
+
+	/** Returns the number of tokens written so far.
+	 *
+	 * @return The number of tokens written so far.
+	 */
+	public int getNumTokens() {
+		return numTokens;
+	}
+
+	/** Finishes the run file by filling in its token count, and
+	 *  closes it.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the run file.
+	 */
+	public void close() throws IOException {
+
+		outStream.close();
+
+		RandomAccessFile countFile = new RandomAccessFile(runFile, "rw");
+
+		try {
+
+			countFile.writeInt(numTokens);
+
+		} finally {
+
+			countFile.close();
+		}
+	}
+
+	/** Writes every token of the given store to the given run
+	 *  file, in ascending order of the tokens' bytes.
+	 *
+	 * @param tokenStore	The store whose tokens are written.
+	 * @param runFile	The file to write the run to. Any
+	 * 					existing contents are overwritten.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the run file.
+	 */
+	public static void writeRun(TokenStore tokenStore, File runFile) throws IOException {
+
+		int[] sortedIndices = tokenStore.getSortedIndices();
+
+		TokenRunWriter writer = new TokenRunWriter(runFile);
+
+		try {
+
+			// Create this here to avoid unnecessary object creation
+			// inside the loop.
+			int index = -1;
+
+			for (int i = 0; i < sortedIndices.length; i++) {
+
+				index = sortedIndices[i];
+
+				writer.writeToken(
+					tokenStore.getTokenArray(index),
+					tokenStore.getTokenOffset(index),
+					tokenStore.getTokenLength(index),
+					tokenStore.getGoodCount(index),
+					tokenStore.getBadCount(index));
+			}
+
+		} finally {
+
+			writer.close();
+		}
+	}
+}
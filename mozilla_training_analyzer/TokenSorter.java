@@ -0,0 +1,168 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+/** Sorts arrays of token indices by the bytes of the tokens that
+ *  they refer to. This is what TokenStore implementations use to
+ *  produce their sorted views, since a plain int[] can't be
+ *  sorted with a Comparator without boxing every index.
+ */
+public class TokenSorter {
+
+	/** Ranges which are this short or shorter are sorted with an
+	 *  insertion sort rather than being split any further.
+	 */
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	// No instantiation of this class, everything is static.
+	private TokenSorter() {
+	}
+
+	/** Compares the tokens at two indices of the given store.
+	 *
+	 * @param store	The store holding both tokens.
+	 * @param a	The index of the first token.
+	 * @param b	The index of the second token.
+	 *
+	 * @return A negative number, zero, or a positive number if
+	 * 			the first token sorts before, equal to, or after
+	 * 			the second.
+	 */
+	public static int compare(TokenStore store, int a, int b) {
+
+		return Globals.compareBytes(
+			store.getTokenArray(a), store.getTokenOffset(a), store.getTokenLength(a),
+			store.getTokenArray(b), store.getTokenOffset(b), store.getTokenLength(b));
+	}
+
+	/** Compares a token in one store with a token in another.
+	 *
+	 * @param storeA	The store holding the first token.
+	 * @param a	The index of the first token.
+	 * @param storeB	The store holding the second token.
+	 * @param b	The index of the second token.
+	 *
+	 * @return A negative number, zero, or a positive number if
+	 * 			the first token sorts before, equal to, or after
+	 * 			the second.
+	 */
+	public static int compare(TokenStore storeA, int a, TokenStore storeB, int b) {
+
+		return Globals.compareBytes(
+			storeA.getTokenArray(a), storeA.getTokenOffset(a), storeA.getTokenLength(a),
+			storeB.getTokenArray(b), storeB.getTokenOffset(b), storeB.getTokenLength(b));
+	}
+
+	/** Sorts the given token indices in place, in ascending order
+	 *  of the tokens' bytes. The sort is a stable merge sort, so
+	 *  it has no bad cases on already sorted input.
+	 *
+	 * @param store	The store which the indices refer to.
+	 * @param indices	The indices to sort.
+	 */
+	public static void sort(TokenStore store, int[] indices) {
+
+		if (indices.length < 2) {
+			return;
+		}
+
+		// The merge sort ping-pongs between the two arrays, so
+		// the scratch array starts out as a copy.
+		int[] scratch = indices.clone();
+
+		mergeSort(store, scratch, indices, 0, indices.length);
+	}
+
+	/** Sorts the range [from, to) of src into dest. Both arrays
+	 *  must contain the same values in that range on entry.
+	 *
+	 * @param store	The store which the indices refer to.
+	 * @param src	The array to read the range from.
+	 * @param dest	The array to write the sorted range into.
+	 * @param from	The first position of the range.
+	 * @param to	One past the last position of the range.
+	 */
+	private static void mergeSort(TokenStore store, int[] src, int[] dest, int from, int to) {
+
+		int length = to - from;
+
+		if (length <= INSERTION_SORT_THRESHOLD) {
+
+			for (int i = from + 1; i < to; i++) {
+
+				int value = dest[i];
+				int j = i - 1;
+
+				while ((j >= from) && (compare(store, dest[j], value) > 0)) {
+
+					dest[j + 1] = dest[j];
+					j--;
+				}
+
+				dest[j + 1] = value;
+			}
+
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+
+		// Sort both halves into src, so that they can be merged
+		// back into dest.
+		mergeSort(store, dest, src, from, mid);
+		mergeSort(store, dest, src, mid, to);
+
+		// If the halves are already in order, just copy them.
+		if (compare(store, src[mid - 1], src[mid]) <= 0) {
+
+			System.arraycopy(src, from, dest, from, length);
+			return;
+		}
+
+		int left = from;
+		int right = mid;
+
+		for (int i = from; i < to; i++) {
+
+			if ((right >= to) ||
+				((left < mid) && (compare(store, src[left], src[right]) <= 0))) {
+
+				dest[i] = src[left++];
+
+			} else {
+
+				dest[i] = src[right++];
+			}
+		}
+	}
+}
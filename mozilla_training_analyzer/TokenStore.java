@@ -0,0 +1,240 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.util.BitSet;
+
+/** A collection of tokens and their good and bad counts, as found
+ *  within a Mozilla Bayesian Filter Training file.
+ *
+ *  Tokens are identified by their raw bytes, exactly as they are
+ *  stored in a training.dat file. Each token in the store has an
+ *  index between 0 and size() - 1, and all of the per-token
+ *  accessors work on that index. Indices are dense but not
+ *  stable: removing a token may move another token into the
+ *  freed index, so indices must be looked up again after a
+ *  removal.
+ *
+ *  A store is not kept in any particular order. Callers which
+ *  need the tokens in sorted order (writers, the GUI) ask for a
+ *  sorted view with getSortedIndices().
+ */
+public interface TokenStore {
+
+	/** Returns the number of distinct tokens in this store.
+	 *
+	 * @return The number of distinct tokens in this store.
+	 */
+	public int size();
+
+	/** Returns the number of tokens in this store which have a
+	 *  good count greater than zero, i.e. the number of tokens
+	 *  in the good section of a training.dat. This is kept up
+	 *  to date as the store changes, so it costs nothing.
+	 *
+	 * @return The number of tokens with a good count &gt; 0.
+	 */
+	public int getNumGoodTokens();
+
+	/** Returns the number of tokens in this store which have a
+	 *  bad count greater than zero, i.e. the number of tokens
+	 *  in the bad section of a training.dat. This is kept up
+	 *  to date as the store changes, so it costs nothing.
+	 *
+	 * @return The number of tokens with a bad count &gt; 0.
+	 */
+	public int getNumBadTokens();
+
+	/** Looks up the index of the given token.
+	 *
+	 * @param token	An array containing the token bytes.
+	 * @param offset	The offset of the token within the array.
+	 * @param length	The length in bytes of the token.
+	 *
+	 * @return The index of the token, or -1 if it is not in this
+	 * 			store.
+	 */
+	public int indexOf(byte[] token, int offset, int length);
+
+	/** Looks up the index of the given token String, encoded
+	 *  with Globals.encodeToken().
+	 *
+	 * @param token	The token String to look up.
+	 *
+	 * @return The index of the token, or -1 if it is not in this
+	 * 			store.
+	 */
+	public int indexOf(String token);
+
+	/** Adds the given counts to a token. If the token is not in
+	 *  this store yet, it is inserted with the given counts.
+	 *
+	 * @param token	An array containing the token bytes. The
+	 * 				bytes are copied, so the array may be reused
+	 * 				by the caller.
+	 * @param offset	The offset of the token within the array.
+	 * @param length	The length in bytes of the token.
+	 * @param goodCount	The number of good occurences to add.
+	 * @param badCount	The number of bad occurences to add.
+	 *
+	 * @return The index of the token.
+	 */
+	public int add(byte[] token, int offset, int length, int goodCount, int badCount);
+
+	/** Adds the given counts to a token String, encoded with
+	 *  Globals.encodeToken(). If the token is not in this store
+	 *  yet, it is inserted with the given counts.
+	 *
+	 * @param token	The token String.
+	 * @param goodCount	The number of good occurences to add.
+	 * @param badCount	The number of bad occurences to add.
+	 *
+	 * @return The index of the token.
+	 */
+	public int add(String token, int goodCount, int badCount);
+
+	/** Removes the token at the given index. The last token in
+	 *  the store may be moved into the freed index.
+	 *
+	 * @param index	The index of the token to remove.
+	 */
+	public void remove(int index);
+
+	/** Removes every token whose index is set in the given
+	 *  BitSet, in a single pass. This is much cheaper than
+	 *  calling remove(int) for each of them when a large part of
+	 *  the store goes. Unlike remove(int), the tokens which are
+	 *  left keep their relative order, and are moved down to
+	 *  fill the gaps.
+	 *
+	 * @param indices	The indices of the tokens to remove. Bits
+	 * 					at or past size() are ignored.
+	 */
+	public void removeAll(BitSet indices);
+
+	/** Removes all tokens from this store.
+	 */
+	public void clear();
+
+	/** Returns the number of good (non-spam) occurences of the
+	 *  token at the given index.
+	 *
+	 * @param index	The index of the token.
+	 *
+	 * @return The good count of the token.
+	 */
+	public int getGoodCount(int index);
+
+	/** Sets the number of good (non-spam) occurences of the
+	 *  token at the given index.
+	 *
+	 * @param index	The index of the token.
+	 * @param count	The new good count of the token.
+	 */
+	public void setGoodCount(int index, int count);
+
+	/** Returns the number of bad (spam) occurences of the token
+	 *  at the given index.
+	 *
+	 * @param index	The index of the token.
+	 *
+	 * @return The bad count of the token.
+	 */
+	public int getBadCount(int index);
+
+	/** Sets the number of bad (spam) occurences of the token at
+	 *  the given index.
+	 *
+	 * @param index	The index of the token.
+	 * @param count	The new bad count of the token.
+	 */
+	public void setBadCount(int index, int count);
+
+	/** Returns the array which holds the bytes of the token at
+	 *  the given index. This is the store's own backing array,
+	 *  so it must not be modified; use it together with
+	 *  getTokenOffset() and getTokenLength() to read the token
+	 *  without copying it.
+	 *
+	 * @param index	The index of the token.
+	 *
+	 * @return The array holding the token's bytes.
+	 */
+	public byte[] getTokenArray(int index);
+
+	/** Returns the offset of the token at the given index within
+	 *  the array returned by getTokenArray().
+	 *
+	 * @param index	The index of the token.
+	 *
+	 * @return The offset of the token's bytes.
+	 */
+	public int getTokenOffset(int index);
+
+	/** Returns the length in bytes of the token at the given
+	 *  index.
+	 *
+	 * @param index	The index of the token.
+	 *
+	 * @return The length in bytes of the token.
+	 */
+	public int getTokenLength(int index);
+
+	/** Returns a copy of the bytes of the token at the given
+	 *  index.
+	 *
+	 * @param index	The index of the token.
+	 *
+	 * @return A new array containing the token's bytes.
+	 */
+	public byte[] getTokenBytes(int index);
+
+	/** Decodes the token at the given index into a String with
+	 *  Globals.decodeToken(). This allocates, so it should only
+	 *  be used when the token is actually shown to someone.
+	 *
+	 * @param index	The index of the token.
+	 *
+	 * @return The token as a String.
+	 */
+	public String getTokenString(int index);
+
+	/** Returns the indices of all tokens in this store, sorted
+	 *  in ascending order of their bytes (compared as unsigned
+	 *  values). The returned array belongs to the caller, and
+	 *  becomes stale once tokens are added or removed.
+	 *
+	 * @return The sorted token indices.
+	 */
+	public int[] getSortedIndices();
+}
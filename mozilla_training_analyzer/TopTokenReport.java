@@ -0,0 +1,374 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/** Finds the K tokens that score highest on some metric, such
+ *  as the 500 most spammy tokens, without sorting the whole
+ *  store the way the table does.
+ *
+ *  The tokens are run past a min-heap which never holds more
+ *  than K of them: its root is the weakest token kept so far,
+ *  and a new token only gets in by beating it. That takes
+ *  O(n log K) time and O(K) space, however big the store is.
+ *  When every token has been seen, the K survivors are sorted
+ *  in place inside the heap's own arrays and written out one by
+ *  one.
+ *
+ *  Ties are broken by the bytes of the tokens, so a report is
+ *  the same whatever order the tokens were loaded in.
+ */
+public class TopTokenReport {
+
+	/** Ranks tokens by their good count.
+	 */
+	public static final int METRIC_GOOD = 1;
+
+	/** Ranks tokens by their bad count.
+	 */
+	public static final int METRIC_BAD = 2;
+
+	/** Ranks tokens by their good count as a percentage of the
+	 *  good messages, as in the Good % column of the table.
+	 */
+	public static final int METRIC_GOOD_PERCENT = 3;
+
+	/** Ranks tokens by their bad count as a percentage of the
+	 *  bad messages, as in the Bad % column of the table.
+	 */
+	public static final int METRIC_BAD_PERCENT = 4;
+
+	/** Ranks tokens by how likely a message containing them is to
+	 *  be spam. See getSpamProbability().
+	 */
+	public static final int METRIC_SPAM = 5;
+
+	/** The names of the metrics, as given on the command-line,
+	 *  indexed by metric number.
+	 */
+	private static final String[] METRIC_NAMES = {
+		null, "good", "bad", "good%", "bad%", "spam"
+	};
+
+	// No instantiation of this class, everything is static.
+	private TopTokenReport() {
+	}
+
+	/** Looks up a metric by the name used on the command-line.
+	 *
+	 * @param name	One of good, bad, good%, bad% or spam, in any
+	 * 				case.
+	 *
+	 * @return The matching METRIC_ constant, or -1 if there is no
+	 * 			metric with that name.
+	 */
+	public static int parseMetric(String name) {
+
+		for (int i = 1; i < METRIC_NAMES.length; i++) {
+
+			if (METRIC_NAMES[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/** Works out the probability that a message containing the
+	 *  given token is spam, from how often the token turns up in
+	 *  each kind of message:
+	 *
+	 *  <pre>
+	 *  p = b / (g + b), where g = good count / good messages
+	 *                     and b = bad count / bad messages
+	 *  </pre>
+	 *
+	 *  Each ratio is capped at 1, since a token counted more often
+	 *  than there were messages is still only in every message.
+	 *  A token which was never seen gets 0.5.
+	 *
+	 * @param trainer	The TrainingData holding the token.
+	 * @param index	The index of the token in the store.
+	 *
+	 * @return The spam probability, from 0 to 1.
+	 */
+	public static double getSpamProbability(TrainingData trainer, int index) {
+
+		TokenStore tokenStore = trainer.getTokenStore();
+
+		double goodRatio = Math.min(1.0, ratio(tokenStore.getGoodCount(index), trainer.getGoodMessageCount()));
+		double badRatio = Math.min(1.0, ratio(tokenStore.getBadCount(index), trainer.getBadMessageCount()));
+
+		if (goodRatio + badRatio == 0) {
+			return 0.5;
+		}
+
+		return badRatio / (goodRatio + badRatio);
+	}
+
+	/** Works out the value of a metric for a token.
+	 *
+	 * @param trainer	The TrainingData holding the token.
+	 * @param metric	One of the METRIC_ constants.
+	 * @param index	The index of the token in the store.
+	 *
+	 * @return The value of the metric.
+	 */
+	public static double getMetricValue(TrainingData trainer, int metric, int index) {
+
+		TokenStore tokenStore = trainer.getTokenStore();
+
+		switch (metric) {
+
+			case METRIC_GOOD:
+				return tokenStore.getGoodCount(index);
+
+			case METRIC_BAD:
+				return tokenStore.getBadCount(index);
+
+			case METRIC_GOOD_PERCENT:
+				return 100 * ratio(tokenStore.getGoodCount(index), trainer.getGoodMessageCount());
+
+			case METRIC_BAD_PERCENT:
+				return 100 * ratio(tokenStore.getBadCount(index), trainer.getBadMessageCount());
+
+			case METRIC_SPAM:
+				return getSpamProbability(trainer, index);
+
+			default:
+				throw new IllegalArgumentException("Unknown metric: " + metric);
+		}
+	}
+
+	/** Finds the K highest scoring tokens for a metric.
+	 *
+	 * @param trainer	The TrainingData to look through.
+	 * @param metric	One of the METRIC_ constants.
+	 * @param k	The number of tokens wanted.
+	 *
+	 * @return The indices of at most k tokens, best first.
+	 */
+	public static int[] findTop(TrainingData trainer, int metric, int k) {
+
+		if ((metric < METRIC_GOOD) || (metric > METRIC_SPAM)) {
+			throw new IllegalArgumentException("Unknown metric: " + metric);
+		}
+
+		TokenStore tokenStore = trainer.getTokenStore();
+		int size = tokenStore.size();
+
+		k = Math.max(0, Math.min(k, size));
+
+		// The heap keeps each token's score beside its index, so
+		// that no score is ever worked out twice.
+		int[] heap = new int[k];
+		double[] scores = new double[k];
+		int heapSize = 0;
+
+		for (int i = 0; i < size; i++) {
+
+			double score = getMetricValue(trainer, metric, i);
+
+			if (heapSize < k) {
+
+				// Still filling up, everything gets in.
+				heap[heapSize] = i;
+				scores[heapSize] = score;
+				siftUp(tokenStore, heap, scores, heapSize);
+				heapSize++;
+
+			} else if ((k > 0) && isWeaker(tokenStore, heap[0], scores[0], i, score)) {
+
+				// Better than the weakest kept so far, so it
+				// takes its place.
+				heap[0] = i;
+				scores[0] = score;
+				siftDown(tokenStore, heap, scores, 0, heapSize);
+			}
+		}
+
+		// Sort in place by moving the weakest to the end again
+		// and again, which leaves the best at the front.
+		for (int end = heapSize - 1; end > 0; end--) {
+
+			swap(heap, scores, 0, end);
+			siftDown(tokenStore, heap, scores, 0, end);
+		}
+
+		return heap;
+	}
+
+	/** Writes a report of the K highest scoring tokens for a
+	 *  metric as tab-separated text: a header line, then one line
+	 *  per token with its rank, the token, its good count, good %,
+	 *  bad count, bad % and spam probability.
+	 *
+	 * @param trainer	The TrainingData to look through.
+	 * @param metric	One of the METRIC_ constants.
+	 * @param k	The number of tokens wanted.
+	 * @param out	The stream to write the report to. It is
+	 * 				flushed but not closed.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the report.
+	 */
+	public static void writeReport(TrainingData trainer, int metric, int k, OutputStream out) throws IOException {
+
+		int[] top = findTop(trainer, metric, k);
+
+		TokenStore tokenStore = trainer.getTokenStore();
+		BufferedOutputStream outStream = new BufferedOutputStream(out, TrainingData.OUTPUT_BUFFER_SIZE);
+
+		// Always use a dot, whatever the locale.
+		DecimalFormat format = new DecimalFormat("0.#####", new DecimalFormatSymbols(Locale.US));
+
+		outStream.write(("# Top " + top.length + " tokens by " + METRIC_NAMES[metric] + "\n").getBytes());
+		outStream.write("rank\ttoken\tgood\tgood%\tbad\tbad%\tspam\n".getBytes());
+
+		for (int rank = 0; rank < top.length; rank++) {
+
+			int index = top[rank];
+
+			StringBuffer line = new StringBuffer(64);
+
+			outStream.write(Integer.toString(rank + 1).getBytes());
+			outStream.write('\t');
+
+			// The token goes out as it is stored.
+			outStream.write(tokenStore.getTokenArray(index),
+					tokenStore.getTokenOffset(index),
+					tokenStore.getTokenLength(index));
+
+			line.append('\t').append(tokenStore.getGoodCount(index));
+			line.append('\t').append(format.format(getMetricValue(trainer, METRIC_GOOD_PERCENT, index)));
+			line.append('\t').append(tokenStore.getBadCount(index));
+			line.append('\t').append(format.format(getMetricValue(trainer, METRIC_BAD_PERCENT, index)));
+			line.append('\t').append(format.format(getSpamProbability(trainer, index)));
+			line.append('\n');
+
+			outStream.write(line.toString().getBytes());
+		}
+
+		outStream.flush();
+	}
+
+	/** Works out a count as a share of a message count. A message
+	 *  count of zero gives 0, just like the table.
+	 */
+	private static double ratio(int count, int messageCount) {
+
+		if (messageCount <= 0) {
+			return 0;
+		}
+
+		return (double) count / messageCount;
+	}
+
+	/** Checks whether token a ranks below token b: it has a lower
+	 *  score, or the same score and its bytes sort after b's.
+	 */
+	private static boolean isWeaker(TokenStore tokenStore, int a, double scoreA, int b, double scoreB) {
+
+		if (scoreA != scoreB) {
+			return scoreA < scoreB;
+		}
+
+		return TokenSorter.compare(tokenStore, a, b) > 0;
+	}
+
+	/** Moves the entry at the given position up the heap until
+	 *  its parent is weaker than it.
+	 */
+	private static void siftUp(TokenStore tokenStore, int[] heap, double[] scores, int pos) {
+
+		while (pos > 0) {
+
+			int parent = (pos - 1) >>> 1;
+
+			if (!isWeaker(tokenStore, heap[pos], scores[pos], heap[parent], scores[parent])) {
+				return;
+			}
+
+			swap(heap, scores, pos, parent);
+			pos = parent;
+		}
+	}
+
+	/** Moves the entry at the given position down the first size
+	 *  entries of the heap until both of its children are
+	 *  stronger than it.
+	 */
+	private static void siftDown(TokenStore tokenStore, int[] heap, double[] scores, int pos, int size) {
+
+		while (true) {
+
+			int weakest = pos;
+			int left = 2 * pos + 1;
+			int right = left + 1;
+
+			if ((left < size) && isWeaker(tokenStore, heap[left], scores[left], heap[weakest], scores[weakest])) {
+				weakest = left;
+			}
+
+			if ((right < size) && isWeaker(tokenStore, heap[right], scores[right], heap[weakest], scores[weakest])) {
+				weakest = right;
+			}
+
+			if (weakest == pos) {
+				return;
+			}
+
+			swap(heap, scores, pos, weakest);
+			pos = weakest;
+		}
+	}
+
+	/** Swaps two entries of the heap.
+	 */
+	private static void swap(int[] heap, double[] scores, int a, int b) {
+
+		int index = heap[a];
+		heap[a] = heap[b];
+		heap[b] = index;
+
+		double score = scores[a];
+		scores[a] = scores[b];
+		scores[b] = score;
+	}
+}
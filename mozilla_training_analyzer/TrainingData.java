@@ -36,8 +36,8 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.TreeSet;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 /** A class which represents all of the information that is found
  *  within a Mozilla Bayesian Filter Training file.
@@ -79,24 +79,28 @@ public class TrainingData {
 	 */
 	private int badMessageCount = -1;
 
-	/** The number of good tokens found within this data
-	 * 	structure.
+	/** The store of tokens found within this data structure.
 	 */
-	private int numGoodTokens = -1;
+	private TokenStore tokenStore = null;
 
-	/** The number of bad tokens found within this data structure.
+	/** The training file writer of each thread. A writer keeps its
+	 *  buffers between files, so reusing one means that saving
+	 *  again only allocates when the file has grown.
 	 */
-	private int numBadTokens = -1;
+	private static final ThreadLocal<TrainingFileWriter> fileWriter = new ThreadLocal<TrainingFileWriter>() {
 
-	/** The list of tokens found within this data structure.
-	 */
-	private TreeSet tokenSet = null;
+		protected TrainingFileWriter initialValue() {
+			return new TrainingFileWriter();
+		}
+	};
 
 	/** Creates a new, empty TrainingData.
 	 */
 	public TrainingData() {
-		// No need to do anything, this class will be populated later.
 
+		// Start out with an empty token store, this class will be
+		// populated later.
+		tokenStore = new OpenAddressingTokenStore();
 	}
 
 	/** Creates a new TrainingData which is populated with the
@@ -106,56 +110,50 @@ public class TrainingData {
 	 * 						by this set of tokens.
 	 * @param badMsgCount	The number of bad messages processed
 	 * 						by this set of tokens.
-	 * @param newTokenSet	The set of tokens found within the
+	 * @param newTokenStore	The store of tokens found within the
 	 * 						represented training file.
 	 */
 	public TrainingData(
 		int goodMsgCount,
 		int badMsgCount,
-		TreeSet newTokenSet) {
+		TokenStore newTokenStore) {
 
 		goodMessageCount = goodMsgCount;
 		badMessageCount = badMsgCount;
-		tokenSet = newTokenSet;
+		tokenStore = newTokenStore;
 	}
 
 	/** This method searches through the set of tokens in this
-	 * 	TrainingData and validates the good and bad token counts.
-	 *  Please note that this method should be called after any
-	 * 	changes to this TrainingData's token set, otherwise the
-	 * 	token counts will be out-of-date.
+	 * 	TrainingData and checks the good and bad token counts.
+	 *  The token store keeps those counts up to date by itself
+	 *  as tokens are added, removed and edited, so there is no
+	 *  need to call this after changing the tokens. It is a
+	 *  full rescan, only meant for verifying the counts, e.g.
+	 *  while debugging a new TokenStore.
+	 *
+	 * @return true if the store's counts match a rescan of its
+	 * 			tokens, false if they are out of step.
 	 */
-	public void validateTokenCount() {
+	public boolean validateTokenCount() {
 
 		int goodTokenCount = 0;
 		int badTokenCount = 0;
 
-		// Get an iterator for our set of tokens.
-		Iterator tokenIter = tokenSet.iterator();
-
-		// Create this here to avoid unnecessary object creation
-		// inside the loop.
-		MozillaSpamToken tempToken = null;
-
-		// Iterate through the entire TreeSet and count up both of
-		// the token counts.
-		while (tokenIter.hasNext()) {
+		// Walk the count columns of the store and count up both
+		// of the token counts.
+		for (int i = 0; i < tokenStore.size(); i++) {
 
-			// Get a reference to the next token.
-			tempToken = (MozillaSpamToken) tokenIter.next();
-
-			if (tempToken.getGoodTokenCount() > 0) {
+			if (tokenStore.getGoodCount(i) > 0) {
 				goodTokenCount++;
 			}
 
-			if (tempToken.getBadTokenCount() > 0) {
+			if (tokenStore.getBadCount(i) > 0) {
 				badTokenCount++;
 			}
 		}
 
-		// Set the new, validated token counts.
-		numGoodTokens = goodTokenCount;
-		numBadTokens = badTokenCount;
+		return (goodTokenCount == tokenStore.getNumGoodTokens()) &&
+			(badTokenCount == tokenStore.getNumBadTokens());
 	}
 
 	/** This method removes all tokens which have a good count
@@ -178,73 +176,58 @@ public class TrainingData {
 	 * 						assuming they also satisfy goodCount.
 	 * 						To disable comparing the bad count,
 	 * 						pass in a parameter which is &lt;= 0.
+	 *
+	 * @return What was removed from the good and bad sections.
 	 */
-	public void removeTokens(int goodCount, int badCount) {
-
-		boolean goodFlag = true;
-		boolean badFlag = true;
+	public PruneResult removeTokens(int goodCount, int badCount) {
 
-		// Check if the good flag is disabled.
-		if (goodCount <= 0) {
+		// Mark all of the matching tokens from the count columns,
+		// then take them all out in one compacting pass.
+		return TokenPruner.prune(tokenStore, TokenPredicate.removable(goodCount, badCount).select(this));
+	}
 
-			goodFlag = false;
-		}
+	/** Checks whether a token with the given counts would be
+	 * 	removed by removeTokens(goodCount, badCount). This lets
+	 *  code which streams tokens rather than holding them in a
+	 *  TrainingData apply exactly the same rule.
+	 *
+	 * @param tokenGoodCount	The good count of the token.
+	 * @param tokenBadCount	The bad count of the token.
+	 * @param goodCount	The good threshold, or a number &lt;= 0
+	 * 						if the good count is not compared.
+	 * @param badCount		The bad threshold, or a number &lt;= 0
+	 * 						if the bad count is not compared.
+	 *
+	 * @return true if the token should be removed, false if it is
+	 * 			a keeper.
+	 */
+	public static boolean isRemovable(
+		int tokenGoodCount,
+		int tokenBadCount,
+		int goodCount,
+		int badCount) {
 
-		// Check if the bad flag is disabled.
-		if (badCount <= 0) {
+		// With both thresholds disabled, everything is kept.
+		if ((goodCount <= 0) && (badCount <= 0)) {
 
-			badFlag = false;
+			return false;
 		}
 
-		if (!goodFlag && !badFlag) {
+		// Check if the token's goodCount is too large for it
+		// to be removed.
+		if ((goodCount > 0) && (tokenGoodCount >= goodCount)) {
 
-			// We've disabled both, so just exit.
-			return;
+			return false;
 		}
 
-		// Get an iterator for our set of tokens.
-		Iterator tokenIter = tokenSet.iterator();
-
-		// Create this here to avoid unnecessary object creation
-		// inside the loop.
-		MozillaSpamToken tempToken = null;
-
-		// Iterate through the entire TreeSet and remove all of
-		// the matching tokens.
-		while (tokenIter.hasNext()) {
-
-			// Get a reference to the next token.
-			tempToken = (MozillaSpamToken) tokenIter.next();
-
-			// Check if the token's goodCount is too large for it
-			// to be removed.
-			if (goodFlag &&
-				(tempToken.getGoodTokenCount() >= goodCount)
-			) {
-
-				// This token is a keeper, so just go to the next
-				// iteration of the loop.
-				continue;
-
-			// Check if the token's badCount is too large for it
-			// to be removed.
-			} else if (badFlag &&
-						(tempToken.getBadTokenCount() >= badCount)) {
-
-				// This token is a keeper, so just go to the next
-				// iteration of the loop.
-				continue;
+		// Check if the token's badCount is too large for it
+		// to be removed.
+		if ((badCount > 0) && (tokenBadCount >= badCount)) {
 
-			} else {
-
-				// If we've gotten here, then the token is too
-				// small. Remove it from the list.
-				tokenIter.remove();
-			}
+			return false;
 		}
 
-		// Revalidate the token count now that we're done.
-		validateTokenCount();
+		return true;
 	}
 
 	/** Returns the number of bad messages processed by this set
@@ -274,7 +257,7 @@ public class TrainingData {
 	 * 			of tokens.
 	 */
 	public int getNumBadTokens() {
-		return numBadTokens;
+		return tokenStore.getNumBadTokens();
 	}
 
 	/** Returns the number of good tokens contained within this
@@ -284,15 +267,177 @@ public class TrainingData {
 	 * 			set of tokens.
 	 */
 	public int getNumGoodTokens() {
-		return numGoodTokens;
+		return tokenStore.getNumGoodTokens();
+	}
+
+	/** Returns the store of tokens that this class represents.
+	 *
+	 * @return The store of tokens that this class represents.
+	 */
+	public TokenStore getTokenStore() {
+		return tokenStore;
+	}
+
+	/** Returns the number of distinct tokens contained within
+	 * 	this set of tokens.
+	 *
+	 * @return The number of distinct tokens contained within
+	 * 			this set of tokens.
+	 */
+	public int getNumTokens() {
+		return tokenStore.size();
+	}
+
+	/** Returns a snapshot of all of the tokens that this class
+	 * 	represents, sorted by token. The returned tokens are
+	 *  copies, so changing them does not change this
+	 *  TrainingData - use the token methods of this class for
+	 *  that.
+	 *
+	 * @return A sorted array of copies of this TrainingData's
+	 * 			tokens.
+	 */
+	public MozillaSpamToken[] getSortedTokens() {
+
+		int[] sortedIndices = tokenStore.getSortedIndices();
+		MozillaSpamToken[] sortedTokens = new MozillaSpamToken[sortedIndices.length];
+
+		for (int i = 0; i < sortedIndices.length; i++) {
+
+			sortedTokens[i] = new MozillaSpamToken(
+				tokenStore.getTokenString(sortedIndices[i]),
+				tokenStore.getGoodCount(sortedIndices[i]),
+				tokenStore.getBadCount(sortedIndices[i]));
+		}
+
+		return sortedTokens;
+	}
+
+	/** Checks whether the given token is contained within this
+	 * 	set of tokens.
+	 *
+	 * @param token	The token String to look for.
+	 *
+	 * @return true if the token is in this set of tokens, false
+	 * 			otherwise.
+	 */
+	public boolean containsToken(String token) {
+		return tokenStore.indexOf(token) != -1;
+	}
+
+	/** Adds the given counts to the given token, adding the token
+	 * 	to this set of tokens first if it isn't there yet.
+	 *
+	 * @param token	The token String to add.
+	 * @param goodCount	The number of good occurences to add.
+	 * @param badCount		The number of bad occurences to add.
+	 */
+	public void addToken(String token, int goodCount, int badCount) {
+		tokenStore.add(token, goodCount, badCount);
+	}
+
+	/** Removes the given token from this set of tokens. Nothing
+	 * 	happens if the token isn't in the set.
+	 *
+	 * @param token	The token String to remove.
+	 */
+	public void removeToken(String token) {
+
+		int index = tokenStore.indexOf(token);
+
+		if (index != -1) {
+			tokenStore.remove(index);
+		}
+	}
+
+	/** Sets the number of good (non-spam) occurences of the given
+	 * 	token. Nothing happens if the token isn't in the set.
+	 *
+	 * @param token	The token String to change.
+	 * @param newCount	The new good count of the token.
+	 */
+	public void setGoodTokenCount(String token, int newCount) {
+
+		int index = tokenStore.indexOf(token);
+
+		if (index != -1) {
+			tokenStore.setGoodCount(index, newCount);
+		}
+	}
+
+	/** Sets the number of bad (spam) occurences of the given
+	 * 	token. Nothing happens if the token isn't in the set.
+	 *
+	 * @param token	The token String to change.
+	 * @param newCount	The new bad count of the token.
+	 */
+	public void setBadTokenCount(String token, int newCount) {
+
+		int index = tokenStore.indexOf(token);
+
+		if (index != -1) {
+			tokenStore.setBadCount(index, newCount);
+		}
 	}
 
-	/** Returns the set of tokens that this class represents.
+	/** Checks whether the token with the given bytes is contained
+	 * 	within this set of tokens. Unlike containsToken(String),
+	 *  this finds any token, including one which is not valid
+	 *  UTF-8 and so has no String of its own.
 	 *
-	 * @return The set of tokens that this class represents.
+	 * @param token	The bytes of the token to look for.
+	 *
+	 * @return true if the token is in this set of tokens, false
+	 * 			otherwise.
+	 */
+	public boolean containsToken(byte[] token) {
+		return tokenStore.indexOf(token, 0, token.length) != -1;
+	}
+
+	/** Removes the token with the given bytes from this set of
+	 * 	tokens. Nothing happens if the token isn't in the set.
+	 *
+	 * @param token	The bytes of the token to remove.
 	 */
-	public TreeSet getTokenSet() {
-		return tokenSet;
+	public void removeToken(byte[] token) {
+
+		int index = tokenStore.indexOf(token, 0, token.length);
+
+		if (index != -1) {
+			tokenStore.remove(index);
+		}
+	}
+
+	/** Sets the number of good (non-spam) occurences of the token
+	 * 	with the given bytes. Nothing happens if the token isn't
+	 *  in the set.
+	 *
+	 * @param token	The bytes of the token to change.
+	 * @param newCount	The new good count of the token.
+	 */
+	public void setGoodTokenCount(byte[] token, int newCount) {
+
+		int index = tokenStore.indexOf(token, 0, token.length);
+
+		if (index != -1) {
+			tokenStore.setGoodCount(index, newCount);
+		}
+	}
+
+	/** Sets the number of bad (spam) occurences of the token with
+	 * 	the given bytes. Nothing happens if the token isn't in the
+	 *  set.
+	 *
+	 * @param token	The bytes of the token to change.
+	 * @param newCount	The new bad count of the token.
+	 */
+	public void setBadTokenCount(byte[] token, int newCount) {
+
+		int index = tokenStore.indexOf(token, 0, token.length);
+
+		if (index != -1) {
+			tokenStore.setBadCount(index, newCount);
+		}
 	}
 
 	/** Sets the number of bad messages processed by this set of
@@ -315,15 +460,13 @@ public class TrainingData {
 		goodMessageCount = i;
 	}
 
-	/** Changes the set of tokens that this class represents.
-	 * 	After calling this method, you should also call
-	 * 	validateTokenCount().
+	/** Changes the store of tokens that this class represents.
 	 *
-	 * @param set	The new set of tokens that this class
+	 * @param store	The new store of tokens that this class
 	 * 				represents.
 	 */
-	public void setTokenSet(TreeSet set) {
-		tokenSet = set;
+	public void setTokenStore(TokenStore store) {
+		tokenStore = store;
 	}
 
 	/** Writes output to the given BufferedOutputStream which
@@ -338,99 +481,45 @@ public class TrainingData {
 	 */
 	public void outputTrainingDataFileContents(BufferedOutputStream outStream) throws IOException {
 
-		// This is a good idea so that we don't write bad data to
-		// the training data file. It's not strictly necessary
-		// if the class has been used right, however I prefer
-		// to lose a few cycles to have added robustness.
-		validateTokenCount();
-
-		// Write the necessary file header to the output file.
-		outStream.write(TrainingData.firstHdrByte);
-		outStream.write(TrainingData.secondHdrByte);
-		outStream.write(TrainingData.thirdHdrByte);
-		outStream.write(TrainingData.fourthHdrByte);
-
-		// Write out the number of good messages processed
-		outStream.write(Globals.makeBytes(goodMessageCount), 0, 4);
-
-		// Write out the number of bad messages processed
-		outStream.write(Globals.makeBytes(badMessageCount), 0, 4);
-
-		// Write out the number of good tokens to be written
-		outStream.write(Globals.makeBytes(numGoodTokens), 0, 4);
-
-		// Get an iterator for our set of tokens.
-		Iterator tokenIter = tokenSet.iterator();
-
-		// Create this here to avoid unnecessary object creation
-		// inside the loop.
-		MozillaSpamToken tempToken = null;
-		String tempString = null;
-
-		// Iterate through the entire TreeSet and write out all
-		// tokens with a GoodTokenCount > 0
-		while (tokenIter.hasNext()) {
-
-			// Get a reference to the next token.
-			tempToken = (MozillaSpamToken) tokenIter.next();
-
-			if (tempToken.getGoodTokenCount() > 0) {
-
-				// First, write out the number of good occurences of this token
-				outStream.write(
-					Globals.makeBytes(tempToken.getGoodTokenCount()),
-					0,
-					4);
-
-				// Get a reference to this string for ease of use
-				tempString = tempToken.getTokenString();
-
-				// Then, write out the length of the token string
-				outStream.write(Globals.makeBytes(tempString.getBytes().length), 
-						0, 4);
-				
-				// Finally, write out the token itself.
-				outStream.write(tempString.getBytes(), 
-						0, 
-						tempString.getBytes().length);
-			}
-
-		}
-
-		// Write out the number of bad tokens to be written
-		outStream.write(Globals.makeBytes(numBadTokens));
-
-		// Recreate our iterator for the second loop-through.
-		tokenIter = tokenSet.iterator();
-
-		// Iterate through the entire TreeSet and write out all
-		// tokens with a BadTokenCount > 0
-		while (tokenIter.hasNext()) {
-
-			// Get a reference to the next token.
-			tempToken = (MozillaSpamToken) tokenIter.next();
-
-			if (tempToken.getBadTokenCount() > 0) {
+		// The writer sizes both sections up front and fills them
+		// in with a single walk over the sorted view, through a
+		// reusable ByteBuffer.
+		fileWriter.get().write(this, outStream);
+	}
 
-				// First, write out the number of bad occurences of this token
-				outStream.write(
-					Globals.makeBytes(tempToken.getBadTokenCount()),
-					0,
-					4);
+	/** Writes this TrainingData's information to the given
+	 *  FileChannel as a well-formatted Mozilla Bayesian Filter
+	 *  Training file. The records are built up in large direct
+	 *  buffers and go out in gathering writes, which is much
+	 *  faster than a stream for big files.
+	 *
+	 * @param channel	The FileChannel to write the data to. The
+	 * 					file is written from its beginning.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						generating the output data.
+	 */
+	public void outputTrainingDataFileContents(FileChannel channel) throws IOException {
 
-				// Get a reference to this string for ease of use
-				tempString = tempToken.getTokenString();
+		fileWriter.get().write(this, channel);
+	}
 
-				// Then, write out the length of the token string
-				outStream.write(Globals.makeBytes(tempString.getBytes().length),
-						0, 4);
+	/** Writes the bytes of the token at the given index of the
+	 * 	token store to the given stream, without decoding them
+	 *  into a String first.
+	 *
+	 * @param outStream	The BufferedOutputStream to write the
+	 * 						token to.
+	 * @param index	The index of the token in the token store.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the token.
+	 */
+	private void writeToken(BufferedOutputStream outStream, int index) throws IOException {
 
-				// Finally, write out the token itself.
-				outStream.write(tempString.getBytes(), 
-						0, 
-						tempString.getBytes().length);
-			}
-		}
+		outStream.write(tokenStore.getTokenArray(index),
+				tokenStore.getTokenOffset(index),
+				tokenStore.getTokenLength(index));
 	}
 
 	/** Outputs the data represented by this TrainingData as a
@@ -451,22 +540,27 @@ public class TrainingData {
 		outStream.write(Integer.toString(badMessageCount).getBytes());
 		outStream.write("\n\nList of tokens\n--------------\n".getBytes());
 
+		// Get the sorted view of our set of tokens.
+		int[] sortedIndices = tokenStore.getSortedIndices();
+
 		// Create this outside the loop to avoid unnecessary
 		// creation of a bunch of objects inside the loop.
-		Object tempObj = null;
-
-		// Get an iterator for our set of tokens.
-		Iterator tokenIter = tokenSet.iterator();
+		int index = -1;
 
 		// Keep going while elements remain in the list.
-		while (tokenIter.hasNext()) {
-
-			// Get a reference to the next token.
-			tempObj = tokenIter.next();
-
-			// Write that token's info to the output stream.
-			outStream.write(tempObj.toString().getBytes());
-			outStream.write('\n');
+		for (int i = 0; i < sortedIndices.length; i++) {
+
+			index = sortedIndices[i];
+
+			// Write that token's info to the output stream, in
+			// the same form as MozillaSpamToken.toString().
+			outStream.write('[');
+			writeToken(outStream, index);
+			outStream.write(" - ".getBytes());
+			outStream.write(Integer.toString(tokenStore.getGoodCount(index)).getBytes());
+			outStream.write(" good tokens, ".getBytes());
+			outStream.write(Integer.toString(tokenStore.getBadCount(index)).getBytes());
+			outStream.write(" bad tokens]\n".getBytes());
 		}
 	}
 
@@ -487,7 +581,9 @@ public class TrainingData {
 		outStream.write("<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">\n".getBytes());
 		outStream.write("<html lang=\"en\">\n".getBytes());
 		outStream.write("	<head>\n".getBytes());
-		outStream.write("		<meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-1\">\n".getBytes());
+		// Tokens are written out as their raw bytes, which are
+		// UTF-8 for anything Mozilla wrote.
+		outStream.write("		<meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">\n".getBytes());
 		outStream.write("		<title>\n".getBytes());
 		outStream.write("			Mozilla Bayesian Filter Tokens\n".getBytes());
 		outStream.write("		</title>\n".getBytes());
@@ -526,26 +622,25 @@ public class TrainingData {
 		outStream.write("<th><strong>Good</strong></th>".getBytes());
 		outStream.write("<th><strong>Bad</strong></th></tr>\n".getBytes());
 
+		// Get the sorted view of our set of tokens.
+		int[] sortedIndices = tokenStore.getSortedIndices();
+
 		// Create this outside the loop to avoid unnecessary
 		// creation of a bunch of objects inside the loop.
-		MozillaSpamToken tempToken = null;
-
-		// Get an iterator for our set of tokens.
-		Iterator tokenIter = tokenSet.iterator();
+		int index = -1;
 
 		// Keep going while elements remain in the list.
-		while (tokenIter.hasNext()) {
+		for (int i = 0; i < sortedIndices.length; i++) {
 
-			// Get a reference to the next token.
-			tempToken = (MozillaSpamToken) tokenIter.next();
+			index = sortedIndices[i];
 
 			// Write that token's info to the output stream.
 			outStream.write("			<tr><td>".getBytes());
-			outStream.write(tempToken.getTokenString().getBytes());
+			writeToken(outStream, index);
 			outStream.write("</td><td>".getBytes());
-			outStream.write(Integer.toString(tempToken.getGoodTokenCount()).getBytes());
+			outStream.write(Integer.toString(tokenStore.getGoodCount(index)).getBytes());
 			outStream.write("</td><td>".getBytes());
-			outStream.write(Integer.toString(tempToken.getBadTokenCount()).getBytes());
+			outStream.write(Integer.toString(tokenStore.getBadCount(index)).getBytes());
 			outStream.write("</td></tr>\n".getBytes());
 		}
 
@@ -582,44 +677,109 @@ public class TrainingData {
 		// straightforward.
 
 		// Print a header to the XML file.
-		outStream.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n".getBytes());
-		outStream.write("<!DOCTYPE tokenfile SYSTEM \"trainer_xml.dtd\">".getBytes());
-		outStream.write("<tokenfile>\n".getBytes());
-		outStream.write("	<good_msgs>".getBytes());
-		outStream.write(Integer.toString(goodMessageCount).getBytes());
-		outStream.write("</good_msgs>\n".getBytes());
-		outStream.write("	<bad_msgs>".getBytes());
-		outStream.write(Integer.toString(badMessageCount).getBytes());
-		outStream.write("</bad_msgs>\n".getBytes());
+		writeXMLHeader(outStream, goodMessageCount, badMessageCount);
+
+		// Get the sorted view of our set of tokens.
+		int[] sortedIndices = tokenStore.getSortedIndices();
 
 		// Create this outside the loop to avoid unnecessary
 		// creation of a bunch of objects inside the loop.
-		MozillaSpamToken tempToken = null;
-
-		// Get an iterator for our set of tokens.
-		Iterator tokenIter = tokenSet.iterator();
+		int index = -1;
 
 		// Keep going while elements remain in the list.
-		while (tokenIter.hasNext()) {
+		for (int i = 0; i < sortedIndices.length; i++) {
 
-			// Get a reference to the next token.
-			tempToken = (MozillaSpamToken) tokenIter.next();
+			index = sortedIndices[i];
 
 			// Write that token's info to the output stream.
-			outStream.write("	<token>\n".getBytes());
-			outStream.write("		<name>".getBytes());
-			outStream.write(tempToken.getTokenString().getBytes());
-			outStream.write("</name>\n".getBytes());
-			outStream.write("		<good>".getBytes());
-			outStream.write(Integer.toString(tempToken.getGoodTokenCount()).getBytes());
-			outStream.write("</good>\n".getBytes());
-			outStream.write("		<bad>".getBytes());
-			outStream.write(Integer.toString(tempToken.getBadTokenCount()).getBytes());
-			outStream.write("</bad>\n".getBytes());
-			outStream.write("	</token>\n".getBytes());
+			writeXMLToken(outStream,
+				tokenStore.getTokenArray(index),
+				tokenStore.getTokenOffset(index),
+				tokenStore.getTokenLength(index),
+				tokenStore.getGoodCount(index),
+				tokenStore.getBadCount(index));
 		}
 
-		// Add a footer to the text file.
+		// Add a footer to the XML file.
+		writeXMLFooter(outStream);
+	}
+
+	/** Writes the header of an XML document, up to and including
+	 *  the message counts. This and writeXMLToken() and
+	 *  writeXMLFooter() are shared with StreamingTokenWriter, so
+	 *  that there is only one copy of the markup.
+	 *
+	 * @param outStream	The stream to write the header to.
+	 * @param goodMsgCount	The number of good messages.
+	 * @param badMsgCount	The number of bad messages.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the stream.
+	 */
+	static void writeXMLHeader(
+			OutputStream outStream,
+			int goodMsgCount,
+			int badMsgCount
+	) throws IOException {
+
+		// Tokens are written out as their raw bytes, and
+		// ISO-8859-1 maps every byte to a character of its own,
+		// so the readers can always turn the names back into
+		// exactly the same bytes.
+		outStream.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n".getBytes());
+		outStream.write("<!DOCTYPE tokenfile SYSTEM \"trainer_xml.dtd\">".getBytes());
+		outStream.write("<tokenfile>\n".getBytes());
+		outStream.write("	<good_msgs>".getBytes());
+		outStream.write(Integer.toString(goodMsgCount).getBytes());
+		outStream.write("</good_msgs>\n".getBytes());
+		outStream.write("	<bad_msgs>".getBytes());
+		outStream.write(Integer.toString(badMsgCount).getBytes());
+		outStream.write("</bad_msgs>\n".getBytes());
+	}
+
+	/** Writes a single token element of an XML document.
+	 *
+	 * @param outStream	The stream to write the token to.
+	 * @param token	An array containing the token bytes.
+	 * @param offset	The offset of the token within the array.
+	 * @param length	The length in bytes of the token.
+	 * @param goodCount	The good count of the token.
+	 * @param badCount	The bad count of the token.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the stream.
+	 */
+	static void writeXMLToken(
+			OutputStream outStream,
+			byte[] token,
+			int offset,
+			int length,
+			int goodCount,
+			int badCount
+	) throws IOException {
+
+		outStream.write("	<token>\n".getBytes());
+		outStream.write("		<name>".getBytes());
+		outStream.write(token, offset, length);
+		outStream.write("</name>\n".getBytes());
+		outStream.write("		<good>".getBytes());
+		outStream.write(Integer.toString(goodCount).getBytes());
+		outStream.write("</good>\n".getBytes());
+		outStream.write("		<bad>".getBytes());
+		outStream.write(Integer.toString(badCount).getBytes());
+		outStream.write("</bad>\n".getBytes());
+		outStream.write("	</token>\n".getBytes());
+	}
+
+	/** Writes the footer of an XML document.
+	 *
+	 * @param outStream	The stream to write the footer to.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the stream.
+	 */
+	static void writeXMLFooter(OutputStream outStream) throws IOException {
+
 		outStream.write("</tokenfile>\n".getBytes());
 	}
 
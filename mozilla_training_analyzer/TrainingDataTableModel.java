@@ -62,11 +62,19 @@ public class TrainingDataTableModel
 	 */
 	private TrainingData parentTrainer = null;
 
-	/** A copy of the token set in TrainingData, put into array
-	 *  form for speed of access and ease of use.
+	/** A sorted copy of the tokens in TrainingData, put into
+	 *  array form for speed of access and ease of use.
 	 */
 	private MozillaSpamToken[] tokenSet = null;
 
+	/** The bytes of the token in each row, which are what the row
+	 *  is found by in the TrainingData when it is edited. The
+	 *  String in tokenSet is only for display: a token which is
+	 *  not valid UTF-8 doesn't survive being decoded and encoded
+	 *  again, and two such tokens may even decode the same.
+	 */
+	private byte[][] tokenBytes = null;
+
 	/** Creates a new TrainingDataTableModel for the given
 	 *  TrainingData.
 	 *
@@ -103,15 +111,22 @@ public class TrainingDataTableModel
 			return;
 		}
 
-		Object[] tempArray = newTrainer.getTokenSet().toArray();
-		tokenSet = new MozillaSpamToken[tempArray.length];
+		// This is the only place the GUI needs the tokens in
+		// sorted order, so ask for the sorted view here.
+		TokenStore tokenStore = newTrainer.getTokenStore();
+		int[] sortedIndices = tokenStore.getSortedIndices();
+
+		tokenSet = new MozillaSpamToken[sortedIndices.length];
+		tokenBytes = new byte[sortedIndices.length][];
+
+		for (int i = 0; i < sortedIndices.length; i++) {
 
-		// Can't use System.arraycopy since an Object is not
-		// compatible with a MozillaSpamToken via simple
-		// assignment - it requires a cast.
-		for (int i = 0; i < tokenSet.length; i++) {
+			tokenSet[i] = new MozillaSpamToken(
+				tokenStore.getTokenString(sortedIndices[i]),
+				tokenStore.getGoodCount(sortedIndices[i]),
+				tokenStore.getBadCount(sortedIndices[i]));
 
-			tokenSet[i] = (MozillaSpamToken) tempArray[i];
+			tokenBytes[i] = tokenStore.getTokenBytes(sortedIndices[i]);
 		}
 
 		parentTrainer = newTrainer;
@@ -283,19 +298,23 @@ public class TrainingDataTableModel
 		}
 
 		MozillaSpamToken[] newTokenSet = new MozillaSpamToken[tokenSet.length - (highNum - lowNum + 1)];
+		byte[][] newTokenBytes = new byte[newTokenSet.length][];
 
 		// Copy the items before and after the selected row.
 		System.arraycopy(tokenSet, 0, newTokenSet, 0, lowNum);
 		System.arraycopy(tokenSet, highNum+1, newTokenSet, lowNum, tokenSet.length - highNum - 1);
+		System.arraycopy(tokenBytes, 0, newTokenBytes, 0, lowNum);
+		System.arraycopy(tokenBytes, highNum+1, newTokenBytes, lowNum, tokenBytes.length - highNum - 1);
 
 		// Remove these tokens from the parent TrainingData.
 		for (int i = 0; i < rows.length; i++) {
 
-			parentTrainer.getTokenSet().remove(tokenSet[rows[i]]);
+			parentTrainer.removeToken(tokenBytes[rows[i]]);
 		}
 
 		// Save the new token set which has the rows removed.
 		tokenSet = newTokenSet;
+		tokenBytes = newTokenBytes;
 
 		// Let the container know that these rows are now gone.
 		fireTableRowsDeleted(lowNum, highNum);
@@ -312,10 +331,11 @@ public class TrainingDataTableModel
 
 		// Create a new token for this string.
 		MozillaSpamToken newToken = new MozillaSpamToken(newString, 0, 0);
+		byte[] newBytes = Globals.encodeToken(newString);
 
 		// Need to check that the given string does not yet exist
 		// in the parent TrainingData.
-		if (parentTrainer.getTokenSet().contains(newToken)) {
+		if (parentTrainer.containsToken(newBytes)) {
 
 			// Pop up a dialog box saying that the given token
 			// already exists in the set.
@@ -326,19 +346,23 @@ public class TrainingDataTableModel
 
 		// Create a new array for our n + 1 tokens.
 		MozillaSpamToken[] newTokenSet = new MozillaSpamToken[tokenSet.length + 1];
+		byte[][] newTokenBytes = new byte[newTokenSet.length][];
 
 		// Copy the contents of the previous array into the new
 		// one.
 		System.arraycopy(tokenSet, 0, newTokenSet, 0, tokenSet.length);
+		System.arraycopy(tokenBytes, 0, newTokenBytes, 0, tokenBytes.length);
 
 		// Since it wasn't already in the set, add it in now.
-		parentTrainer.getTokenSet().add(newToken);
+		parentTrainer.addToken(newString, 0, 0);
 
 		// Add the new token to the end of the array.
 		newTokenSet[newTokenSet.length - 1] = newToken;
+		newTokenBytes[newTokenBytes.length - 1] = newBytes;
 
 		// Save the new token set which has the row added.
 		tokenSet = newTokenSet;
+		tokenBytes = newTokenBytes;
 
 		// Let the container know that a row has beed added.
 		fireTableRowsInserted(tokenSet.length - 1, tokenSet.length - 1);
@@ -357,10 +381,9 @@ public class TrainingDataTableModel
 			return;
 		}
 
-		// This will retrieve the original MozillaSpamToken that
-		// the table's array was copied from.
-		MozillaSpamToken parentToken = (MozillaSpamToken)
-			parentTrainer.getTokenSet().tailSet(tokenSet[row]).first();
+		// The bytes of the token that the table's row was copied
+		// from.
+		byte[] parentToken = tokenBytes[row];
 
 		// If the value of this integer is less than 0, set it to
 		// 0. This prevents negative token counts.
@@ -375,7 +398,7 @@ public class TrainingDataTableModel
 			// Set the new Good count both locally and in the
 			// originating data structure.
 			tokenSet[row].setGoodTokenCount(((Integer) value).intValue());
-			parentToken.setGoodTokenCount(((Integer) value).intValue());
+			parentTrainer.setGoodTokenCount(parentToken, ((Integer) value).intValue());
 
 		// Bad token count
 		} else if (col == 3) {
@@ -383,7 +406,7 @@ public class TrainingDataTableModel
 			// Set the new Bad count both locally and in the
 			// originating data structure.
 			tokenSet[row].setBadTokenCount(((Integer) value).intValue());
-			parentToken.setBadTokenCount(((Integer) value).intValue());
+			parentTrainer.setBadTokenCount(parentToken, ((Integer) value).intValue());
 
 		} else {
 
@@ -0,0 +1,516 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/** An index over the tokens of a Mozilla Bayesian Filter Training
+ *  file, which answers "what are the counts for token X" without
+ *  parsing the whole file.
+ *
+ *  The index is a list of (token hash, file offset) pairs, one
+ *  for every token record in the file, sorted by hash. It is kept
+ *  in a sidecar file next to the training file, named after it
+ *  with .idx on the end, so it only has to be built once:
+ *
+ *  <pre>
+ *  magic "BJTI", version         8 bytes
+ *  length of the training file   8 bytes
+ *  its last modified time        8 bytes
+ *  offset of the bad token count 8 bytes
+ *  number of entries             4 bytes
+ *  padding                       4 bytes
+ *  entries: hash, offset         12 bytes each
+ *  </pre>
+ *
+ *  The length and modified time tell open() when the training
+ *  file has changed since the index was built, and the offset of
+ *  the bad token count tells which section a record is in.
+ *
+ *  A lookup is a binary search of the mapped sidecar for the
+ *  token's hash, followed by one positional read of the training
+ *  file per record with that hash, to check the token's bytes
+ *  and pick up its count. That is normally one read per section
+ *  the token is in, plus the odd one for a hash collision.
+ *
+ *  A TrainingFileIndex keeps the training file open until it is
+ *  closed, and reuses a buffer between lookups, so it must not be
+ *  used by more than one thread at a time.
+ */
+public class TrainingFileIndex {
+
+	/** What goes on the end of a training file's name to give
+	 *  the name of its index.
+	 */
+	public static final String INDEX_SUFFIX = ".idx";
+
+	/** The first four bytes of an index file, "BJTI".
+	 */
+	private static final int INDEX_MAGIC = 0x424A5449;
+
+	/** The version of the index file layout.
+	 */
+	private static final int INDEX_VERSION = 1;
+
+	/** The size in bytes of the index file header.
+	 */
+	private static final int INDEX_HEADER_SIZE = 40;
+
+	/** The size in bytes of a single index entry.
+	 */
+	private static final int ENTRY_SIZE = 12;
+
+	/** The size in bytes of the header of a training file.
+	 */
+	private static final int TRAINING_HEADER_SIZE = 16;
+
+	/** The size in bytes of the count and length which come
+	 *  before the bytes of every token.
+	 */
+	private static final int RECORD_OVERHEAD = 8;
+
+	/** The contents of the index file.
+	 */
+	private ByteBuffer index = null;
+
+	/** The number of entries in the index.
+	 */
+	private int numEntries = 0;
+
+	/** The offset of the bad token count in the training file.
+	 *  Every record before it is a good token, every record after
+	 *  it a bad one.
+	 */
+	private long badSectionOffset = 0;
+
+	/** The training file, for reading the records.
+	 */
+	private FileInputStream datStream = null;
+	private FileChannel datChannel = null;
+
+	/** A reusable buffer for reading records.
+	 */
+	private ByteBuffer recordBuffer = ByteBuffer.allocate(256);
+
+	/** Creates a new TrainingFileIndex over the given contents.
+	 *
+	 * @param trainingDatPath	The path to the training file.
+	 * @param index	The contents of the index file, positioned
+	 * 				anywhere.
+	 *
+	 * @throws IOException If the training file could not be
+	 * 						opened.
+	 */
+	private TrainingFileIndex(String trainingDatPath, ByteBuffer index) throws IOException {
+
+		this.index = index;
+		this.badSectionOffset = index.getLong(24);
+		this.numEntries = index.getInt(32);
+
+		datStream = new FileInputStream(trainingDatPath);
+		datChannel = datStream.getChannel();
+	}
+
+	/** Returns the path of the index of the given training file.
+	 *
+	 * @param trainingDatPath	The path to the training file.
+	 *
+	 * @return The path to its index.
+	 */
+	public static String getIndexPath(String trainingDatPath) {
+		return trainingDatPath + INDEX_SUFFIX;
+	}
+
+	/** Opens the index of the given training file, building it
+	 *  first if there is no index or if the training file has
+	 *  changed since it was built.
+	 *
+	 * @param trainingDatPath	The path to the training file.
+	 *
+	 * @return The index, which must be closed when done with.
+	 *
+	 * @throws IOException If the training file could not be read,
+	 * 						or is not a Mozilla Bayesian filter
+	 * 						token file.
+	 */
+	public static TrainingFileIndex open(String trainingDatPath) throws IOException {
+
+		TrainingFileIndex fileIndex = load(trainingDatPath);
+
+		if (fileIndex == null) {
+			fileIndex = build(trainingDatPath);
+		}
+
+		return fileIndex;
+	}
+
+	/** Opens the existing index of the given training file.
+	 *
+	 * @param trainingDatPath	The path to the training file.
+	 *
+	 * @return The index, or null if there is no index or it is
+	 * 			out of date.
+	 *
+	 * @throws IOException If the index could not be read.
+	 */
+	public static TrainingFileIndex load(String trainingDatPath) throws IOException {
+
+		File datFile = new File(trainingDatPath);
+		File indexFile = new File(getIndexPath(trainingDatPath));
+
+		if (!indexFile.exists() || (indexFile.length() < INDEX_HEADER_SIZE)) {
+			return null;
+		}
+
+		FileInputStream inStream = new FileInputStream(indexFile);
+		ByteBuffer index = null;
+
+		try {
+
+			// The mapping stays valid after the channel has been
+			// closed, so we only need the channel for this call.
+			FileChannel inChannel = inStream.getChannel();
+			index = inChannel.map(FileChannel.MapMode.READ_ONLY, 0, inChannel.size());
+
+		} finally {
+
+			inStream.close();
+		}
+
+		if ((index.getInt(0) != INDEX_MAGIC) ||
+			(index.getInt(4) != INDEX_VERSION) ||
+			(index.getLong(8) != datFile.length()) ||
+			(index.getLong(16) != datFile.lastModified()) ||
+			(index.capacity() != INDEX_HEADER_SIZE + (long) ENTRY_SIZE * index.getInt(32))) {
+
+			// Not ours, or built for a different version of the
+			// training file.
+			return null;
+		}
+
+		return new TrainingFileIndex(trainingDatPath, index);
+	}
+
+	/** Builds the index of the given training file in a single
+	 *  pass over it, and writes it to the sidecar file. If the
+	 *  sidecar can't be written, e.g. because the profile is read
+	 *  only, the index is still returned, it just won't be there
+	 *  next time.
+	 *
+	 * @param trainingDatPath	The path to the training file.
+	 *
+	 * @return The index, which must be closed when done with.
+	 *
+	 * @throws IOException If the training file could not be read,
+	 * 						or is not a Mozilla Bayesian filter
+	 * 						token file.
+	 */
+	public static TrainingFileIndex build(String trainingDatPath) throws IOException {
+
+		File datFile = new File(trainingDatPath);
+
+		// Note these before reading, so that a change made while
+		// we read shows up as a stale index next time.
+		long datLength = datFile.length();
+		long datModified = datFile.lastModified();
+
+		TokenCursor cursor = TokenCursor.open(trainingDatPath);
+
+		int numRecords = cursor.getNumGoodTokens();
+		long[] offsets = new long[Math.max(16, numRecords)];
+		long[] keys = new long[offsets.length];
+
+		// Work out each record's offset as we go. The bad token
+		// count sits between the two sections.
+		long pos = TRAINING_HEADER_SIZE;
+		long badSectionOffset = -1;
+		int record = 0;
+
+		try {
+
+			while (cursor.next()) {
+
+				if ((badSectionOffset == -1) && (cursor.getSection() == TokenCursor.SECTION_BAD)) {
+
+					badSectionOffset = pos;
+					pos += 4;
+				}
+
+				if (record == offsets.length) {
+
+					offsets = grow(offsets);
+					keys = grow(keys);
+				}
+
+				int hash = OpenAddressingTokenStore.hash(cursor.getTokenBytes(), 0, cursor.getTokenLength());
+
+				// Sorting on the hash in the high half and the
+				// record number in the low half sorts by hash,
+				// then by position in the file.
+				keys[record] = ((long) hash << 32) | record;
+				offsets[record] = pos;
+
+				pos += RECORD_OVERHEAD + cursor.getTokenLength();
+				record++;
+			}
+
+		} finally {
+
+			cursor.close();
+		}
+
+		// No bad tokens at all.
+		if (badSectionOffset == -1) {
+			badSectionOffset = pos;
+		}
+
+		Arrays.sort(keys, 0, record);
+
+		ByteBuffer index = ByteBuffer.allocate(INDEX_HEADER_SIZE + ENTRY_SIZE * record);
+
+		index.putInt(INDEX_MAGIC);
+		index.putInt(INDEX_VERSION);
+		index.putLong(datLength);
+		index.putLong(datModified);
+		index.putLong(badSectionOffset);
+		index.putInt(record);
+
+		// Keep the header a multiple of 8 bytes.
+		index.putInt(0);
+
+		for (int i = 0; i < record; i++) {
+
+			index.putInt((int) (keys[i] >> 32));
+			index.putLong(offsets[(int) keys[i]]);
+		}
+
+		index.flip();
+
+		try {
+
+			FileOutputStream outStream = new FileOutputStream(getIndexPath(trainingDatPath));
+
+			try {
+
+				FileChannel outChannel = outStream.getChannel();
+
+				while (index.hasRemaining()) {
+					outChannel.write(index);
+				}
+
+			} finally {
+
+				outStream.close();
+			}
+
+		} catch (IOException ioe) {
+
+			// The index still works, it just lives in memory.
+			new File(getIndexPath(trainingDatPath)).delete();
+		}
+
+		return new TrainingFileIndex(trainingDatPath, index);
+	}
+
+	/** Looks up the counts of a token.
+	 *
+	 * @param token	The token to look up.
+	 *
+	 * @return The token with its good and bad counts, or null if
+	 * 			it is in neither section of the file.
+	 *
+	 * @throws IOException If the training file could not be read.
+	 */
+	public MozillaSpamToken lookup(String token) throws IOException {
+
+		// Encode the same way the store does, so that the bytes
+		// match those in the file.
+		byte[] tokenBytes = Globals.encodeToken(token);
+
+		int goodCount = 0;
+		int badCount = 0;
+		boolean found = false;
+
+		int hash = OpenAddressingTokenStore.hash(tokenBytes, 0, tokenBytes.length);
+
+		for (int i = findFirst(hash); (i < numEntries) && (getHash(i) == hash); i++) {
+
+			long offset = getOffset(i);
+
+			if (!readRecord(offset, tokenBytes)) {
+
+				// A different token with the same hash.
+				continue;
+			}
+
+			found = true;
+
+			// Some files hold the same token more than once in
+			// a section, so add the counts up just like the
+			// parsers do.
+			if (offset < badSectionOffset) {
+				goodCount += recordBuffer.getInt(0);
+			} else {
+				badCount += recordBuffer.getInt(0);
+			}
+		}
+
+		if (!found) {
+			return null;
+		}
+
+		return new MozillaSpamToken(token, goodCount, badCount);
+	}
+
+	/** Returns the number of token records in the index.
+	 *
+	 * @return The number of records, good and bad.
+	 */
+	public int size() {
+		return numEntries;
+	}
+
+	/** Closes the training file.
+	 *
+	 * @throws IOException If the file could not be closed.
+	 */
+	public void close() throws IOException {
+		datStream.close();
+	}
+
+	/** Reads the record at the given offset of the training file
+	 *  into the record buffer, if it holds the given token.
+	 *
+	 * @param offset	The offset of the record.
+	 * @param tokenBytes	The token that is wanted.
+	 *
+	 * @return true if the record is for that token, false if it
+	 * 			is for another one.
+	 *
+	 * @throws IOException If the training file could not be read.
+	 */
+	private boolean readRecord(long offset, byte[] tokenBytes) throws IOException {
+
+		int recordSize = RECORD_OVERHEAD + tokenBytes.length;
+
+		if (recordBuffer.capacity() < recordSize) {
+			recordBuffer = ByteBuffer.allocate(recordSize);
+		}
+
+		// A record of the wanted length is read in one go. If the
+		// token is shorter, the read may run into the next record
+		// or off the end of the file, which is harmless as the
+		// length won't match.
+		recordBuffer.clear();
+		recordBuffer.limit(recordSize);
+
+		while (recordBuffer.hasRemaining()) {
+
+			if (datChannel.read(recordBuffer, offset + recordBuffer.position()) < 0) {
+				break;
+			}
+		}
+
+		if ((recordBuffer.position() < RECORD_OVERHEAD) || (recordBuffer.getInt(4) != tokenBytes.length)) {
+			return false;
+		}
+
+		if (recordBuffer.position() < recordSize) {
+			return false;
+		}
+
+		for (int i = 0; i < tokenBytes.length; i++) {
+
+			if (recordBuffer.get(RECORD_OVERHEAD + i) != tokenBytes[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/** Finds the first entry whose hash is not less than the given
+	 *  one, with a binary search.
+	 *
+	 * @param hash	The hash to look for.
+	 *
+	 * @return The index of that entry, or numEntries if every
+	 * 			hash is less.
+	 */
+	private int findFirst(int hash) {
+
+		int low = 0;
+		int high = numEntries;
+
+		while (low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if (getHash(middle) < hash) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/** Returns the hash of the given entry.
+	 */
+	private int getHash(int entry) {
+		return index.getInt(INDEX_HEADER_SIZE + entry * ENTRY_SIZE);
+	}
+
+	/** Returns the training file offset of the given entry.
+	 */
+	private long getOffset(int entry) {
+		return index.getLong(INDEX_HEADER_SIZE + entry * ENTRY_SIZE + 4);
+	}
+
+	/** Returns a copy of the given array with twice the room.
+	 */
+	private static long[] grow(long[] array) {
+
+		long[] grown = new long[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+
+		return grown;
+	}
+}
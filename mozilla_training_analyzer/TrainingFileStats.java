@@ -0,0 +1,283 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** The summary numbers of a Mozilla Bayesian Filter Training
+ *  file: its message counts and the number of tokens in each
+ *  section, read without loading any tokens.
+ *
+ *  Everything but the number of bad tokens is in the 16-byte
+ *  header. The bad token count sits right after the good
+ *  section, so read() hops over the good tokens from one length
+ *  prefix to the next, reading the file a window at a time with
+ *  positional reads. Only the 8-byte count and length of each
+ *  good token is looked at; the token bytes are skipped over
+ *  and never decoded, and the bad section isn't read at all.
+ */
+public class TrainingFileStats {
+
+	/** The size in bytes of the fixed header: the magic number,
+	 *  the good and bad message counts, and the good token count.
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	/** The size in bytes of the count and length which come
+	 *  before the bytes of every token.
+	 */
+	private static final int RECORD_OVERHEAD = 8;
+
+	/** The most of the file that is read in one go while hopping
+	 *  over the good section.
+	 */
+	private static final int WINDOW_SIZE = 65536;
+
+	/** The number of good messages processed.
+	 */
+	private int goodMessageCount = 0;
+
+	/** The number of bad messages processed.
+	 */
+	private int badMessageCount = 0;
+
+	/** The number of tokens in the good section.
+	 */
+	private int numGoodTokens = 0;
+
+	/** The number of tokens in the bad section.
+	 */
+	private int numBadTokens = 0;
+
+	/** Creates a new TrainingFileStats with the given numbers.
+	 *
+	 * @param goodMessageCount	The number of good messages.
+	 * @param badMessageCount	The number of bad messages.
+	 * @param numGoodTokens	The number of good tokens.
+	 * @param numBadTokens	The number of bad tokens.
+	 */
+	public TrainingFileStats(
+		int goodMessageCount,
+		int badMessageCount,
+		int numGoodTokens,
+		int numBadTokens) {
+
+		this.goodMessageCount = goodMessageCount;
+		this.badMessageCount = badMessageCount;
+		this.numGoodTokens = numGoodTokens;
+		this.numBadTokens = numBadTokens;
+	}
+
+	/** Reads the summary numbers of the given training file.
+	 *
+	 * @param trainingDatPath	The path to the training file.
+	 *
+	 * @return The numbers, or null if the file is not a training
+	 * 			file or ends before the bad token count.
+	 *
+	 * @throws IOException If the file could not be read.
+	 */
+	public static TrainingFileStats read(String trainingDatPath) throws IOException {
+
+		FileInputStream inStream = new FileInputStream(new File(trainingDatPath));
+
+		try {
+
+			return read(inStream.getChannel());
+
+		} finally {
+
+			inStream.close();
+		}
+	}
+
+	/** Reads the summary numbers of the training file open on the
+	 *  given channel. Only positional reads are used, so the
+	 *  channel's own position is left alone.
+	 *
+	 * @param channel	The channel to read from.
+	 *
+	 * @return The numbers, or null if the file is not a training
+	 * 			file or ends before the bad token count.
+	 *
+	 * @throws IOException If the file could not be read.
+	 */
+	public static TrainingFileStats read(FileChannel channel) throws IOException {
+
+		long fileSize = channel.size();
+
+		if (fileSize < HEADER_SIZE + 4) {
+			return null;
+		}
+
+		// Most training files are small enough to be read in one
+		// go, in which case this window is the only read made.
+		ByteBuffer window = ByteBuffer.allocate((int) Math.min(WINDOW_SIZE, fileSize));
+
+		// The position in the file of the window's first byte.
+		long windowStart = 0;
+
+		fill(channel, window, windowStart);
+
+		byte[] headerBytes = new byte[4];
+		window.get(headerBytes, 0, 4);
+
+		if (!Analyzer.checkHeader(headerBytes)) {
+			return null;
+		}
+
+		int goodMessageCount = window.getInt(4);
+		int badMessageCount = window.getInt(8);
+		int numGoodTokens = window.getInt(12);
+
+		// Hop over the good section, one length prefix at a time.
+		long pos = HEADER_SIZE;
+
+		for (int i = 0; i < numGoodTokens; i++) {
+
+			// Slide the window along if the next prefix isn't
+			// wholly inside it.
+			if (pos + RECORD_OVERHEAD > windowStart + window.limit()) {
+
+				if (pos + RECORD_OVERHEAD > fileSize) {
+					return null;
+				}
+
+				windowStart = pos;
+				fill(channel, window, windowStart);
+			}
+
+			int tokenLength = window.getInt((int) (pos - windowStart) + 4);
+
+			if (tokenLength < 0) {
+				return null;
+			}
+
+			pos += RECORD_OVERHEAD + tokenLength;
+		}
+
+		// The bad token count follows the last good token.
+		if (pos + 4 > fileSize) {
+			return null;
+		}
+
+		if (pos + 4 > windowStart + window.limit()) {
+
+			windowStart = pos;
+			fill(channel, window, windowStart);
+		}
+
+		int numBadTokens = window.getInt((int) (pos - windowStart));
+
+		return new TrainingFileStats(goodMessageCount, badMessageCount, numGoodTokens, numBadTokens);
+	}
+
+	/** Fills the given buffer from the given position of the file,
+	 *  or with as much as is left of the file.
+	 *
+	 * @param channel	The channel to read from.
+	 * @param window	The buffer to fill. Afterwards its position
+	 * 					is 0 and its limit is the number of bytes
+	 * 					read.
+	 * @param position	The position in the file to read from.
+	 *
+	 * @throws IOException If the file could not be read.
+	 */
+	private static void fill(FileChannel channel, ByteBuffer window, long position) throws IOException {
+
+		window.clear();
+
+		while (window.hasRemaining()) {
+
+			int read = channel.read(window, position + window.position());
+
+			if (read < 0) {
+				break;
+			}
+		}
+
+		window.flip();
+
+		if (!window.hasRemaining()) {
+			throw new EOFException("Nothing to read at position " + position);
+		}
+	}
+
+	/** Returns the number of good messages processed.
+	 *
+	 * @return The number of good messages processed.
+	 */
+	public int getGoodMessageCount() {
+		return goodMessageCount;
+	}
+
+	/** Returns the number of bad messages processed.
+	 *
+	 * @return The number of bad messages processed.
+	 */
+	public int getBadMessageCount() {
+		return badMessageCount;
+	}
+
+	/** Returns the number of tokens in the good section.
+	 *
+	 * @return The number of good tokens.
+	 */
+	public int getNumGoodTokens() {
+		return numGoodTokens;
+	}
+
+	/** Returns the number of tokens in the bad section.
+	 *
+	 * @return The number of bad tokens.
+	 */
+	public int getNumBadTokens() {
+		return numBadTokens;
+	}
+
+	/** Returns the numbers in the form used by the --stats
+	 *  command-line option.
+	 *
+	 * @return The numbers, tab-separated.
+	 */
+	public String toString() {
+
+		return goodMessageCount + "\t" + badMessageCount + "\t" +
+			numGoodTokens + "\t" + numBadTokens;
+	}
+}
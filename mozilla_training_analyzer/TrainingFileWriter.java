@@ -0,0 +1,743 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Writes a TrainingData out as a Mozilla Bayesian Filter
+ *  training file, without allocating anything per token.
+ *
+ *  Every record (count, length, token bytes) is put into a
+ *  ByteBuffer which is reused for the whole file, rather than
+ *  going through a fresh 4-byte array from Globals.makeBytes()
+ *  for every int. The size of both sections is worked out up
+ *  front from the store's columns, so when the whole file fits
+ *  in the buffer, a single walk over the sorted view fills in
+ *  the good section and the bad section at the same time, each
+ *  at its own place in the buffer, and the file goes out in one
+ *  write.
+ *
+ *  Files bigger than the maximum buffer size are instead written
+ *  in two walks (one per section) through a fixed-size chunk of
+ *  the buffer, which is still allocation-free per token.
+ *
+ *  When the output is a FileChannel, the records are instead put
+ *  into two batches of direct buffers, one for each section, and
+ *  each batch goes out with a single gathering write as soon as
+ *  it fills up. Since the place of the bad section in the file is
+ *  known up front, both sections are still filled in by a single
+ *  walk over the sorted view, and neither has to be held in
+ *  memory whole. The buffers of a batch are sized to its section,
+ *  so a small file doesn't pay for the full-sized batch that a
+ *  big one needs.
+ *
+ *  A TrainingFileWriter keeps its buffers between writes, so one
+ *  which is reused for several files only allocates when a file
+ *  is bigger than any before it. Because of those buffers, a
+ *  TrainingFileWriter must not be shared between threads.
+ *
+ *  This class is the one place that knows the layout of a
+ *  training file: StreamingTokenWriter frames its header and
+ *  records through putHeader() and putRecordHeader() too.
+ */
+public class TrainingFileWriter {
+
+	/** The default largest buffer that a whole file is put into.
+	 *  Bigger files are written a chunk at a time.
+	 */
+	public static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024 * 1024;
+
+	/** The size of the chunks that big files are written in.
+	 */
+	private static final int CHUNK_SIZE = TrainingData.OUTPUT_BUFFER_SIZE;
+
+	/** The size of the file header: the four magic bytes, the
+	 *  two message counts, and the good token count.
+	 */
+	static final int HEADER_SIZE = 16;
+
+	/** The offset of the good token count within the header.
+	 */
+	static final int GOOD_TOKEN_COUNT_OFFSET = 12;
+
+	/** The size of the fixed part of a token record: its count
+	 *  and its length.
+	 */
+	static final int RECORD_OVERHEAD = 8;
+
+	/** The largest size of each direct buffer in a gathering
+	 *  batch.
+	 */
+	private static final int BATCH_BUFFER_SIZE = 1024 * 1024;
+
+	/** The smallest size of each direct buffer in a gathering
+	 *  batch. This must hold the whole file header.
+	 */
+	private static final int MIN_BATCH_BUFFER_SIZE = 4096;
+
+	/** The number of direct buffers in a gathering batch.
+	 */
+	private static final int BATCH_BUFFER_COUNT = 8;
+
+	/** The largest file which is put into the buffer whole.
+	 */
+	private int maxBufferSize = DEFAULT_MAX_BUFFER_SIZE;
+
+	/** The reusable buffer.
+	 */
+	private ByteBuffer buffer = null;
+
+	/** The reusable batch of direct buffers for the good section
+	 *  when writing to a FileChannel.
+	 */
+	private GatherBatch goodBatch = null;
+
+	/** The reusable batch of direct buffers for the bad section
+	 *  when writing to a FileChannel.
+	 */
+	private GatherBatch badBatch = null;
+
+	/** Creates a new TrainingFileWriter with the default maximum
+	 *  buffer size.
+	 */
+	public TrainingFileWriter() {
+
+		this(DEFAULT_MAX_BUFFER_SIZE);
+	}
+
+	/** Creates a new TrainingFileWriter.
+	 *
+	 * @param maxBufferSize	The largest file, in bytes, which is
+	 * 						put into the buffer whole. Files which
+	 * 						are bigger are written a chunk at a
+	 * 						time.
+	 */
+	public TrainingFileWriter(int maxBufferSize) {
+
+		this.maxBufferSize = Math.max(maxBufferSize, CHUNK_SIZE);
+	}
+
+	/** Returns the exact size in bytes of the training file that
+	 *  the given store would be written as.
+	 *
+	 * @param tokenStore	The store to be written.
+	 *
+	 * @return The size of the training file, in bytes.
+	 */
+	public static long getFileSize(TokenStore tokenStore) {
+
+		long[] sectionSizes = getSectionSizes(tokenStore);
+
+		return HEADER_SIZE + sectionSizes[0] + 4 + sectionSizes[1];
+	}
+
+	/** Works out how big the two sections of the training file
+	 *  will be. Only the columns are read, in index order, so
+	 *  this is far cheaper than the write itself.
+	 *
+	 * @param tokenStore	The store to be written.
+	 *
+	 * @return The size of the good section at index 0 and of the
+	 * 			bad section at index 1, in bytes.
+	 */
+	private static long[] getSectionSizes(TokenStore tokenStore) {
+
+		long goodSectionSize = 0;
+		long badSectionSize = 0;
+
+		for (int i = 0; i < tokenStore.size(); i++) {
+
+			if (tokenStore.getGoodCount(i) > 0) {
+				goodSectionSize += RECORD_OVERHEAD + tokenStore.getTokenLength(i);
+			}
+
+			if (tokenStore.getBadCount(i) > 0) {
+				badSectionSize += RECORD_OVERHEAD + tokenStore.getTokenLength(i);
+			}
+		}
+
+		return new long[] { goodSectionSize, badSectionSize };
+	}
+
+	/** Writes the given TrainingData to the given stream as a
+	 *  Mozilla Bayesian Filter training file. The token counts of
+	 *  the TrainingData should be up to date, as they are written
+	 *  into the header.
+	 *
+	 * @param trainer	The TrainingData to write.
+	 * @param outStream	The stream to write the file to. It is
+	 * 						not closed.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the stream.
+	 */
+	public void write(TrainingData trainer, OutputStream outStream) throws IOException {
+
+		TokenStore tokenStore = trainer.getTokenStore();
+
+		long[] sectionSizes = getSectionSizes(tokenStore);
+		long fileSize = HEADER_SIZE + sectionSizes[0] + 4 + sectionSizes[1];
+
+		// Both sections are written in sorted order.
+		int[] sortedIndices = tokenStore.getSortedIndices();
+
+		if (fileSize <= maxBufferSize) {
+
+			writeWhole(trainer, sortedIndices, (int) sectionSizes[0], (int) fileSize, outStream);
+
+		} else {
+
+			writeChunked(trainer, sortedIndices, outStream);
+		}
+	}
+
+	/** Writes the given TrainingData to the given channel as a
+	 *  Mozilla Bayesian Filter training file, starting at the
+	 *  beginning of the channel. The token counts of the
+	 *  TrainingData should be up to date, as they are written
+	 *  into the header.
+	 *
+	 * @param trainer	The TrainingData to write.
+	 * @param channel	The channel to write the file to. It is
+	 * 					not closed, and is truncated to the size
+	 * 					of the file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the channel.
+	 */
+	public void write(TrainingData trainer, FileChannel channel) throws IOException {
+
+		TokenStore tokenStore = trainer.getTokenStore();
+
+		long[] sectionSizes = getSectionSizes(tokenStore);
+		long fileSize = HEADER_SIZE + sectionSizes[0] + 4 + sectionSizes[1];
+
+		int[] sortedIndices = tokenStore.getSortedIndices();
+
+		if (goodBatch == null) {
+
+			goodBatch = new GatherBatch();
+			badBatch = new GatherBatch();
+		}
+
+		// The good section follows the header, and the bad
+		// section follows the bad token count, which follows the
+		// good section.
+		goodBatch.prepare(0, HEADER_SIZE + sectionSizes[0]);
+		badBatch.prepare(HEADER_SIZE + sectionSizes[0], 4 + sectionSizes[1]);
+
+		goodBatch.putHeader(trainer);
+
+		badBatch.putInt(trainer.getNumBadTokens(), channel);
+
+		// Create these here to avoid unnecessary object creation
+		// inside the loop.
+		int index = -1;
+		int count = 0;
+
+		for (int i = 0; i < sortedIndices.length; i++) {
+
+			index = sortedIndices[i];
+
+			count = tokenStore.getGoodCount(index);
+
+			if (count > 0) {
+				goodBatch.putRecord(tokenStore, index, count, channel);
+			}
+
+			count = tokenStore.getBadCount(index);
+
+			if (count > 0) {
+				badBatch.putRecord(tokenStore, index, count, channel);
+			}
+		}
+
+		goodBatch.flush(channel);
+		badBatch.flush(channel);
+
+		// Drop anything left over from an older, longer file.
+		channel.truncate(fileSize);
+		channel.position(fileSize);
+	}
+
+	/** Makes sure that the buffer holds at least the given number
+	 *  of bytes, and clears it.
+	 *
+	 * @param capacity	The number of bytes needed.
+	 */
+	private void ensureBuffer(int capacity) {
+
+		if ((buffer == null) || (buffer.capacity() < capacity)) {
+			buffer = ByteBuffer.allocate(capacity);
+		}
+
+		buffer.clear();
+	}
+
+	/** Puts a file header into the given buffer at its current
+	 *  position.
+	 *
+	 * @param buffer	The buffer to put the header into. It must
+	 * 					have HEADER_SIZE bytes remaining.
+	 * @param goodMsgCount	The number of good messages.
+	 * @param badMsgCount	The number of bad messages.
+	 * @param numGoodTokens	The number of records in the good
+	 * 						section.
+	 */
+	static void putHeader(
+			ByteBuffer buffer,
+			int goodMsgCount,
+			int badMsgCount,
+			int numGoodTokens
+	) {
+
+		buffer.put((byte) TrainingData.firstHdrByte);
+		buffer.put((byte) TrainingData.secondHdrByte);
+		buffer.put((byte) TrainingData.thirdHdrByte);
+		buffer.put((byte) TrainingData.fourthHdrByte);
+
+		buffer.putInt(goodMsgCount);
+		buffer.putInt(badMsgCount);
+		buffer.putInt(numGoodTokens);
+	}
+
+	/** Puts the fixed part of a token record, which goes before
+	 *  the token bytes, into the given buffer at its current
+	 *  position.
+	 *
+	 * @param buffer	The buffer to put the record into. It must
+	 * 					have RECORD_OVERHEAD bytes remaining.
+	 * @param count	The good or bad count of the token.
+	 * @param length	The length in bytes of the token.
+	 */
+	static void putRecordHeader(ByteBuffer buffer, int count, int length) {
+
+		buffer.putInt(count);
+		buffer.putInt(length);
+	}
+
+	/** Puts the file header into the buffer.
+	 *
+	 * @param trainer	The TrainingData being written.
+	 */
+	private void putHeader(TrainingData trainer) {
+
+		putHeader(buffer,
+			trainer.getGoodMessageCount(),
+			trainer.getBadMessageCount(),
+			trainer.getNumGoodTokens());
+	}
+
+	/** Writes the whole file through a buffer big enough to hold
+	 *  all of it, in a single walk over the sorted view.
+	 *
+	 * @param trainer	The TrainingData being written.
+	 * @param sortedIndices	The sorted view of its store.
+	 * @param goodSectionSize	The size of the good section.
+	 * @param fileSize	The size of the whole file.
+	 * @param outStream	The stream to write the file to.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the stream.
+	 */
+	private void writeWhole(
+			TrainingData trainer,
+			int[] sortedIndices,
+			int goodSectionSize,
+			int fileSize,
+			OutputStream outStream
+	) throws IOException {
+
+		TokenStore tokenStore = trainer.getTokenStore();
+
+		ensureBuffer(fileSize);
+		putHeader(trainer);
+
+		// The bad token count sits right after the good section,
+		// and the bad section follows it.
+		buffer.putInt(HEADER_SIZE + goodSectionSize, trainer.getNumBadTokens());
+
+		int goodPos = HEADER_SIZE;
+		int badPos = HEADER_SIZE + goodSectionSize + 4;
+
+		// Create these here to avoid unnecessary object creation
+		// inside the loop.
+		int index = -1;
+		int count = 0;
+
+		for (int i = 0; i < sortedIndices.length; i++) {
+
+			index = sortedIndices[i];
+
+			count = tokenStore.getGoodCount(index);
+
+			if (count > 0) {
+
+				buffer.position(goodPos);
+				putRecord(tokenStore, index, count);
+				goodPos = buffer.position();
+			}
+
+			count = tokenStore.getBadCount(index);
+
+			if (count > 0) {
+
+				buffer.position(badPos);
+				putRecord(tokenStore, index, count);
+				badPos = buffer.position();
+			}
+		}
+
+		outStream.write(buffer.array(), 0, fileSize);
+	}
+
+	/** Writes the file a chunk at a time, walking the sorted view
+	 *  once for each section.
+	 *
+	 * @param trainer	The TrainingData being written.
+	 * @param sortedIndices	The sorted view of its store.
+	 * @param outStream	The stream to write the file to.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the stream.
+	 */
+	private void writeChunked(
+			TrainingData trainer,
+			int[] sortedIndices,
+			OutputStream outStream
+	) throws IOException {
+
+		TokenStore tokenStore = trainer.getTokenStore();
+
+		ensureBuffer(CHUNK_SIZE);
+		putHeader(trainer);
+
+		writeSection(tokenStore, sortedIndices, true, outStream);
+
+		ensureRoom(4, outStream);
+		buffer.putInt(trainer.getNumBadTokens());
+
+		writeSection(tokenStore, sortedIndices, false, outStream);
+
+		flush(outStream);
+	}
+
+	/** Writes the records of one section of the file through the
+	 *  chunk buffer.
+	 *
+	 * @param tokenStore	The store being written.
+	 * @param sortedIndices	The sorted view of the store.
+	 * @param good	true for the good section, false for the bad
+	 * 				one.
+	 * @param outStream	The stream to write the file to.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the stream.
+	 */
+	private void writeSection(
+			TokenStore tokenStore,
+			int[] sortedIndices,
+			boolean good,
+			OutputStream outStream
+	) throws IOException {
+
+		// Create these here to avoid unnecessary object creation
+		// inside the loop.
+		int index = -1;
+		int count = 0;
+		int length = 0;
+
+		for (int i = 0; i < sortedIndices.length; i++) {
+
+			index = sortedIndices[i];
+			count = (good? tokenStore.getGoodCount(index) : tokenStore.getBadCount(index));
+
+			if (count <= 0) {
+				continue;
+			}
+
+			length = tokenStore.getTokenLength(index);
+
+			if (RECORD_OVERHEAD + length <= buffer.capacity()) {
+
+				ensureRoom(RECORD_OVERHEAD + length, outStream);
+				putRecord(tokenStore, index, count);
+
+			} else {
+
+				// A token bigger than the whole chunk goes
+				// straight out after its count and length.
+				ensureRoom(RECORD_OVERHEAD, outStream);
+				putRecordHeader(buffer, count, length);
+				flush(outStream);
+
+				outStream.write(
+					tokenStore.getTokenArray(index),
+					tokenStore.getTokenOffset(index),
+					length);
+			}
+		}
+	}
+
+	/** Puts a single record into the buffer at its current
+	 *  position.
+	 *
+	 * @param tokenStore	The store holding the token.
+	 * @param index	The index of the token in the store.
+	 * @param count	The good or bad count to write.
+	 */
+	private void putRecord(TokenStore tokenStore, int index, int count) {
+
+		putRecordHeader(buffer, count, tokenStore.getTokenLength(index));
+		buffer.put(
+			tokenStore.getTokenArray(index),
+			tokenStore.getTokenOffset(index),
+			tokenStore.getTokenLength(index));
+	}
+
+	/** Flushes the chunk buffer if it doesn't have room for the
+	 *  given number of bytes.
+	 *
+	 * @param length	The number of bytes about to be put.
+	 * @param outStream	The stream to flush to.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the stream.
+	 */
+	private void ensureRoom(int length, OutputStream outStream) throws IOException {
+
+		if (buffer.remaining() < length) {
+			flush(outStream);
+		}
+	}
+
+	/** Writes out whatever is in the chunk buffer, and empties it.
+	 *
+	 * @param outStream	The stream to write to.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing to the stream.
+	 */
+	private void flush(OutputStream outStream) throws IOException {
+
+		outStream.write(buffer.array(), 0, buffer.position());
+		buffer.clear();
+	}
+
+	/** A batch of direct buffers which is filled with records and
+	 *  then written out to a fixed place in a FileChannel with a
+	 *  single gathering write.
+	 */
+	private static class GatherBatch {
+
+		/** The direct buffers of the batch.
+		 */
+		private ByteBuffer[] buffers = new ByteBuffer[BATCH_BUFFER_COUNT];
+
+		/** The buffer currently being filled.
+		 */
+		private int current = 0;
+
+		/** The place in the file where the batch is written next.
+		 */
+		private long filePosition = 0;
+
+		/** Makes sure that the buffers of the batch are big enough
+		 *  for the given number of bytes, up to the largest batch,
+		 *  and empties it, ready to write at the given place in
+		 *  the file. The buffers are only allocated again when
+		 *  they are too small.
+		 *
+		 * @param filePosition	Where the batch should be written.
+		 * @param length	The number of bytes that will be put
+		 * 					into the batch.
+		 */
+		void prepare(long filePosition, long length) {
+
+			long wanted = (length + buffers.length - 1) / buffers.length;
+			int bufferSize = (int) Math.max(Math.min(wanted, BATCH_BUFFER_SIZE), MIN_BATCH_BUFFER_SIZE);
+
+			if ((buffers[0] == null) || (buffers[0].capacity() < bufferSize)) {
+
+				for (int i = 0; i < buffers.length; i++) {
+					buffers[i] = ByteBuffer.allocateDirect(bufferSize);
+				}
+			}
+
+			reset(filePosition);
+		}
+
+		/** Empties the batch, ready to write at the given place in
+		 *  the file.
+		 *
+		 * @param filePosition	Where the batch should be written.
+		 */
+		void reset(long filePosition) {
+
+			for (int i = 0; i < buffers.length; i++) {
+				buffers[i].clear();
+			}
+
+			current = 0;
+			this.filePosition = filePosition;
+		}
+
+		/** Puts the file header into the batch. The header always
+		 *  fits in the first buffer.
+		 *
+		 * @param trainer	The TrainingData being written.
+		 */
+		void putHeader(TrainingData trainer) {
+
+			TrainingFileWriter.putHeader(buffers[current],
+				trainer.getGoodMessageCount(),
+				trainer.getBadMessageCount(),
+				trainer.getNumGoodTokens());
+		}
+
+		/** Puts an int into the batch, moving on to the next
+		 *  buffer (and writing the batch out if need be) when the
+		 *  current one is full.
+		 *
+		 * @param value	The int to put.
+		 * @param channel	The channel to write to if the batch
+		 * 					fills up.
+		 *
+		 * @throws IOException If an error was encountered while
+		 * 						writing to the channel.
+		 */
+		void putInt(int value, FileChannel channel) throws IOException {
+
+			if (buffers[current].remaining() < 4) {
+				nextBuffer(channel);
+			}
+
+			buffers[current].putInt(value);
+		}
+
+		/** Puts a whole record into the batch. The token bytes may
+		 *  be spread over as many buffers as they need.
+		 *
+		 * @param tokenStore	The store holding the token.
+		 * @param index	The index of the token in the store.
+		 * @param count	The good or bad count to write.
+		 * @param channel	The channel to write to if the batch
+		 * 					fills up.
+		 *
+		 * @throws IOException If an error was encountered while
+		 * 						writing to the channel.
+		 */
+		void putRecord(
+				TokenStore tokenStore,
+				int index,
+				int count,
+				FileChannel channel
+		) throws IOException {
+
+			int length = tokenStore.getTokenLength(index);
+
+			if (buffers[current].remaining() < RECORD_OVERHEAD) {
+				nextBuffer(channel);
+			}
+
+			putRecordHeader(buffers[current], count, length);
+
+			byte[] tokenArray = tokenStore.getTokenArray(index);
+			int offset = tokenStore.getTokenOffset(index);
+
+			while (length > 0) {
+
+				if (!buffers[current].hasRemaining()) {
+					nextBuffer(channel);
+				}
+
+				int chunk = Math.min(length, buffers[current].remaining());
+
+				buffers[current].put(tokenArray, offset, chunk);
+
+				offset += chunk;
+				length -= chunk;
+			}
+		}
+
+		/** Moves on to the next buffer, writing out the batch
+		 *  first if this was the last one.
+		 *
+		 * @param channel	The channel to write to.
+		 *
+		 * @throws IOException If an error was encountered while
+		 * 						writing to the channel.
+		 */
+		private void nextBuffer(FileChannel channel) throws IOException {
+
+			if (current + 1 < buffers.length) {
+
+				current++;
+
+			} else {
+
+				flush(channel);
+			}
+		}
+
+		/** Writes out everything in the batch with a gathering
+		 *  write, and empties it.
+		 *
+		 * @param channel	The channel to write to.
+		 *
+		 * @throws IOException If an error was encountered while
+		 * 						writing to the channel.
+		 */
+		void flush(FileChannel channel) throws IOException {
+
+			int used = current + 1;
+
+			for (int i = 0; i < used; i++) {
+				buffers[i].flip();
+			}
+
+			channel.position(filePosition);
+
+			// A gathering write may stop short, so keep going
+			// until every buffer has been drained.
+			while (buffers[current].hasRemaining()) {
+				filePosition += channel.write(buffers, 0, used);
+			}
+
+			reset(filePosition);
+		}
+	}
+}
@@ -0,0 +1,642 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/** A reader which parses a Mozilla Bayesian Filter XML training
+ *  file with a streaming (StAX) XMLStreamReader. Unlike
+ *  Analyzer.parseXMLTrainingFile(), no DOM tree is built: each
+ *  token is added to the token store as soon as its closing tag
+ *  has been read, so the memory used by the parser stays flat
+ *  no matter how large the file is.
+ *
+ *  The streaming parser in the JDK cannot validate against a
+ *  DTD, so validation (when requested) is done by this class
+ *  itself: the document is checked against the content model
+ *  described in trainer_xml.dtd, i.e. a tokenfile contains a
+ *  good_msgs, a bad_msgs and any number of tokens, and each
+ *  token contains a name, a good and a bad element, in that
+ *  order. Since the DTD is never read, validation also works
+ *  when the trainer_xml.dtd file is missing.
+ *
+ *  Token names are turned back into bytes with the encoding that
+ *  the document declares. TrainingData.toXMLDocument() writes the
+ *  raw bytes of each token into a document declared as
+ *  ISO-8859-1, where every byte is a character of its own, so
+ *  this gets back exactly the bytes that were exported.
+ */
+public class XMLTrainingFileReader {
+
+	/** The number of tokens to process before printing out a
+	 * 	display character. This matches the tick rate used by
+	 *  the Analyzer so that all of the readers look the same on
+	 *  the console.
+	 */
+	private static final int numTokensBeforeTick = 250;
+
+	/** The name of the root element of an XML training file.
+	 */
+	private static final String ROOT_ELEMENT = "tokenfile";
+
+	/** The factory used to create all of our stream readers. The
+	 *  factory is thread-safe once configured, so it's shared.
+	 */
+	private static final XMLInputFactory factory = createFactory();
+
+	// No instantiation of this class, everything is static.
+	private XMLTrainingFileReader() {
+	}
+
+	/** Creates and configures the factory which generates our
+	 * 	stream readers.
+	 *
+	 * @return A configured XMLInputFactory.
+	 */
+	private static XMLInputFactory createFactory() {
+
+		XMLInputFactory newFactory = XMLInputFactory.newInstance();
+
+		// Don't go looking for trainer_xml.dtd - it declares no
+		// entities, and we check its content model by hand.
+		newFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		newFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+		// Hand text over in one piece rather than in chunks.
+		newFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+
+		return newFactory;
+	}
+
+	/** Reads in token data from the given XML file and places it
+	 * 	in a TrainingData for easy access. The document is
+	 *  validated against the trainer_xml.dtd content model.
+	 *
+	 * @param trainingXMLPath	The path to the Mozilla Bayesian
+	 * 							Filter XML training file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 *
+	 * @return A TrainingData which encapsulates the training
+	 * 			file's data, or null if the file does not exist
+	 * 			or is not a token file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the XML file.
+	 * @throws XMLStreamException	If the file is not well-formed
+	 * 								 or not valid XML.
+	 */
+	public static TrainingData parseXMLTrainingFile(
+			String trainingXMLPath,
+			boolean displayOutput
+	) throws IOException, XMLStreamException {
+
+		return parseXMLTrainingFile(trainingXMLPath, displayOutput, true);
+	}
+
+	/** Reads in token data from the given XML file and places it
+	 * 	in a TrainingData for easy access.
+	 *
+	 * @param trainingXMLPath	The path to the Mozilla Bayesian
+	 * 							Filter XML training file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 * @param validate	true if the document should be checked
+	 * 					against the trainer_xml.dtd content model,
+	 * 					false if unknown elements should simply
+	 * 					be skipped.
+	 *
+	 * @return A TrainingData which encapsulates the training
+	 * 			file's data, or null if the file does not exist
+	 * 			or is not a token file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the XML file.
+	 * @throws XMLStreamException	If the file is not well-formed
+	 * 								 XML, or if validation was
+	 * 								 requested and the file is
+	 * 								 not valid.
+	 */
+	public static TrainingData parseXMLTrainingFile(
+			String trainingXMLPath,
+			boolean displayOutput,
+			boolean validate
+	) throws IOException, XMLStreamException {
+
+		return parseFile(trainingXMLPath, displayOutput, validate, null, null);
+	}
+
+	/** Reads in token data from the given XML file and places it
+	 * 	in a TrainingData for easy access, keeping the tokens in
+	 *  the given dictionary. The document is validated against the
+	 *  trainer_xml.dtd content model.
+	 *
+	 * @param trainingXMLPath	The path to the Mozilla Bayesian
+	 * 							Filter XML training file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 * @param dictionary	The dictionary of the job that the file
+	 * 						is loaded for, or null to keep the
+	 * 						tokens in a store of their own.
+	 *
+	 * @return A TrainingData which encapsulates the training
+	 * 			file's data, or null if the file does not exist
+	 * 			or is not a token file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the XML file.
+	 * @throws XMLStreamException	If the file is not well-formed
+	 * 								 or not valid XML.
+	 */
+	public static TrainingData parseXMLTrainingFile(
+			String trainingXMLPath,
+			boolean displayOutput,
+			TokenDictionary dictionary
+	) throws IOException, XMLStreamException {
+
+		return parseFile(trainingXMLPath, displayOutput, true, null, dictionary);
+	}
+
+	/** Reads in token data from the given XML file and hands
+	 *  every token to the given TokenRunSpiller rather than
+	 *  keeping it, so that files of any size can be read in
+	 *  bounded memory. The document is validated against the
+	 *  trainer_xml.dtd content model.
+	 *
+	 * @param trainingXMLPath	The path to the Mozilla Bayesian
+	 * 							Filter XML training file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 * @param spiller	The spiller to add the tokens to.
+	 *
+	 * @return A TrainingData which holds the file's message
+	 * 			counts and no tokens, or null if the file does
+	 * 			not exist or is not a token file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the XML file or
+	 * 						spilling tokens.
+	 * @throws XMLStreamException	If the file is not well-formed
+	 * 								 or not valid XML.
+	 */
+	public static TrainingData streamXMLTrainingFile(
+			String trainingXMLPath,
+			boolean displayOutput,
+			TokenRunSpiller spiller
+	) throws IOException, XMLStreamException {
+
+		return parseFile(trainingXMLPath, displayOutput, true, spiller, null);
+	}
+
+	/** Opens the given XML file and parses it.
+	 *
+	 * @param trainingXMLPath	The path to the XML training file.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 * @param validate	true if the content model should be
+	 * 					enforced.
+	 * @param spiller	The spiller to add the tokens to, or null
+	 * 					to keep them in the returned TrainingData.
+	 * @param dictionary	The dictionary to keep the tokens in, or
+	 * 						null for a store of their own.
+	 *
+	 * @return The TrainingData read from the file, or null if
+	 * 			the file does not exist or is not a token file.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						reading from the XML file or
+	 * 						spilling tokens.
+	 * @throws XMLStreamException	If the file is not well-formed
+	 * 								 or not valid XML.
+	 */
+	private static TrainingData parseFile(
+			String trainingXMLPath,
+			boolean displayOutput,
+			boolean validate,
+			TokenRunSpiller spiller,
+			TokenDictionary dictionary
+	) throws IOException, XMLStreamException {
+
+		// If there's no path, return null.
+		if (trainingXMLPath == null) {
+			return null;
+		}
+
+		File xmlTrainingFile = new File(trainingXMLPath);
+
+		// The given file doesn't exist, so return null.
+		if (!xmlTrainingFile.exists()) {
+			return null;
+		}
+
+		InputStream inStream = new BufferedInputStream(
+			new FileInputStream(xmlTrainingFile),
+			TrainingData.OUTPUT_BUFFER_SIZE);
+
+		XMLStreamReader reader = null;
+
+		try {
+
+			// Passing the system ID along lets the parser report
+			// the file name in its error messages.
+			reader = factory.createXMLStreamReader(xmlTrainingFile.toURI().toString(), inStream);
+
+			return parseDocument(reader, trainingXMLPath, displayOutput, validate, spiller, dictionary);
+
+		} finally {
+
+			if (reader != null) {
+				reader.close();
+			}
+
+			inStream.close();
+		}
+	}
+
+	/** Walks the given stream reader from the start of the
+	 *  document to its end, building up a TrainingData.
+	 *
+	 * @param reader	The reader positioned at the start of the
+	 * 					document.
+	 * @param trainingXMLPath	The path of the file being read,
+	 * 							used for console messages.
+	 * @param displayOutput	true if output should be displayed
+	 * 							to the console while parsing,
+	 * 							false otherwise.
+	 * @param validate	true if the content model should be
+	 * 					enforced.
+	 * @param spiller	The spiller to add the tokens to, or null
+	 * 					to keep them in the returned TrainingData.
+	 * @param dictionary	The dictionary to keep the tokens in, or
+	 * 						null for a store of their own.
+	 *
+	 * @return The TrainingData read from the document, or null
+	 * 			if the root element is not a tokenfile.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						spilling tokens.
+	 * @throws XMLStreamException If the document is not
+	 * 								well-formed or not valid.
+	 */
+	private static TrainingData parseDocument(
+			XMLStreamReader reader,
+			String trainingXMLPath,
+			boolean displayOutput,
+			boolean validate,
+			TokenRunSpiller spiller,
+			TokenDictionary dictionary
+	) throws IOException, XMLStreamException {
+
+		// Move past the prolog and the DOCTYPE to the root
+		// element. nextTag() can't be used for this, as it
+		// refuses to skip over a DOCTYPE.
+		while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+			// Nothing to do but keep going.
+		}
+
+		// Make sure that the document is the right kind of
+		// document before we go any further.
+
+		if (!reader.getLocalName().equals(ROOT_ELEMENT)) {
+
+			if (displayOutput) {
+
+				System.err.println(trainingXMLPath +
+					" is not a Mozilla Bayesian filter" +
+					" XML file - it has root element [" +
+					reader.getLocalName() +
+					"], and [" + ROOT_ELEMENT + "] was expected.");
+			}
+
+			return null;
+		}
+
+		if (displayOutput) {
+
+			// Console status messages
+			System.out.println("Now streaming XML tokens from " + trainingXMLPath);
+		}
+
+		TrainingData retTrainer = new TrainingData();
+
+		if (dictionary != null) {
+			retTrainer.setTokenStore(new DictionaryTokenStore(dictionary));
+		}
+
+		// Tokens go straight into the TrainingData's store (or the
+		// spiller, if there is one) as they are read.
+		TokenStore tokenStore = retTrainer.getTokenStore();
+
+		// Names are encoded back to the bytes they had in the file.
+		CharsetEncoder nameEncoder = getDocumentCharset(reader.getCharacterEncodingScheme()).newEncoder();
+
+		// Tracks where we are in the content model of the
+		// tokenfile element: 0 expects good_msgs, 1 expects
+		// bad_msgs, 2 expects tokens.
+		int expected = 0;
+		int numTokens = 0;
+		String elementName = null;
+
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+
+			elementName = reader.getLocalName();
+
+			if (elementName.equals("good_msgs") && (!validate || expected == 0)) {
+
+				retTrainer.setGoodMessageCount(readInt(reader));
+				expected = 1;
+
+			} else if (elementName.equals("bad_msgs") && (!validate || expected == 1)) {
+
+				retTrainer.setBadMessageCount(readInt(reader));
+				expected = 2;
+
+				if (displayOutput) {
+
+					// Console status messages
+					System.out.println("The number of good messages processed is " + retTrainer.getGoodMessageCount());
+					System.out.println("The number of bad messages processed is " + retTrainer.getBadMessageCount());
+					System.out.print("Now processing tokens");
+				}
+
+			} else if (elementName.equals("token") && (!validate || expected == 2)) {
+
+				readToken(reader, validate, nameEncoder, tokenStore, spiller);
+
+				// Every numTokensBeforeTick tokens, print out a .
+				// so that the user knows that the program is
+				// doing something.
+				if (displayOutput && ((numTokens % numTokensBeforeTick) == 0)) {
+					System.out.print('.');
+				}
+
+				numTokens++;
+
+			} else if (validate) {
+
+				throw invalid(reader, "unexpected element <" + elementName + "> in <" + ROOT_ELEMENT + ">");
+
+			} else {
+
+				// Not something we know about, so skip it.
+				skipElement(reader);
+			}
+		}
+
+		if (validate && expected != 2) {
+
+			throw invalid(reader, "<" + ROOT_ELEMENT + "> must contain <good_msgs> and <bad_msgs>");
+		}
+
+		if (displayOutput) {
+
+			// Terminate the line of ...s that the loop
+			// created on the console.
+			System.out.println("\n" + numTokens + " tokens processed.");
+		}
+
+		return retTrainer;
+	}
+
+	/** Reads a single token element and adds it to the given
+	 *  store or spiller. The reader must be positioned on the
+	 *  token start tag, and is left on the token end tag.
+	 *
+	 * @param reader	The reader positioned on a token start
+	 * 					tag.
+	 * @param validate	true if the content model should be
+	 * 					enforced.
+	 * @param nameEncoder	An encoder for the document's declared
+	 * 						encoding.
+	 * @param tokenStore	The store to add the token to.
+	 * @param spiller	The spiller to add the token to instead,
+	 * 					or null to use the store.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						spilling tokens.
+	 * @throws XMLStreamException If the token is not well-formed
+	 * 								or not valid.
+	 */
+	private static void readToken(
+			XMLStreamReader reader,
+			boolean validate,
+			CharsetEncoder nameEncoder,
+			TokenStore tokenStore,
+			TokenRunSpiller spiller
+	) throws IOException, XMLStreamException {
+
+		String tokenString = null;
+		int goodTokens = 0;
+		int badTokens = 0;
+
+		// 0 expects name, 1 expects good, 2 expects bad, and 3
+		// expects the end of the token.
+		int expected = 0;
+		String elementName = null;
+
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+
+			elementName = reader.getLocalName();
+
+			if (elementName.equals("name") && (!validate || expected == 0)) {
+
+				tokenString = reader.getElementText();
+				expected = 1;
+
+			} else if (elementName.equals("good") && (!validate || expected == 1)) {
+
+				goodTokens = readInt(reader);
+				expected = 2;
+
+			} else if (elementName.equals("bad") && (!validate || expected == 2)) {
+
+				badTokens = readInt(reader);
+				expected = 3;
+
+			} else if (validate) {
+
+				throw invalid(reader, "unexpected element <" + elementName + "> in <token>");
+
+			} else {
+
+				// Not something we know about, so skip it.
+				skipElement(reader);
+			}
+		}
+
+		if ((validate && expected != 3) || tokenString == null) {
+
+			throw invalid(reader, "<token> must contain <name>, <good> and <bad>");
+		}
+
+		byte[] tokenBytes = encodeName(tokenString, nameEncoder);
+
+		if (spiller == null) {
+
+			tokenStore.add(tokenBytes, 0, tokenBytes.length, goodTokens, badTokens);
+
+		} else {
+
+			spiller.add(tokenBytes, 0, tokenBytes.length, goodTokens, badTokens);
+		}
+	}
+
+	/** Looks up the character set of an XML document.
+	 *
+	 * @param encodingName	The encoding given in the document's
+	 * 						XML declaration, or null if there was
+	 * 						none.
+	 *
+	 * @return The matching Charset, or UTF-8, the default for XML,
+	 * 			if there was none or it isn't supported.
+	 */
+	static Charset getDocumentCharset(String encodingName) {
+
+		if (encodingName != null) {
+
+			try {
+
+				return Charset.forName(encodingName);
+
+			} catch (IllegalArgumentException iae) {
+
+				// Unknown or illegal name, fall through.
+			}
+		}
+
+		return Charset.forName("UTF-8");
+	}
+
+	/** Turns a token name read from an XML document back into the
+	 *  bytes of the token. A name which the document's encoding
+	 *  can't hold, e.g. one written as character references, is
+	 *  encoded with Globals.encodeToken() instead.
+	 *
+	 * @param name	The token name.
+	 * @param nameEncoder	An encoder for the document's declared
+	 * 						encoding.
+	 *
+	 * @return The bytes of the token.
+	 */
+	static byte[] encodeName(String name, CharsetEncoder nameEncoder) {
+
+		if (!nameEncoder.canEncode(name)) {
+			return Globals.encodeToken(name);
+		}
+
+		return name.getBytes(nameEncoder.charset());
+	}
+
+	/** Reads the text of the current element as an int.
+	 *
+	 * @param reader	The reader positioned on a start tag.
+	 *
+	 * @return The int value of the element's text.
+	 *
+	 * @throws XMLStreamException If the text is not a number.
+	 */
+	private static int readInt(XMLStreamReader reader) throws XMLStreamException {
+
+		String elementName = reader.getLocalName();
+		String text = reader.getElementText().trim();
+
+		try {
+
+			return Integer.parseInt(text);
+
+		} catch (NumberFormatException nfe) {
+
+			throw invalid(reader, "<" + elementName + "> must contain a number, not [" + text + "]");
+		}
+	}
+
+	/** Skips over the current element, including all of its
+	 *  children. The reader must be positioned on its start tag,
+	 *  and is left on its end tag.
+	 *
+	 * @param reader	The reader positioned on a start tag.
+	 *
+	 * @throws XMLStreamException If the element is not
+	 * 								well-formed.
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+
+		int depth = 1;
+
+		while (depth > 0) {
+
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT) {
+
+				depth++;
+
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+
+				depth--;
+			}
+		}
+	}
+
+	/** Creates an exception describing a validation error at the
+	 *  reader's current location.
+	 *
+	 * @param reader	The reader where the error was found.
+	 * @param message	A description of the error.
+	 *
+	 * @return An XMLStreamException to be thrown by the caller.
+	 */
+	private static XMLStreamException invalid(XMLStreamReader reader, String message) {
+
+		Location location = reader.getLocation();
+
+		return new XMLStreamException("Invalid token file: " + message, location);
+	}
+}
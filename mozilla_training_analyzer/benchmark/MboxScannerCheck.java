@@ -0,0 +1,248 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import mozilla_training_analyzer.MappedMboxScanner;
+import mozilla_training_analyzer.MboxReader;
+
+/** Checks that MappedMboxScanner splits mbox files exactly as
+ *  MboxReader does, giving the same messages at the same offsets.
+ *
+ *  Random files are made up of pieces which are likely to trip up
+ *  a splitter: "From " with and without a line feed in front of
+ *  it, "From" without the space, bare and CRLF line feeds, text
+ *  before the first "From " line and the odd message of several
+ *  kilobytes. Each file is split by both, with the scanner mapping
+ *  it in windows of each of the given sizes, so that tiny windows
+ *  put the remapping and window growth through their paces.
+ *
+ *  Usage: MboxScannerCheck [-n files] [-seed seed] [window size ...]
+ *  (20000 files, seed 1 and windows of 7, 64 and 1000 bytes by
+ *  default). It exits with a non-zero status on the first file
+ *  which is split differently, after printing it.
+ */
+public class MboxScannerCheck {
+
+	/** The default number of files to check.
+	 */
+	private static final int DEFAULT_NUM_FILES = 20000;
+
+	/** The default window sizes to check with.
+	 */
+	private static final int[] DEFAULT_WINDOW_SIZES = { 7, 64, 1000 };
+
+	/** The pieces the files are made of.
+	 */
+	private static final String[] PIECES = {
+		"From ", "\n", "x", "From", " ", "\r\n", "abc def\n", "From a@b\n"
+	};
+
+	/** The number of pieces in a file is below this.
+	 */
+	private static final int MAX_PIECES = 40;
+
+	/** One file in this many gets a long message.
+	 */
+	private static final int LONG_MESSAGE_EVERY = 100;
+
+	// No instantiation of this class, everything is static.
+	private MboxScannerCheck() {
+	}
+
+	/** Runs the check.
+	 *
+	 * @param args	The command-line arguments, as described in the
+	 * 				class comment.
+	 *
+	 * @throws IOException If a file could not be written or read.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		int numFiles = DEFAULT_NUM_FILES;
+		long seed = 1;
+		int[] windowSizes = new int[args.length];
+		int numWindowSizes = 0;
+
+		for (int i = 0; i < args.length; i++) {
+
+			if (args[i].equals("-n") && (i + 1 < args.length)) {
+
+				numFiles = Integer.parseInt(args[++i]);
+
+			} else if (args[i].equals("-seed") && (i + 1 < args.length)) {
+
+				seed = Long.parseLong(args[++i]);
+
+			} else {
+
+				windowSizes[numWindowSizes++] = Integer.parseInt(args[i]);
+			}
+		}
+
+		if (numWindowSizes == 0) {
+			windowSizes = DEFAULT_WINDOW_SIZES;
+		} else {
+			windowSizes = Arrays.copyOf(windowSizes, numWindowSizes);
+		}
+
+		Random random = new Random(seed);
+		File mboxFile = File.createTempFile("mboxcheck", ".mbox");
+
+		try {
+
+			for (int n = 0; n < numFiles; n++) {
+
+				String contents = makeContents(random, n);
+
+				FileOutputStream outStream = new FileOutputStream(mboxFile);
+
+				try {
+					outStream.write(contents.getBytes("ISO-8859-1"));
+				} finally {
+					outStream.close();
+				}
+
+				for (int w = 0; w < windowSizes.length; w++) {
+
+					String difference = compare(mboxFile, windowSizes[w]);
+
+					if (difference != null) {
+
+						System.out.println("File " + n + ", window of " + windowSizes[w] + " bytes: " + difference);
+						System.out.println("Contents: [" + contents + "]");
+						System.exit(1);
+					}
+				}
+			}
+
+		} finally {
+
+			mboxFile.delete();
+		}
+
+		System.out.println("OK: " + numFiles + " files split the same with windows of "
+			+ Arrays.toString(windowSizes) + " bytes.");
+	}
+
+	/** Makes up the contents of a random mbox file.
+	 *
+	 * @param random	The source of randomness.
+	 * @param n	The number of the file.
+	 *
+	 * @return The contents of the file.
+	 */
+	private static String makeContents(Random random, int n) {
+
+		StringBuffer contents = new StringBuffer();
+		int numPieces = random.nextInt(MAX_PIECES);
+
+		for (int i = 0; i < numPieces; i++) {
+			contents.append(PIECES[random.nextInt(PIECES.length)]);
+		}
+
+		// Now and then a message bigger than the small windows.
+		if (n % LONG_MESSAGE_EVERY == 0) {
+
+			for (int i = 0; i < 500; i++) {
+				contents.append("long line text ");
+			}
+		}
+
+		return contents.toString();
+	}
+
+	/** Splits a file with both MboxReader and MappedMboxScanner.
+	 *
+	 * @param mboxFile	The file to split.
+	 * @param windowSize	The window size for the scanner.
+	 *
+	 * @return A description of the first difference, or null if
+	 * 			the file was split the same.
+	 *
+	 * @throws IOException If the file could not be read.
+	 */
+	private static String compare(File mboxFile, int windowSize) throws IOException {
+
+		InputStream inStream = new FileInputStream(mboxFile);
+		MappedMboxScanner scanner = new MappedMboxScanner(mboxFile, windowSize);
+
+		try {
+
+			MboxReader reader = new MboxReader(inStream);
+
+			for (int k = 0; true; k++) {
+
+				byte[] expected = reader.nextMessage();
+				ByteBuffer actual = scanner.nextMessage();
+
+				if ((expected == null) || (actual == null)) {
+
+					if ((expected == null) != (actual == null)) {
+						return "message " + k + " is " + (expected == null? "extra" : "missing");
+					}
+
+					return null;
+				}
+
+				byte[] actualBytes = new byte[actual.remaining()];
+				actual.get(actualBytes);
+
+				if (!Arrays.equals(expected, actualBytes)) {
+
+					return "message " + k + " is [" + new String(actualBytes, "ISO-8859-1")
+						+ "] rather than [" + new String(expected, "ISO-8859-1") + "]";
+				}
+
+				if (reader.getMessageOffset() != scanner.getMessageOffset()) {
+
+					return "message " + k + " is at " + scanner.getMessageOffset()
+						+ " rather than " + reader.getMessageOffset();
+				}
+			}
+
+		} finally {
+
+			scanner.close();
+			inStream.close();
+		}
+	}
+}
@@ -0,0 +1,479 @@
+/*
+ * Created on 18-Oct-2026
+ *
+ * The terms for using this software are as follows:
+ *
+ * USE AT YOUR OWN RISK - if this program goes insane and takes
+ * out several bystanders, don't come knocking on my door with
+ * lawyers.
+ *
+ * If you want to extend or use this software for some sort of
+ * commercial (read: money-making) software, tell me about it
+ * first. I probably won't ask for a cut because the software
+ * isn't that complicated, but I do want to know where my little
+ * baby heads after it leaves my machine.
+ *
+ * This project has become an official Mozdev project, and the
+ * website for it is http://bayesjunktool.mozdev.org. That is
+ * the best place to look for updates and information about this
+ * application. Updates are coming fast and furious right now,
+ * so it's a good idea to check it frequently.
+ *
+ * If you have any questions about this program, feel free to
+ * email any questions to bayesjunktool@mozdev.org. I'd love to
+ * hear how this program worked for you, or any suggestions or
+ * bugfixes that you believe this software should use. I believe
+ * that software should evolve and become better, so there's an
+ * extremely good chance your suggestion will make it into the
+ * next version.
+ *
+ * Oh, and for those of you curious about the author's (my) name,
+ * just email straxus@baynet.net and ask. :)
+ */
+package mozilla_training_analyzer.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import mozilla_training_analyzer.Analyzer;
+import mozilla_training_analyzer.StreamingTokenWriter;
+
+/** Generates synthetic training files of any size for load
+ *  testing, as either a training.dat or an XML token file.
+ *
+ *  The tokens are written out one at a time through a
+ *  StreamingTokenWriter (which writes the same header, from the
+ *  constants in TrainingData, as every other writer), so the
+ *  generator only ever holds one token in memory however big the
+ *  file is. The same settings and seed always give the same file.
+ *
+ *  What the tokens look like is controlled by a few settings:
+ *
+ *  - The counts follow Zipf's law, as word frequencies do: the
+ *  	token of rank r has a total count of maxCount / r^exponent,
+ *  	but at least 1. Each token's total is split between its good
+ *  	and bad count at a random ratio, so most of the rare tokens
+ *  	end up in just one of the two sections.
+ *  - The lengths, in characters, follow a geometric distribution
+ *  	between minLength and maxLength with the given mean, which
+ *  	is roughly the shape of real token lengths.
+ *  - The given share of the tokens are made of non-ASCII
+ *  	characters (accented Latin, Cyrillic and CJK), which take
+ *  	two or three bytes each in UTF-8.
+ *
+ *  Every token has to be distinct, and there is no room to
+ *  remember which ones have been written. So each token starts
+ *  with its own number, written as a fixed number of letters and
+ *  digits after it has been scrambled so that the tokens don't
+ *  come out in sorted order, as they wouldn't in a real file. The
+ *  rest of the token is random. This means that a token is never
+ *  shorter than the number of characters it takes to number them
+ *  all, e.g. 5 for 10,000,000 tokens, and a non-ASCII token is at
+ *  least one character longer than that.
+ *
+ *  Run it with:
+ *
+ *  java -cp . mozilla_training_analyzer.benchmark.TrainingFileGenerator
+ *  	-o [output file] [-f data | xml] [-n tokens] [-seed seed]
+ *  	[-zipf exponent] [-max-count count] [-min-length chars]
+ *  	[-mean-length chars] [-max-length chars] [-non-ascii share]
+ *  	[-good-msgs count] [-bad-msgs count]
+ */
+public class TrainingFileGenerator {
+
+	/** The characters which the number of a token is written in.
+	 *  They are also the characters of the rest of an ASCII token.
+	 */
+	private static final String ASCII_CHARACTERS = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+	/** The ranges of characters that the rest of a non-ASCII
+	 *  token is made of: accented Latin letters, Cyrillic letters
+	 *  and CJK ideographs.
+	 */
+	private static final char[][] NON_ASCII_RANGES = {
+		{ '\u00E0', '\u00FF' },
+		{ '\u0430', '\u044F' },
+		{ '\u4E00', '\u4FFF' }
+	};
+
+	/** The multiplier of the permutation that scrambles token
+	 *  numbers. It is prime, and doesn't divide any power of 36,
+	 *  so the permutation is a bijection.
+	 */
+	private static final long SCRAMBLE_MULTIPLIER = 1000003L;
+
+	/** The number of tokens to generate.
+	 */
+	private int numTokens = 100000;
+
+	/** The seed of the random numbers.
+	 */
+	private long seed = 0;
+
+	/** The exponent of the Zipf distribution of the counts.
+	 */
+	private double zipfExponent = 1.0;
+
+	/** The total count of the most common token.
+	 */
+	private int maxCount = 10000;
+
+	/** The shortest token, in characters.
+	 */
+	private int minLength = 3;
+
+	/** The mean token length, in characters.
+	 */
+	private double meanLength = 8;
+
+	/** The longest token, in characters.
+	 */
+	private int maxLength = 30;
+
+	/** The share of tokens made of non-ASCII characters, between
+	 *  0 and 1.
+	 */
+	private double nonAsciiShare = 0.05;
+
+	/** The number of good messages written into the header.
+	 */
+	private int goodMessageCount = 1000;
+
+	/** The number of bad messages written into the header.
+	 */
+	private int badMessageCount = 1000;
+
+	/** Creates a new TrainingFileGenerator with the default
+	 *  settings: 100,000 tokens, seed 0, Zipf exponent 1 with a
+	 *  highest count of 10,000, lengths from 3 to 30 with a mean of
+	 *  8, 5% non-ASCII tokens, and 1,000 good and bad messages.
+	 */
+	public TrainingFileGenerator() {
+	}
+
+	/** Sets the number of tokens to generate.
+	 *
+	 * @param numTokens	The number of distinct tokens.
+	 */
+	public void setNumTokens(int numTokens) {
+
+		if (numTokens < 0) {
+			throw new IllegalArgumentException("The number of tokens cannot be negative: " + numTokens);
+		}
+
+		this.numTokens = numTokens;
+	}
+
+	/** Sets the seed of the random numbers.
+	 *
+	 * @param seed	The seed.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/** Sets the shape of the Zipf distribution of the counts.
+	 *
+	 * @param exponent	The exponent; larger values make the
+	 * 					counts fall off faster.
+	 * @param maxCount	The total count of the most common token.
+	 */
+	public void setZipf(double exponent, int maxCount) {
+
+		if ((exponent < 0) || (maxCount < 1)) {
+			throw new IllegalArgumentException("Invalid Zipf distribution: " + exponent + ", " + maxCount);
+		}
+
+		this.zipfExponent = exponent;
+		this.maxCount = maxCount;
+	}
+
+	/** Sets the distribution of the token lengths.
+	 *
+	 * @param minLength	The shortest token, in characters.
+	 * @param meanLength	The mean token length, in characters.
+	 * @param maxLength	The longest token, in characters.
+	 */
+	public void setLengths(int minLength, double meanLength, int maxLength) {
+
+		if ((minLength < 1) || (meanLength < minLength) || (maxLength < meanLength)) {
+
+			throw new IllegalArgumentException("Invalid token lengths: " +
+				minLength + ", " + meanLength + ", " + maxLength);
+		}
+
+		this.minLength = minLength;
+		this.meanLength = meanLength;
+		this.maxLength = maxLength;
+	}
+
+	/** Sets the share of tokens made of non-ASCII characters.
+	 *
+	 * @param nonAsciiShare	The share, between 0 and 1.
+	 */
+	public void setNonAsciiShare(double nonAsciiShare) {
+
+		if ((nonAsciiShare < 0) || (nonAsciiShare > 1)) {
+			throw new IllegalArgumentException("The non-ASCII share must be between 0 and 1: " + nonAsciiShare);
+		}
+
+		this.nonAsciiShare = nonAsciiShare;
+	}
+
+	/** Sets the message counts written into the header.
+	 *
+	 * @param goodMessageCount	The number of good messages.
+	 * @param badMessageCount	The number of bad messages.
+	 */
+	public void setMessageCounts(int goodMessageCount, int badMessageCount) {
+
+		this.goodMessageCount = goodMessageCount;
+		this.badMessageCount = badMessageCount;
+	}
+
+	/** Generates a training file.
+	 *
+	 * @param outputFile	The file to write. It is overwritten if
+	 * 						it already exists.
+	 * @param outputType	The format of the file, either
+	 * 						Analyzer.OUTPUT_DATA or
+	 * 						Analyzer.OUTPUT_XML.
+	 *
+	 * @throws IOException If an error was encountered while
+	 * 						writing the file.
+	 */
+	public void generate(File outputFile, int outputType) throws IOException {
+
+		Random random = new Random(seed);
+
+		// The number of characters it takes to number every
+		// token, and the number of distinct numbers they hold.
+		int idLength = 1;
+		long idSpace = ASCII_CHARACTERS.length();
+
+		while (idSpace < numTokens) {
+
+			idLength++;
+			idSpace *= ASCII_CHARACTERS.length();
+		}
+
+		// Moving the numbers along by a random offset makes the
+		// tokens depend on the seed.
+		long idOffset = (random.nextLong() & Long.MAX_VALUE) % idSpace;
+
+		// The geometric distribution of the lengths above the
+		// minimum has this chance of stopping at each character.
+		double stopChance = 1.0 / (meanLength - minLength + 1);
+
+		// Each character is at most three bytes of UTF-8.
+		byte[] tokenBytes = new byte[3 * Math.max(maxLength, idLength)];
+
+		StreamingTokenWriter writer = new StreamingTokenWriter(
+			outputFile, outputType, goodMessageCount, badMessageCount);
+
+		try {
+
+			for (int i = 0; i < numTokens; i++) {
+
+				int length = 0;
+
+				// The token's number, scrambled, comes first.
+				long id = (i * SCRAMBLE_MULTIPLIER + idOffset) % idSpace;
+
+				for (int c = 0; c < idLength; c++) {
+
+					tokenBytes[length++] = (byte) ASCII_CHARACTERS.charAt((int) (id % ASCII_CHARACTERS.length()));
+					id /= ASCII_CHARACTERS.length();
+				}
+
+				// Then random characters up to the token's length.
+				int numChars = minLength;
+
+				if (stopChance < 1) {
+					numChars += (int) (Math.log(1 - random.nextDouble()) / Math.log(1 - stopChance));
+				}
+
+				numChars = Math.min(numChars, maxLength);
+
+				// A non-ASCII token needs at least one character
+				// after its number.
+				boolean nonAscii = (random.nextDouble() < nonAsciiShare);
+
+				if (nonAscii) {
+					numChars = Math.max(numChars, idLength + 1);
+				}
+
+				for (int c = idLength; c < numChars; c++) {
+
+					char nextChar = 0;
+
+					if (nonAscii) {
+
+						char[] range = NON_ASCII_RANGES[random.nextInt(NON_ASCII_RANGES.length)];
+						nextChar = (char) (range[0] + random.nextInt(range[1] - range[0] + 1));
+
+					} else {
+
+						nextChar = ASCII_CHARACTERS.charAt(random.nextInt(ASCII_CHARACTERS.length()));
+					}
+
+					length = putUTF8(nextChar, tokenBytes, length);
+				}
+
+				// The tokens are written in a scrambled order, so
+				// their rank follows from their number.
+				int count = Math.max(1, (int) Math.round(maxCount / Math.pow(i + 1, zipfExponent)));
+				int badCount = (int) Math.round(count * random.nextDouble());
+
+				writer.writeToken(tokenBytes, 0, length, count - badCount, badCount);
+			}
+
+		} finally {
+
+			writer.close();
+		}
+	}
+
+	/** Encodes a character of the Basic Multilingual Plane as
+	 *  UTF-8.
+	 *
+	 * @param c	The character to encode.
+	 * @param bytes	The array to put the bytes into.
+	 * @param offset	The offset to put the first byte at.
+	 *
+	 * @return The offset after the last byte.
+	 */
+	private static int putUTF8(char c, byte[] bytes, int offset) {
+
+		if (c < 0x80) {
+
+			bytes[offset++] = (byte) c;
+
+		} else if (c < 0x800) {
+
+			bytes[offset++] = (byte) (0xC0 | (c >> 6));
+			bytes[offset++] = (byte) (0x80 | (c & 0x3F));
+
+		} else {
+
+			bytes[offset++] = (byte) (0xE0 | (c >> 12));
+			bytes[offset++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			bytes[offset++] = (byte) (0x80 | (c & 0x3F));
+		}
+
+		return offset;
+	}
+
+	/** Generates a training file from the command line, as
+	 *  described in the class comment.
+	 *
+	 * @param args	The command-line arguments.
+	 */
+	public static void main(String[] args) {
+
+		TrainingFileGenerator generator = new TrainingFileGenerator();
+		File outputFile = null;
+		int outputType = Analyzer.OUTPUT_DATA;
+
+		int minLength = generator.minLength;
+		double meanLength = generator.meanLength;
+		int maxLength = generator.maxLength;
+		double zipfExponent = generator.zipfExponent;
+		int maxCount = generator.maxCount;
+		int goodMsgs = generator.goodMessageCount;
+		int badMsgs = generator.badMessageCount;
+
+		try {
+
+			for (int i = 0; i + 1 < args.length; i += 2) {
+
+				String value = args[i + 1];
+
+				if (args[i].equals("-o")) {
+
+					outputFile = new File(value);
+
+				} else if (args[i].equals("-f")) {
+
+					if (value.equalsIgnoreCase("xml")) {
+
+						outputType = Analyzer.OUTPUT_XML;
+
+					} else if (!value.equalsIgnoreCase("data")) {
+
+						throw new IllegalArgumentException("Only data and xml files can be generated: " + value);
+					}
+
+				} else if (args[i].equals("-n")) {
+
+					generator.setNumTokens(Integer.parseInt(value));
+
+				} else if (args[i].equals("-seed")) {
+
+					generator.setSeed(Long.parseLong(value));
+
+				} else if (args[i].equals("-zipf")) {
+
+					zipfExponent = Double.parseDouble(value);
+
+				} else if (args[i].equals("-max-count")) {
+
+					maxCount = Integer.parseInt(value);
+
+				} else if (args[i].equals("-min-length")) {
+
+					minLength = Integer.parseInt(value);
+
+				} else if (args[i].equals("-mean-length")) {
+
+					meanLength = Double.parseDouble(value);
+
+				} else if (args[i].equals("-max-length")) {
+
+					maxLength = Integer.parseInt(value);
+
+				} else if (args[i].equals("-non-ascii")) {
+
+					generator.setNonAsciiShare(Double.parseDouble(value));
+
+				} else if (args[i].equals("-good-msgs")) {
+
+					goodMsgs = Integer.parseInt(value);
+
+				} else if (args[i].equals("-bad-msgs")) {
+
+					badMsgs = Integer.parseInt(value);
+
+				} else {
+
+					throw new IllegalArgumentException("Unknown argument: " + args[i]);
+				}
+			}
+
+			if (outputFile == null) {
+				throw new IllegalArgumentException("An output file must be given with -o");
+			}
+
+			generator.setZipf(zipfExponent, maxCount);
+			generator.setLengths(minLength, meanLength, maxLength);
+			generator.setMessageCounts(goodMsgs, badMsgs);
+
+		} catch (IllegalArgumentException e) {
+
+			// NumberFormatException is one of these as well.
+			System.err.println(e.getMessage());
+			System.exit(Analyzer.INVALID_ARG);
+		}
+
+		try {
+
+			generator.generate(outputFile, outputType);
+
+		} catch (IOException e) {
+
+			System.err.println("Could not write " + outputFile + ": " + e.getMessage());
+			System.exit(Analyzer.GEN_ERROR);
+		}
+	}
+}